@@ -0,0 +1,110 @@
+package com.openhtmltopdf.context;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Supplier;
+
+import com.openhtmltopdf.css.sheet.Ruleset;
+
+/**
+ * A cache of parsed style declarations, such as <code>style</code> attributes, that can be
+ * shared by documents, see
+ * {@link com.openhtmltopdf.outputdevice.helper.BaseRendererBuilder#useStyleDeclarationCache(StyleDeclarationCache)}.
+ * <br><br>
+ * Templates often repeat the same <code>style="..."</code> on thousands of elements. Without a
+ * cache each one is lexed and parsed again. With a cache each distinct declaration is parsed
+ * once per origin, base url (which relative urls are resolved against) and CMYK color setting.
+ * <br><br>
+ * Cached rulesets are shared and so must not be modified. Parse warnings are only
+ * logged the first time a declaration is parsed.
+ * <br><br>
+ * The cache is bounded, the least recently used declarations being dropped first.
+ * This class is thread safe.
+ */
+public final class StyleDeclarationCache {
+    /**
+     * The default maximum number of declarations to keep.
+     */
+    public static final int DEFAULT_MAX_SIZE = 4096;
+
+    private final Map<Key, Ruleset> _rulesets;
+
+    /**
+     * Creates a cache holding up to {@link #DEFAULT_MAX_SIZE} declarations.
+     */
+    public StyleDeclarationCache() {
+        this(DEFAULT_MAX_SIZE);
+    }
+
+    /**
+     * @param maxSize the maximum number of declarations to keep.
+     */
+    public StyleDeclarationCache(int maxSize) {
+        this._rulesets = Collections.synchronizedMap(new LinkedHashMap<Key, Ruleset>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, Ruleset> eldest) {
+                return size() > maxSize;
+            }
+        });
+    }
+
+    /**
+     * @return the number of declarations in the cache.
+     */
+    public int size() {
+        return _rulesets.size();
+    }
+
+    /**
+     * Returns the cached ruleset for declaration, calling parser to create it on first use.
+     */
+    Ruleset get(int origin, String baseUrl, boolean supportCMYKColors, String declaration, Supplier<Ruleset> parser) {
+        Key key = new Key(origin, baseUrl, supportCMYKColors, declaration);
+        Ruleset ruleset = _rulesets.get(key);
+
+        if (ruleset == null) {
+            // Parsed without holding the lock, another thread may parse the same declaration.
+            Ruleset parsed = parser.get();
+            ruleset = _rulesets.putIfAbsent(key, parsed);
+            return ruleset != null ? ruleset : parsed;
+        }
+
+        return ruleset;
+    }
+
+    private static final class Key {
+        private final int _origin;
+        private final String _baseUrl;
+        private final boolean _supportCMYKColors;
+        private final String _declaration;
+
+        Key(int origin, String baseUrl, boolean supportCMYKColors, String declaration) {
+            this._origin = origin;
+            this._baseUrl = baseUrl;
+            this._supportCMYKColors = supportCMYKColors;
+            this._declaration = declaration;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(_origin, _baseUrl, _supportCMYKColors, _declaration);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof Key)) {
+                return false;
+            }
+
+            Key other = (Key) obj;
+            return _origin == other._origin &&
+                   _supportCMYKColors == other._supportCMYKColors &&
+                   Objects.equals(_baseUrl, other._baseUrl) &&
+                   _declaration.equals(other._declaration);
+        }
+    }
+}
@@ -19,7 +19,6 @@
  */
 package com.openhtmltopdf.context;
 
-import java.io.StringReader;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
@@ -41,6 +40,8 @@ import com.openhtmltopdf.css.sheet.PropertyDeclaration;
 import com.openhtmltopdf.css.sheet.Stylesheet;
 import com.openhtmltopdf.css.sheet.StylesheetInfo;
 import com.openhtmltopdf.css.style.CalculatedStyle;
+import com.openhtmltopdf.extend.FSCacheEx;
+import com.openhtmltopdf.extend.FSCacheValue;
 import com.openhtmltopdf.extend.NamespaceHandler;
 import com.openhtmltopdf.extend.UserAgentCallback;
 import com.openhtmltopdf.extend.UserInterface;
@@ -238,8 +239,7 @@ public class StyleReference {
                     ref.setUri(uri);
                 } else {
                     ref.setUri(_uac.getBaseURL() + "#inline_style_" + (++inlineStyleCount));
-                    Stylesheet sheet = _stylesheetFactory.parse(
-                            new StringReader(ref.getContent()), ref);
+                    Stylesheet sheet = _stylesheetFactory.parseInline(ref.getContent(), ref);
                     ref.setStylesheet(sheet);
                     ref.setUri(null);
                 }
@@ -267,6 +267,20 @@ public class StyleReference {
     public void setSupportCMYKColors(boolean b) {
         _stylesheetFactory.setSupportCMYKColors(b);
     }
+
+    /**
+     * Sets a cache for parsed stylesheets, see {@link StylesheetFactoryImpl#setStylesheetCache(FSCacheEx)}.
+     */
+    public void setStylesheetCache(FSCacheEx<String, FSCacheValue> cache) {
+        _stylesheetFactory.setStylesheetCache(cache);
+    }
+
+    /**
+     * Sets a cache for parsed style attributes, see {@link StylesheetFactoryImpl#setStyleDeclarationCache(StyleDeclarationCache)}.
+     */
+    public void setStyleDeclarationCache(StyleDeclarationCache cache) {
+        _stylesheetFactory.setStyleDeclarationCache(cache);
+    }
 }
 
 /*
@@ -21,6 +21,7 @@ package com.openhtmltopdf.context;
 
 import java.io.IOException;
 import java.io.Reader;
+import java.io.StringReader;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.logging.Level;
@@ -30,7 +31,10 @@ import com.openhtmltopdf.css.parser.CSSParser;
 import com.openhtmltopdf.css.sheet.Ruleset;
 import com.openhtmltopdf.css.sheet.Stylesheet;
 import com.openhtmltopdf.css.sheet.StylesheetInfo;
+import com.openhtmltopdf.extend.FSCacheEx;
+import com.openhtmltopdf.extend.FSCacheValue;
 import com.openhtmltopdf.extend.UserAgentCallback;
+import com.openhtmltopdf.extend.impl.FSNoOpCacheStore;
 import com.openhtmltopdf.resource.CSSResource;
 import com.openhtmltopdf.util.LogMessageId;
 import com.openhtmltopdf.util.XRLog;
@@ -62,11 +66,22 @@ public class StylesheetFactoryImpl implements StylesheetFactory {
 
     private final CSSParser _cssParser;
 
+    /**
+     * Parsed stylesheets, possibly shared with other documents. As the
+     * cache is keyed on URI, a cached sheet is not fetched again.
+     */
+    private FSCacheEx<String, FSCacheValue> _stylesheetCache = FSNoOpCacheStore.INSTANCE;
+
+    /**
+     * Parsed style declarations (style attributes), possibly shared with other documents.
+     */
+    private StyleDeclarationCache _styleDeclarationCache;
+
     public StylesheetFactoryImpl(UserAgentCallback userAgentCallback) {
         _userAgentCallback = userAgentCallback;
         _cssParser = new CSSParser((uri, message) -> {
             XRLog.log(Level.WARNING, LogMessageId.LogMessageId2Param.CSS_PARSE_GENERIC_MESSAGE, uri, message);
-        });
+        }, userAgentCallback);
     }
 
     public Stylesheet parse(Reader reader, StylesheetInfo info) {
@@ -104,7 +119,13 @@ public class StylesheetFactoryImpl implements StylesheetFactory {
     }
 
     public Ruleset parseStyleDeclaration(int origin, String styleDeclaration) {
-        return _cssParser.parseDeclaration(origin, styleDeclaration);
+        if (_styleDeclarationCache == null || _userAgentCallback == null) {
+            return _cssParser.parseDeclaration(origin, styleDeclaration);
+        }
+
+        return _styleDeclarationCache.get(
+                origin, _userAgentCallback.getBaseURL(), _cssParser.isSupportCMYKColors(), styleDeclaration,
+                () -> _cssParser.parseDeclaration(origin, styleDeclaration));
     }
 
     /**
@@ -128,14 +149,53 @@ public class StylesheetFactoryImpl implements StylesheetFactory {
 
         _seenStylesheetUris.merge(info.getUri(), 1, (oldV, newV) -> oldV + 1);
 
-        return parse(info);
+        if (_stylesheetCache == FSNoOpCacheStore.INSTANCE) {
+            return parse(info);
+        }
+
+        return (Stylesheet) _stylesheetCache.get(createCacheKey(info, null), () -> parse(info));
+    }
+
+    /**
+     * Parses the content of an inline style element, using the stylesheet cache if
+     * one has been set.
+     */
+    public Stylesheet parseInline(String content, StylesheetInfo info) {
+        if (_stylesheetCache == FSNoOpCacheStore.INSTANCE) {
+            return parse(new StringReader(content), info);
+        }
+
+        return (Stylesheet) _stylesheetCache.get(createCacheKey(info, content), () -> parse(new StringReader(content), info));
+    }
+
+    private static String createCacheKey(StylesheetInfo info, String inlineContent) {
+        String key = info.getOrigin() + ":" + info.getUri();
+        return inlineContent == null ? key : key + ":" + inlineContent;
     }
 
     public void setUserAgentCallback(UserAgentCallback userAgent) {
         _userAgentCallback = userAgent;
+        _cssParser.setUserAgentCallback(userAgent);
     }
     
     public void setSupportCMYKColors(boolean b) {
         _cssParser.setSupportCMYKColors(b);
     }
+
+    /**
+     * Sets a cache for parsed stylesheets. The cache may be shared between
+     * documents, and threads if it is thread safe, but only if documents
+     * share the same user agent setup.
+     */
+    public void setStylesheetCache(FSCacheEx<String, FSCacheValue> cache) {
+        _stylesheetCache = cache;
+    }
+
+    /**
+     * Sets a cache for parsed style declarations, such as style attributes.
+     * @param cache the cache or null to parse every declaration.
+     */
+    public void setStyleDeclarationCache(StyleDeclarationCache cache) {
+        _styleDeclarationCache = cache;
+    }
 }
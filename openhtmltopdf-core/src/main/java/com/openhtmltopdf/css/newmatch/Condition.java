@@ -39,6 +39,20 @@ abstract class Condition {
     abstract boolean matches(Object e, AttributeResolver attRes, TreeResolver treeRes);
     abstract void toCSS(StringBuilder sb);
 
+    /**
+     * The id an element must have to match this condition or null.
+     */
+    String getRequiredID() {
+        return null;
+    }
+
+    /**
+     * A class an element must have to match this condition or null.
+     */
+    String getRequiredClass() {
+        return null;
+    }
+
     /**
      * the CSS condition [attribute]
      *
@@ -371,12 +385,19 @@ abstract class Condition {
 
     private static class ClassCondition extends Condition {
 
+        private String _className;
         private String _paddedClassName;
 
         ClassCondition(String className) {
+            _className = className;
             _paddedClassName = " " + className + " ";
         }
 
+        @Override
+        String getRequiredClass() {
+            return _className;
+        }
+
         @Override
         boolean matches(Object e, AttributeResolver attRes, TreeResolver treeRes) {
             if (attRes == null) {
@@ -408,6 +429,11 @@ abstract class Condition {
             _id = id;
         }
 
+        @Override
+        String getRequiredID() {
+            return _id;
+        }
+
         @Override
         boolean matches(Object e, AttributeResolver attRes, TreeResolver treeRes) {
             if (attRes == null) {
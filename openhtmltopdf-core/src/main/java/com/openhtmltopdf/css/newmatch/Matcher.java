@@ -30,6 +30,7 @@ import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Set;
 import java.util.TreeMap;
 import java.util.logging.Level;
@@ -172,16 +173,13 @@ public class Matcher {
     
     private void addAllStylesheets(List<Stylesheet> stylesheets, TreeMap<String, Selector> sorter, String medium) {
         int count = 0;
-        int pCount = 0;
         for (Stylesheet stylesheet : stylesheets) {
             for (Object obj : stylesheet.getContents()) {
                 if (obj instanceof Ruleset) {
                     for (Selector selector : ((Ruleset) obj).getFSSelectors()) {
-                        selector.setPos(++count);
-                        sorter.put(selector.getOrder(), selector);
+                        sorter.put(selector.getOrder(++count), selector);
                     }
                 } else if (obj instanceof PageRule) {
-                    ((PageRule) obj).setPos(++pCount);
                     _pageRules.add((PageRule) obj);
                 } else if (obj instanceof MediaRule) {
                     MediaRule mediaRule = (MediaRule) obj;
@@ -190,8 +188,7 @@ public class Matcher {
                             Ruleset ruleset = (Ruleset) o;
                             for (Object o1 : ruleset.getFSSelectors()) {
                                 Selector selector = (Selector) o1;
-                                selector.setPos(++count);
-                                sorter.put(selector.getOrder(), selector);
+                                sorter.put(selector.getOrder(++count), selector);
                             }
                         }
                     }
@@ -201,6 +198,9 @@ public class Matcher {
             _fontFaceRules.addAll(stylesheet.getFontFaceRules());
         }
         
+        // Parsed stylesheets may be shared between documents, so we don't record
+        // positions on the rules. A stable sort keeps document order for page rules
+        // of equal specificity.
         Collections.sort(_pageRules, new Comparator<PageRule>() {
             @Override
             public int compare(PageRule p1, PageRule p2) {
@@ -232,32 +232,36 @@ public class Matcher {
         return str == null || str.length() == 0;
     }
 
-    private com.openhtmltopdf.css.sheet.Ruleset getElementStyle(Object e) {
-        //synchronized (e) {
-            if (_attRes == null || _styleFactory == null) {
-                return null;
-            }
-            
-            String style = _attRes.getElementStyling(e);
-            if (isNullOrEmpty(style)) {
-                return null;
-            }
-            
-            return _styleFactory.parseStyleDeclaration(com.openhtmltopdf.css.sheet.StylesheetInfo.AUTHOR, style);
-        //}
+    /**
+     * Returns the style attribute of e or null.
+     */
+    private String getElementStyling(Object e) {
+        if (_attRes == null || _styleFactory == null) {
+            return null;
+        }
+
+        String style = _attRes.getElementStyling(e);
+        return isNullOrEmpty(style) ? null : style;
     }
 
-    private com.openhtmltopdf.css.sheet.Ruleset getNonCssStyle(Object e) {
-        //synchronized (e) {
-            if (_attRes == null || _styleFactory == null) {
-                return null;
-            }
-            String style = _attRes.getNonCssStyling(e);
-            if (isNullOrEmpty(style)) {
-                return null;
-            }
-            return _styleFactory.parseStyleDeclaration(com.openhtmltopdf.css.sheet.StylesheetInfo.AUTHOR, style);
-        //}
+    /**
+     * Returns the styling of e from attributes other than style (such as width) or null.
+     */
+    private String getNonCssStyling(Object e) {
+        if (_attRes == null || _styleFactory == null) {
+            return null;
+        }
+
+        String style = _attRes.getNonCssStyling(e);
+        return isNullOrEmpty(style) ? null : style;
+    }
+
+    private com.openhtmltopdf.css.sheet.Ruleset parseStyle(String style) {
+        if (style == null) {
+            return null;
+        }
+
+        return _styleFactory.parseStyleDeclaration(com.openhtmltopdf.css.sheet.StylesheetInfo.AUTHOR, style);
     }
 
     /**
@@ -267,12 +271,34 @@ public class Matcher {
      * @author Torbjoern Gannholm
      */
     class Mapper {
+        /**
+         * Mappers with fewer selectors than this are matched by testing each selector.
+         */
+        private static final int MIN_INDEXED_SIZE = 32;
+
         private final List<Selector> axes;
         private final Map<String, List<Selector>> pseudoSelectors;
         private final List<Selector> mappedSelectors;
 
         private Map<String, Mapper> children;
 
+        private SelectorIndex index;
+        private int mapCount;
+
+        // The name, id and class of the last child mapped and, if it only matched selectors
+        // that depend on nothing else, its mapper. Usually the last child is the previous
+        // sibling, see mapChild.
+        private String lastChildName;
+        private String lastChildId;
+        private String lastChildClass;
+        private Mapper lastChildMapper;
+
+        // The last cascaded style built for an element with this mapper and
+        // the inline styles it was built from, see getCascadedStyle.
+        private CascadedStyle lastCascadedStyle;
+        private String lastElementStyling;
+        private String lastNonCssStyling;
+
         Mapper(Collection<Selector> selectors) {
             this.axes = new ArrayList<>(selectors);
             this.pseudoSelectors = Collections.emptyMap();
@@ -288,6 +314,23 @@ public class Matcher {
             this.pseudoSelectors = pseudoSelectors;
         }
 
+        /**
+         * Returns the positions in axes of the selectors that may match e or null
+         * to test every selector. The index is only built once a mapper is used for a
+         * second element, as most mappers are either shared by many elements or used once.
+         */
+        private int[] getCandidates(Object e) {
+            if (index == null) {
+                if (axes.size() < MIN_INDEXED_SIZE || ++mapCount < 2) {
+                    return null;
+                }
+
+                index = new SelectorIndex(axes);
+            }
+
+            return index.getCandidates(e, _attRes, _treeRes);
+        }
+
         /**
          * Side effect: creates and stores a Mapper for the element
          *
@@ -296,22 +339,39 @@ public class Matcher {
          *         (more correct: preserves the sort order from Matcher creation)
          */
         Mapper mapChild(Object e) {
-            List<Selector> childAxes = null;
+            String name = _treeRes.getElementName(e);
+            String id = _attRes != null ? _attRes.getID(e) : null;
+            String className = _attRes != null ? _attRes.getClass(e) : null;
+
+            // Siblings such as the rows or cells of a table are often alike. If the last child
+            // had the same name, id and class, and could only have matched selectors that depend
+            // on nothing else, this child matches the same selectors.
+            if (lastChildMapper != null &&
+                Objects.equals(name, lastChildName) &&
+                Objects.equals(id, lastChildId) &&
+                Objects.equals(className, lastChildClass)) {
+                link(e, lastChildMapper);
+                return lastChildMapper;
+            }
+
+            List<Selector> chainedFrom = null;
             List<Selector> mappedSelectors = null;
             Map<String, List<Selector>> pseudoSelectors = null;
 
             StringBuilder key = new StringBuilder();
+            boolean shareable = true;
 
-            for (Selector sel : axes) {
-                if (sel.getAxis() == Selector.DESCENDANT_AXIS) {
-                    if (childAxes == null) {
-                        childAxes = new ArrayList<>();
-                    }
+            // Candidates are in axes order, so matched selectors keep their cascade order.
+            int[] candidates = getCandidates(e);
+            int count = candidates != null ? candidates.length : axes.size();
 
-                    // Carry it forward to other descendants
-                    childAxes.add(sel);
-                } else if (sel.getAxis() == Selector.IMMEDIATE_SIBLING_AXIS) {
-                    throw new RuntimeException();
+            for (int i = 0; i < count; i++) {
+                Selector sel = axes.get(candidates != null ? candidates[i] : i);
+
+                if (shareable && !sel.isMatchedOnNameIdAndClass()) {
+                    // Whether or not it matches this element, it may match differently for a
+                    // sibling with the same name, id and class.
+                    shareable = false;
                 }
 
                 if (!sel.matches(e, _attRes, _treeRes)) {
@@ -363,11 +423,11 @@ public class Matcher {
                 } else if (chain.getAxis() == Selector.IMMEDIATE_SIBLING_AXIS) {
                     throw new RuntimeException();
                 } else {
-                    if (childAxes == null) {
-                        childAxes = new ArrayList<>();
+                    if (chainedFrom == null) {
+                        chainedFrom = new ArrayList<>();
                     }
 
-                    childAxes.add(chain);
+                    chainedFrom.add(sel);
                 }
             }
 
@@ -375,25 +435,98 @@ public class Matcher {
                 children = new HashMap<>();
             }
 
-            List<Selector> normalisedChildAxes = childAxes == null ? Collections.emptyList() : childAxes;
-            List<Selector> normalisedMappedSelectors = mappedSelectors == null ? Collections.emptyList() : mappedSelectors;
-            Map<String, List<Selector>> normalisedPseudoSelectors = pseudoSelectors == null ? Collections.emptyMap() : pseudoSelectors;
+            Mapper childMapper = children.get(key.toString());
+
+            if (childMapper == null) {
+                // The child axes only depend on the selectors that matched, so are
+                // only worked out for the first element with this key.
+                List<Selector> normalisedChildAxes = getChildAxes(chainedFrom);
+                List<Selector> normalisedMappedSelectors = mappedSelectors == null ? Collections.emptyList() : mappedSelectors;
+                Map<String, List<Selector>> normalisedPseudoSelectors = pseudoSelectors == null ? Collections.emptyMap() : pseudoSelectors;
 
-            Mapper childMapper = children.computeIfAbsent(
-                    key.toString(),
-                    kee -> new Mapper(
+                childMapper = new Mapper(
                         normalisedChildAxes,
                         normalisedMappedSelectors,
-                        normalisedPseudoSelectors));
+                        normalisedPseudoSelectors);
+
+                children.put(key.toString(), childMapper);
+            }
 
             link(e, childMapper);
 
+            lastChildName = name;
+            lastChildId = id;
+            lastChildClass = className;
+            lastChildMapper = shareable ? childMapper : null;
+
             return childMapper;
         }
 
+        /**
+         * Returns the selectors to match the children of an element against: the descendant
+         * selectors, carried forward, and the chained selectors of the selectors (in chainedFrom)
+         * that matched the element, in axes order.
+         * <br><br>
+         * When the ancestor part of a selector matches nested elements (say <code>.theme .x td</code>
+         * with nested <code>.theme</code> elements) its chained selector is added at each level, while
+         * also being carried forward from the level above. Such duplicates match exactly the same
+         * elements, so are dropped rather than letting the axes grow with the depth of the document.
+         * A selector and its chained selectors share a cascade position, so duplicates are adjacent.
+         */
+        private List<Selector> getChildAxes(List<Selector> chainedFrom) {
+            List<Selector> childAxes = new ArrayList<>();
+            int next = 0;
+
+            for (Selector sel : axes) {
+                if (sel.getAxis() == Selector.DESCENDANT_AXIS) {
+                    // Carry it forward to other descendants
+                    addAxis(childAxes, sel);
+                } else if (sel.getAxis() == Selector.IMMEDIATE_SIBLING_AXIS) {
+                    throw new RuntimeException();
+                }
+
+                if (chainedFrom != null && next < chainedFrom.size() && chainedFrom.get(next) == sel) {
+                    addAxis(childAxes, sel.getChainedSelector());
+                    next++;
+                }
+            }
+
+            return childAxes.isEmpty() ? Collections.emptyList() : childAxes;
+        }
+
+        private void addAxis(List<Selector> childAxes, Selector sel) {
+            int size = childAxes.size();
+
+            if (size == 0 || childAxes.get(size - 1) != sel) {
+                childAxes.add(sel);
+            }
+        }
+
         CascadedStyle getCascadedStyle(Object e) {
-            Ruleset elementStyling = getElementStyle(e);
-            Ruleset nonCssStyling = getNonCssStyle(e);
+            String elementStyle = getElementStyling(e);
+            String nonCssStyle = getNonCssStyling(e);
+
+            // Elements with this mapper and the same inline styles have the same cascaded style.
+            // Sharing it also means CalculatedStyle.deriveStyle finds the derived style
+            // of a sibling by the fingerprint already worked out for the sibling.
+            if (lastCascadedStyle != null &&
+                Objects.equals(elementStyle, lastElementStyling) &&
+                Objects.equals(nonCssStyle, lastNonCssStyling)) {
+                return lastCascadedStyle;
+            }
+
+            CascadedStyle cascaded = createCascadedStyle(elementStyle, nonCssStyle);
+
+            lastCascadedStyle = cascaded;
+            lastElementStyling = elementStyle;
+            lastNonCssStyling = nonCssStyle;
+
+            return cascaded;
+        }
+
+        private CascadedStyle createCascadedStyle(String elementStyle, String nonCssStyle) {
+            Ruleset elementStyling = parseStyle(elementStyle);
+            Ruleset nonCssStyling = parseStyle(nonCssStyle);
 
             List<PropertyDeclaration> propList = new ArrayList<>();
 
@@ -388,13 +388,21 @@ public class Selector {
      * @return The order value
      */
     String getOrder() {
+        return getOrder(_pos);
+    }
+
+    /**
+     * As {@link #getOrder()} but with the given specification order rather
+     * than the one set with {@link #setPos(int)}.
+     */
+    String getOrder(int pos) {
         if (chainedSelector != null) {
-            return chainedSelector.getOrder();
+            return chainedSelector.getOrder(pos);
         }//only "deepest" value is correct
         String b = "000" + getSpecificityB();
         String c = "000" + getSpecificityC();
         String d = "000" + getSpecificityD();
-        String p = "00000" + _pos;
+        String p = "00000" + pos;
         return "0" + b.substring(b.length() - 3) + c.substring(c.length() - 3) + d.substring(d.length() - 3) + p.substring(p.length() - 5);
     }
 
@@ -518,6 +526,62 @@ public class Selector {
     public int getSelectorID() {
         return selectorID;
     }
+
+    /**
+     * The element name this selector (not its chain) requires or null for any element.
+     */
+    String getName() {
+        return _name;
+    }
+
+    /**
+     * The id this selector (not its chain) requires or null.
+     */
+    String getRequiredID() {
+        if (conditions != null) {
+            for (Condition c : conditions) {
+                String id = c.getRequiredID();
+                if (id != null) {
+                    return id;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Whether matching this selector (not its chain) only depends on the name, id and class
+     * of an element, so that elements alike in these are always matched alike. Selectors with
+     * sibling, positional, attribute, language, link or dynamic conditions depend on more.
+     */
+    boolean isMatchedOnNameIdAndClass() {
+        if (siblingSelector != null || _namespaceURI != null || _pc != 0) {
+            return false;
+        }
+        if (conditions != null) {
+            for (Condition c : conditions) {
+                if (c.getRequiredID() == null && c.getRequiredClass() == null) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * A class this selector (not its chain) requires or null.
+     */
+    String getRequiredClass() {
+        if (conditions != null) {
+            for (Condition c : conditions) {
+                String className = c.getRequiredClass();
+                if (className != null) {
+                    return className;
+                }
+            }
+        }
+        return null;
+    }
     
     public void setName(String name) {
         _name = name;
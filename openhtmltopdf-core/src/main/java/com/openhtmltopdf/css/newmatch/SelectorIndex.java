@@ -0,0 +1,136 @@
+package com.openhtmltopdf.css.newmatch;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.openhtmltopdf.css.extend.AttributeResolver;
+import com.openhtmltopdf.css.extend.TreeResolver;
+
+/**
+ * Buckets a list of selectors by the id, class or element name each one requires,
+ * so that an element is only tested against selectors that could match it.
+ * <br><br>
+ * Each selector goes in one bucket: its id if it has one, otherwise a class, otherwise
+ * its element name and otherwise the universal bucket. Buckets hold positions in the
+ * list, so candidates can be returned in list (that is, cascade) order.
+ */
+final class SelectorIndex {
+    private static final int[] EMPTY = new int[0];
+
+    private final Map<String, int[]> _byId = new HashMap<>();
+    private final Map<String, int[]> _byClass = new HashMap<>();
+    private final Map<String, int[]> _byName = new HashMap<>();
+    private final int[] _universal;
+
+    SelectorIndex(List<Selector> selectors) {
+        Map<String, IntList> byId = new HashMap<>();
+        Map<String, IntList> byClass = new HashMap<>();
+        Map<String, IntList> byName = new HashMap<>();
+        IntList universal = new IntList();
+
+        for (int i = 0; i < selectors.size(); i++) {
+            Selector sel = selectors.get(i);
+            String id = sel.getRequiredID();
+            String className = id == null ? sel.getRequiredClass() : null;
+
+            if (id != null) {
+                byId.computeIfAbsent(id, k -> new IntList()).add(i);
+            } else if (className != null) {
+                byClass.computeIfAbsent(className, k -> new IntList()).add(i);
+            } else if (sel.getName() != null) {
+                byName.computeIfAbsent(sel.getName(), k -> new IntList()).add(i);
+            } else {
+                universal.add(i);
+            }
+        }
+
+        byId.forEach((k, v) -> _byId.put(k, v.toArray()));
+        byClass.forEach((k, v) -> _byClass.put(k, v.toArray()));
+        byName.forEach((k, v) -> _byName.put(k, v.toArray()));
+        _universal = universal.toArray();
+    }
+
+    /**
+     * Returns, in ascending order, the positions of the selectors that may match e.
+     * Selectors not returned can not match e.
+     */
+    int[] getCandidates(Object e, AttributeResolver attRes, TreeResolver treeRes) {
+        int[] byName = _byName.isEmpty() ? null : _byName.get(treeRes.getElementName(e));
+        int[] byId = null;
+        String classes = null;
+
+        if (attRes != null) {
+            if (!_byId.isEmpty()) {
+                String id = attRes.getID(e);
+                byId = id != null ? _byId.get(id) : null;
+            }
+
+            if (!_byClass.isEmpty()) {
+                classes = attRes.getClass(e);
+            }
+        }
+
+        IntList result = new IntList();
+        result.addAll(_universal);
+        result.addAll(byName);
+        result.addAll(byId);
+
+        if (classes != null && !classes.isEmpty()) {
+            // Class conditions compare space separated words, see Condition.ClassCondition.
+            for (String className : classes.split(" ")) {
+                result.addAll(_byClass.get(className));
+            }
+        }
+
+        return result.toSortedSet();
+    }
+
+    private static final class IntList {
+        private int[] _values = new int[8];
+        private int _size;
+
+        void add(int value) {
+            if (_size == _values.length) {
+                _values = Arrays.copyOf(_values, _size * 2);
+            }
+            _values[_size++] = value;
+        }
+
+        void addAll(int[] values) {
+            if (values == null || values.length == 0) {
+                return;
+            }
+            if (_size + values.length > _values.length) {
+                _values = Arrays.copyOf(_values, Math.max(_size * 2, _size + values.length));
+            }
+            System.arraycopy(values, 0, _values, _size, values.length);
+            _size += values.length;
+        }
+
+        int[] toArray() {
+            return _size == 0 ? EMPTY : Arrays.copyOf(_values, _size);
+        }
+
+        /**
+         * Sorts and removes duplicates, which are possible if an element lists a class twice.
+         */
+        int[] toSortedSet() {
+            if (_size == 0) {
+                return EMPTY;
+            }
+
+            Arrays.sort(_values, 0, _size);
+
+            int unique = 1;
+            for (int i = 1; i < _size; i++) {
+                if (_values[i] != _values[unique - 1]) {
+                    _values[unique++] = _values[i];
+                }
+            }
+
+            return Arrays.copyOf(_values, unique);
+        }
+    }
+}
@@ -26,6 +26,7 @@ import com.openhtmltopdf.css.extend.TreeResolver;
 import com.openhtmltopdf.css.newmatch.Selector;
 import com.openhtmltopdf.css.parser.property.PropertyBuilder;
 import com.openhtmltopdf.css.sheet.*;
+import com.openhtmltopdf.extend.UserAgentCallback;
 import com.openhtmltopdf.util.LogMessageId;
 import com.openhtmltopdf.util.ThreadCtx;
 import com.openhtmltopdf.util.XRLog;
@@ -58,14 +59,34 @@ public class CSSParser {
     private Lexer _lexer;
 
     private CSSErrorHandler _errorHandler;
+    private UserAgentCallback _userAgentCallback;
     private String _URI;
 
     private Map<String, String> _namespaces = new HashMap<>();
     private boolean _supportCMYKColors;
 
     public CSSParser(CSSErrorHandler errorHandler) {
+        this(errorHandler, null);
+    }
+
+    /**
+     * @param userAgentCallback used to resolve relative URIs in stylesheets. If null,
+     * the user agent of the shared context registered with the current thread is used.
+     */
+    public CSSParser(CSSErrorHandler errorHandler, UserAgentCallback userAgentCallback) {
         _lexer = new Lexer(new StringReader(""));
         _errorHandler = errorHandler;
+        _userAgentCallback = userAgentCallback;
+    }
+
+    public void setUserAgentCallback(UserAgentCallback userAgentCallback) {
+        _userAgentCallback = userAgentCallback;
+    }
+
+    private UserAgentCallback getUserAgentCallback() {
+        return _userAgentCallback != null ?
+                _userAgentCallback :
+                ThreadCtx.get().sharedContext().getUserAgentCallback();
     }
 
     public Stylesheet parseStylesheet(String uri, int origin, Reader reader)
@@ -81,7 +102,7 @@ public class CSSParser {
 
     public Ruleset parseDeclaration(int origin, String text) {
         try {
-            _URI = ThreadCtx.get().sharedContext().getBaseURL();
+            _URI = getUserAgentCallback().getBaseURL();
             reset(new StringReader(text));
 
             skip_whitespace();
@@ -256,7 +277,7 @@ public class CSSParser {
                     	String uri = getTokenValue(t);
                     	String baseUri = stylesheet.getURI();
                     	
-                    	String resolved = ThreadCtx.get().sharedContext().getUserAgentCallback().resolveUri(baseUri, uri);
+                    	String resolved = getUserAgentCallback().resolveUri(baseUri, uri);
                     	
                     	if (resolved == null) {
                     	    XRLog.log(Level.INFO, LogMessageId.LogMessageId1Param.LOAD_URI_RESOLVER_REJECTED_RESOLVING_CSS_IMPORT_AT_URI, uri);
@@ -1959,7 +1980,7 @@ public class CSSParser {
                 }
 
                 String uriResult = processEscapes(ch, start, end+1);
-                String uriResolved = ThreadCtx.get().sharedContext().getUserAgentCallback().resolveUri(_URI, uriResult);
+                String uriResolved = getUserAgentCallback().resolveUri(_URI, uriResult);
 
                 if (uriResolved == null) {
                     XRLog.log(Level.INFO, LogMessageId.LogMessageId1Param.LOAD_URI_RESOLVER_REJECTED_RESOLVING_URI_AT_URI_IN_CSS_STYLESHEET, uriResult);
@@ -22,6 +22,8 @@ package com.openhtmltopdf.css.sheet;
 import java.util.ArrayList;
 import java.util.List;
 
+import com.openhtmltopdf.extend.FSCacheValue;
+
 
 /**
  * A representation of a CSS style sheet. A Stylesheet has the sheet's rules in
@@ -34,7 +36,7 @@ import java.util.List;
  * @author Torbjoern Gannholm
  * @author Patrick Wright
  */
-public class Stylesheet implements RulesetContainer {
+public class Stylesheet implements RulesetContainer, FSCacheValue {
 
 	private final String _uri;
     
@@ -116,6 +118,11 @@ public class Stylesheet implements RulesetContainer {
     public List<FontFaceRule> getFontFaceRules() {
         return _fontFaceRules;
     }
+
+    @Override
+    public int weight() {
+        return -1;
+    }
 }
 
 /*
@@ -4,8 +4,10 @@ import com.openhtmltopdf.context.StyleReference;
 import com.openhtmltopdf.css.value.FontSpecification;
 import com.openhtmltopdf.extend.FontContext;
 import com.openhtmltopdf.extend.TextRenderer;
+import com.openhtmltopdf.layout.SharedContext;
 import com.openhtmltopdf.render.FSFont;
 import com.openhtmltopdf.render.FSFontMetrics;
+import com.openhtmltopdf.util.ThreadCtx;
 
 /**
  * Created by IntelliJ IDEA.
@@ -35,4 +37,16 @@ public interface CssContext {
     FontContext getFontContext();
     
     TextRenderer getTextRenderer();
+
+    /**
+     * The shared context of the render this context belongs to. Code that needs
+     * render wide state should get it from here rather than from
+     * {@link ThreadCtx} so that a render is not tied to one thread.
+     * <br><br>
+     * The default, for implementations that predate this method, falls back to
+     * the shared context registered with the current thread.
+     */
+    default SharedContext getSharedContext() {
+        return ThreadCtx.get().sharedContext();
+    }
 }
@@ -118,7 +118,7 @@ public class BoxBuilder {
     }
 
     public static void createChildren(LayoutContext c, BlockBox parent) {
-        if (parent.shouldBeReplaced()) {
+        if (parent.shouldBeReplaced(c)) {
             parent.setChildrenContentType(BlockBox.CONTENT_EMPTY);
             return;
         }
@@ -974,7 +974,7 @@ public class BoxBuilder {
                    InlineBox iB = (InlineBox) b;
 
                    iB.setStyle(anon);
-                   iB.applyTextTransform();
+                   iB.applyTextTransform(c);
                    iB.setElement(null);
 
                    inlines.add(iB);
@@ -989,7 +989,7 @@ public class BoxBuilder {
             for (Iterator<Styleable> i = inlineBoxes.iterator(); i.hasNext();) {
                 InlineBox iB = (InlineBox) i.next();
                 iB.setStyle(style);
-                iB.applyTextTransform();
+                iB.applyTextTransform(c);
             }
             return inlineBoxes;
         } else {
@@ -997,7 +997,7 @@ public class BoxBuilder {
             for (Iterator<Styleable> i = inlineBoxes.iterator(); i.hasNext();) {
                 InlineBox iB = (InlineBox) i.next();
                 iB.setStyle(anon);
-                iB.applyTextTransform();
+                iB.applyTextTransform(c);
                 iB.setElement(null);
             }
 
@@ -1029,7 +1029,7 @@ public class BoxBuilder {
                 InlineBox iB = (InlineBox)s;
                 iB.setElement(null);
                 iB.setStyle(anon);
-                iB.applyTextTransform();
+                iB.applyTextTransform(c);
             }
         }
 
@@ -1105,7 +1105,7 @@ public class BoxBuilder {
     }
 
     private static InlineBox createInlineBox(
-            String text, Element parent, CalculatedStyle parentStyle, Text node) {
+            LayoutContext c, String text, Element parent, CalculatedStyle parentStyle, Text node) {
         InlineBox result = new InlineBox(text);
 
         if (parentStyle.isInline() && ! (parent.getParentNode() instanceof Document)) {
@@ -1115,7 +1115,7 @@ public class BoxBuilder {
             result.setStyle(parentStyle.createAnonymousStyle(IdentValue.INLINE));
         }
 
-        result.applyTextTransform();
+        result.applyTextTransform(c);
 
         return result;
     }
@@ -1145,6 +1145,8 @@ public class BoxBuilder {
                         continue;
                     }
 
+                    sharedContext.getResourceBudget().countBox();
+
                     Integer start = null;
 					if ("ol".equals(working.getNodeName())) {
 						Node startAttribute = working.getAttributes().getNamedItem("start");
@@ -1182,7 +1184,7 @@ public class BoxBuilder {
                     if (style.isInline()) {
                         if (needStartText) {
                             needStartText = false;
-                            InlineBox iB = createInlineBox("", parent, parentStyle, null);
+                            InlineBox iB = createInlineBox(c, "", parent, parentStyle, null);
                             iB.setStartsHere(true);
                             iB.setEndsHere(false);
                             children.add(iB);
@@ -1246,6 +1248,8 @@ public class BoxBuilder {
                     needStartText = false;
                     needEndText = false;
 
+                    sharedContext.getResourceBudget().countBox();
+
                     Text textNode = (Text) working;
 
                     // Ignore the text belonging to a textarea.
@@ -1261,7 +1265,7 @@ public class BoxBuilder {
             } while ((working = working.getNextSibling()) != null);
         }
         if (needStartText || needEndText) {
-            InlineBox iB = createInlineBox("", parent, parentStyle, null);
+            InlineBox iB = createInlineBox(c, "", parent, parentStyle, null);
             iB.setStartsHere(needStartText);
             iB.setEndsHere(needEndText);
             children.add(iB);
@@ -1283,7 +1287,7 @@ public class BoxBuilder {
     
     private static InlineBox doFakeBidi(LayoutContext c, Text textNode, Element parent, CalculatedStyle parentStyle, InlineBox previousIB, List<Styleable> children) {
     	String runText = textNode.getData();
-    	InlineBox child = createInlineBox(runText, parent, parentStyle, textNode);
+    	InlineBox child = createInlineBox(c, runText, parent, parentStyle, textNode);
     	child.setTextDirection(BidiSplitter.LTR);
     	previousIB = setupInlineChild(child, previousIB);
        	children.add(child);
@@ -1346,7 +1350,7 @@ public class BoxBuilder {
 			runText = c.getBidiReorderer().shapeText(runText);
 		}
 
-       	InlineBox child = createInlineBox(runText, parent, parentStyle, textNode);
+       	InlineBox child = createInlineBox(c, runText, parent, parentStyle, textNode);
        	child.setTextDirection(prevSplit.getDirection());
        	previousIB = setupInlineChild(child, previousIB);
        	children.add(child);
@@ -1375,7 +1379,7 @@ public class BoxBuilder {
         			startIndex += newLength;
         			nodeIndex += newLength;
         			
-        			child = createInlineBox(runText, parent, parentStyle, textNode);
+        			child = createInlineBox(c, runText, parent, parentStyle, textNode);
         			child.setTextDirection(newSplit.getDirection());
         	       	previousIB = setupInlineChild(child, previousIB);
         	       	children.add(child);
@@ -1386,7 +1390,7 @@ public class BoxBuilder {
         			newLength = textNode.getLength() - nodeIndex;
         			runText = textNode.getData().substring(nodeIndex, newLength);
         			
-        			child = createInlineBox(runText, parent, parentStyle, textNode);
+        			child = createInlineBox(c, runText, parent, parentStyle, textNode);
         			child.setTextDirection(c.getDefaultTextDirection());
         	       	previousIB = setupInlineChild(child, previousIB);
         	       	children.add(child);
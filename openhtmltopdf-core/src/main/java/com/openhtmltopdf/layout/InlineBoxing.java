@@ -205,6 +205,9 @@ public class InlineBoxing {
                     }
 
                     if (lbContext.isNeedsNewLine()) {
+                        // A single text node may produce many thousands of lines.
+                        c.getSharedContext().checkCancelled();
+
                         lbContext.newLine();
 
                         startNewInlineLine(c, box, breakAtLine, blockLayoutDirection, space, current, previous,
@@ -362,7 +365,7 @@ public class InlineBoxing {
                 contentStart, isAlwaysBreak(c, box, breakAtLine, lineOffset));
 
         if (current.line.isFirstLine() && hasFirstLinePEs) {
-            lbContext.setMaster(TextUtil.transformText(inlineBox.getText(), inlineBox.getStyle()));
+            lbContext.setMaster(TextUtil.transformText(c, inlineBox.getText(), inlineBox.getStyle()));
         }
         
         previous.line = current.line;
@@ -1118,7 +1121,7 @@ public class InlineBoxing {
         String masterText = lbContext.getMaster();
 
         if (needFirstLetter) {
-            masterText = TextUtil.transformFirstLetterText(masterText, style);
+            masterText = TextUtil.transformFirstLetterText(c, masterText, style);
             lbContext.setMaster(masterText);
             Breaker.breakFirstLetter(c, lbContext, remainingWidth, style);
         } else {
@@ -1053,6 +1053,8 @@ public class Layer {
         }
 
         List<PageBox> pages = getPages();
+        c.getSharedContext().getResourceBudget().checkPageCount(pages.size() + 1);
+
         if (pages.size() == 0) {
             pseudoPage = "first";
         } else if (pages.size() % 2 == 0) {
@@ -29,7 +29,9 @@ import com.openhtmltopdf.render.FSFont;
 import com.openhtmltopdf.render.FSFontMetrics;
 import com.openhtmltopdf.render.RenderingContext;
 import com.openhtmltopdf.swing.AWTFontResolver;
+import com.openhtmltopdf.util.CancellationToken;
 import com.openhtmltopdf.util.LogMessageId;
+import com.openhtmltopdf.util.ResourceBudget;
 import com.openhtmltopdf.util.ThreadCtx;
 import com.openhtmltopdf.util.XRLog;
 import org.w3c.dom.Document;
@@ -125,6 +127,9 @@ public class SharedContext {
 
 	public String _preferredTransformerFactoryImplementationClass = null;
 	public String _preferredDocumentBuilderFactoryImplementationClass = null;
+
+	private CancellationToken cancellationToken;
+	private ResourceBudget resourceBudget = ResourceBudget.unlimited();
     
     public SharedContext() {
     }
@@ -398,6 +403,29 @@ public class SharedContext {
         this.interactive = interactive;
     }
 
+    public void setCancellationToken(CancellationToken cancellationToken) {
+        this.cancellationToken = cancellationToken;
+    }
+
+    /**
+     * Called at safe points during layout and painting.
+     * @throws com.openhtmltopdf.util.RenderCancelledException if the render has been cancelled
+     * or its deadline has passed.
+     */
+    public void checkCancelled() {
+        if (cancellationToken != null) {
+            cancellationToken.throwIfCancelled();
+        }
+    }
+
+    public ResourceBudget getResourceBudget() {
+        return resourceBudget;
+    }
+
+    public void setResourceBudget(ResourceBudget resourceBudget) {
+        this.resourceBudget = resourceBudget;
+    }
+
     public boolean isPrint() {
         return print;
     }
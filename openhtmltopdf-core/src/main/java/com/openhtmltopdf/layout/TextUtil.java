@@ -25,6 +25,7 @@ import java.util.Locale;
 import com.openhtmltopdf.css.constants.CSSName;
 import com.openhtmltopdf.css.constants.IdentValue;
 import com.openhtmltopdf.css.style.CalculatedStyle;
+import com.openhtmltopdf.css.style.CssContext;
 import com.openhtmltopdf.extend.FSTextBreaker;
 import com.openhtmltopdf.extend.FSTextTransformer;
 import com.openhtmltopdf.util.ThreadCtx;
@@ -106,12 +107,23 @@ public class TextUtil {
 		}
 	}
 
+    /**
+     * @deprecated Use {@link #transformText(CssContext, String, CalculatedStyle)} which
+     * does not depend on the shared context being registered with the current thread.
+     */
+    @Deprecated
     public static String transformText( String text, CalculatedStyle style ) {
+        return transformText(ThreadCtx.get().sharedContext(), text, style);
+    }
+
+    public static String transformText( CssContext c, String text, CalculatedStyle style ) {
+        return transformText(c.getSharedContext(), text, style);
+    }
+
+    private static String transformText( SharedContext ctx, String text, CalculatedStyle style ) {
         IdentValue transform = style.getIdent( CSSName.TEXT_TRANSFORM );
         IdentValue fontVariant = style.getIdent( CSSName.FONT_VARIANT );
-        
-        SharedContext ctx = ThreadCtx.get().sharedContext();
-        
+
         if ( transform == IdentValue.LOWERCASE ) {
             text = ctx.getUnicodeToLowerTransformer().transform(text);
         }
@@ -126,10 +138,18 @@ public class TextUtil {
         return text;
     }
 
+    /**
+     * @deprecated Use {@link #transformFirstLetterText(CssContext, String, CalculatedStyle)}.
+     */
+    @Deprecated
     public static String transformFirstLetterText( String text, CalculatedStyle style ) {
     	return transformText(text, style);
     }
 
+    public static String transformFirstLetterText( CssContext c, String text, CalculatedStyle style ) {
+        return transformText(c, text, style);
+    }
+
     /**
      * According to the CSS spec the first letter includes certain punctuation immediately
      * preceding or following the actual first letter.
@@ -221,6 +221,8 @@ public class TableBox extends BlockBox {
 
     @Override
     public void layout(LayoutContext c) {
+        c.getSharedContext().checkCancelled();
+
         calcMinMaxWidth(c);
         calcDimensions(c);
         calcWidth();
@@ -2,10 +2,12 @@ package com.openhtmltopdf.outputdevice.helper;
 
 import com.openhtmltopdf.bidi.BidiReorderer;
 import com.openhtmltopdf.bidi.BidiSplitterFactory;
+import com.openhtmltopdf.context.StyleDeclarationCache;
 import com.openhtmltopdf.extend.*;
 import com.openhtmltopdf.layout.Layer;
 import com.openhtmltopdf.swing.NaiveUserAgent;
 
+import com.openhtmltopdf.util.CancellationToken;
 import com.openhtmltopdf.util.Diagnostic;
 import com.openhtmltopdf.util.ThreadCtx;
 import org.w3c.dom.Document;
@@ -71,6 +73,58 @@ public abstract class BaseRendererBuilder<TFinalClass extends BaseRendererBuilde
 		public String _preferredDocumentBuilderFactoryImplementationClass = "com.sun.org.apache.xerces.internal.jaxp.DocumentBuilderFactoryImpl";
 		public boolean _useFastRenderer = true;
 		public Consumer<Diagnostic> _diagnosticConsumer;
+		public CancellationToken _cancellationToken;
+		public int _maxPages;
+		public int _maxBoxes;
+		public long _maxResourceBytes;
+		public long _maxImagePixels;
+		public StyleDeclarationCache _styleDeclarationCache;
+
+		/**
+		 * Copies all settings from other into this state. Collections are copied,
+		 * the objects in them (fonts, mutators, stream factories, etc) are shared.
+		 */
+		protected void copyFrom(BaseRendererBuilderState other) {
+			_fonts.addAll(other._fonts);
+			_domMutators.addAll(other._domMutators);
+			_beforeAccessController = other._beforeAccessController;
+			_afterAccessController = other._afterAccessController;
+			_streamFactoryMap.putAll(other._streamFactoryMap);
+			_resolver = other._resolver;
+			_html = other._html;
+			_baseUri = other._baseUri;
+			_document = other._document;
+			_svgImpl = other._svgImpl;
+			_mathmlImpl = other._mathmlImpl;
+			_replacementText = other._replacementText;
+			_lineBreaker = other._lineBreaker;
+			_charBreaker = other._charBreaker;
+			_unicodeToUpperTransformer = other._unicodeToUpperTransformer;
+			_unicodeToLowerTransformer = other._unicodeToLowerTransformer;
+			_unicodeToTitleTransformer = other._unicodeToTitleTransformer;
+			_splitter = other._splitter;
+			_reorderer = other._reorderer;
+			_textDirection = other._textDirection;
+			_pageWidth = other._pageWidth;
+			_pageHeight = other._pageHeight;
+			_isPageSizeInches = other._isPageSizeInches;
+			_uri = other._uri;
+			_file = other._file;
+			_testMode = other._testMode;
+			_initialPageNumber = other._initialPageNumber;
+			_pagingMode = other._pagingMode;
+			_objectDrawerFactory = other._objectDrawerFactory;
+			_preferredTransformerFactoryImplementationClass = other._preferredTransformerFactoryImplementationClass;
+			_preferredDocumentBuilderFactoryImplementationClass = other._preferredDocumentBuilderFactoryImplementationClass;
+			_useFastRenderer = other._useFastRenderer;
+			_diagnosticConsumer = other._diagnosticConsumer;
+			_cancellationToken = other._cancellationToken;
+			_maxPages = other._maxPages;
+			_maxBoxes = other._maxBoxes;
+			_maxResourceBytes = other._maxResourceBytes;
+			_maxImagePixels = other._maxImagePixels;
+			_styleDeclarationCache = other._styleDeclarationCache;
+		}
     }
 
 	protected final TBaseRendererBuilderState state;
@@ -590,6 +644,88 @@ public abstract class BaseRendererBuilder<TFinalClass extends BaseRendererBuilde
 		return (TFinalClass) this;
 	}
 
+	/**
+	 * Allows the render to be aborted from another thread or once a deadline has passed.
+	 * Layout and painting check the token at safe points and throw a
+	 * {@link com.openhtmltopdf.util.RenderCancelledException} when it is cancelled.
+	 * <br><br>
+	 * For a deadline use {@link CancellationToken#withTimeout(long, java.util.concurrent.TimeUnit)},
+	 * which starts counting when the token is created.
+	 *
+	 * @param token the token or null for none (the default)
+	 * @return this for method chaining
+	 */
+	public TFinalClass useCancellationToken(CancellationToken token) {
+		state._cancellationToken = token;
+		return (TFinalClass) this;
+	}
+
+	/**
+	 * Sets the maximum number of pages a document may lay out to. If exceeded, the render
+	 * is aborted with a {@link com.openhtmltopdf.util.ResourceLimitExceededException}.
+	 *
+	 * @param maxPages the maximum or zero for unlimited (the default)
+	 * @return this for method chaining
+	 */
+	public TFinalClass useMaxPages(int maxPages) {
+		state._maxPages = maxPages;
+		return (TFinalClass) this;
+	}
+
+	/**
+	 * Sets the maximum number of boxes that may be built for the elements and text of
+	 * a document. If exceeded, the render is aborted with a
+	 * {@link com.openhtmltopdf.util.ResourceLimitExceededException}.
+	 *
+	 * @param maxBoxes the maximum or zero for unlimited (the default)
+	 * @return this for method chaining
+	 */
+	public TFinalClass useMaxBoxes(int maxBoxes) {
+		state._maxBoxes = maxBoxes;
+		return (TFinalClass) this;
+	}
+
+	/**
+	 * Sets the maximum total number of bytes that may be read from external resources
+	 * (stylesheets, images, fonts, etc) fetched through the user agent. Text resources are
+	 * counted in characters. If exceeded, the render is aborted with a
+	 * {@link com.openhtmltopdf.util.ResourceLimitExceededException}.
+	 *
+	 * @param maxBytes the maximum or zero for unlimited (the default)
+	 * @return this for method chaining
+	 */
+	public TFinalClass useMaxResourceBytes(long maxBytes) {
+		state._maxResourceBytes = maxBytes;
+		return (TFinalClass) this;
+	}
+
+	/**
+	 * Sets the maximum width times height of any one raster image. Images are checked
+	 * before they are decoded. If exceeded, the render is aborted with a
+	 * {@link com.openhtmltopdf.util.ResourceLimitExceededException}.
+	 * Currently only enforced for PDF output.
+	 *
+	 * @param maxPixels the maximum or zero for unlimited (the default)
+	 * @return this for method chaining
+	 */
+	public TFinalClass useMaxImagePixels(long maxPixels) {
+		state._maxImagePixels = maxPixels;
+		return (TFinalClass) this;
+	}
+
+	/**
+	 * Uses a cache of parsed style attributes, which may be shared by renders (and threads)
+	 * so that a <code>style="..."</code> repeated across elements and documents is parsed once.
+	 *
+	 * @param cache the cache or null for none (the default)
+	 * @return this for method chaining
+	 * @see StyleDeclarationCache
+	 */
+	public TFinalClass useStyleDeclarationCache(StyleDeclarationCache cache) {
+		state._styleDeclarationCache = cache;
+		return (TFinalClass) this;
+	}
+
 	protected Closeable applyDiagnosticConsumer() {
 		return ThreadCtx.applyDiagnosticConsumer(state._diagnosticConsumer);
 	}
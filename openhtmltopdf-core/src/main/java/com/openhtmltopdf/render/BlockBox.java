@@ -53,6 +53,7 @@ import com.openhtmltopdf.layout.InlinePaintable;
 import com.openhtmltopdf.layout.LayoutContext;
 import com.openhtmltopdf.layout.PaintingInfo;
 import com.openhtmltopdf.layout.PersistentBFC;
+import com.openhtmltopdf.layout.SharedContext;
 import com.openhtmltopdf.layout.Styleable;
 import com.openhtmltopdf.newtable.TableRowBox;
 import com.openhtmltopdf.util.ThreadCtx;
@@ -110,7 +111,7 @@ public class BlockBox extends Box implements InlinePaintable {
 
     private boolean _fromCaptionedTable;
     
-    private boolean _isReplaced;
+    private Boolean _isReplaced;
 
     public BlockBox() {
         super();
@@ -119,7 +120,7 @@ public class BlockBox extends Box implements InlinePaintable {
     @Override
     public void setElement(Element element) {
     	super.setElement(element);
-    	_isReplaced = ThreadCtx.get().sharedContext().getReplacedElementFactory().isReplacedElement(element);
+    	_isReplaced = null;
     }
 
     public BlockBox copyOf() {
@@ -424,8 +425,28 @@ public class BlockBox extends Box implements InlinePaintable {
         _staticEquivalent = staticEquivalent;
     }
 
+    /**
+     * @deprecated Use {@link #shouldBeReplaced(CssContext)} which does not depend
+     * on the shared context being registered with the current thread.
+     */
+    @Deprecated
     public boolean shouldBeReplaced() {
-    	return _isReplaced;
+    	return shouldBeReplaced(ThreadCtx.get().sharedContext());
+    }
+
+    /**
+     * Whether the replaced element factory will supply a replaced element for
+     * this box's element. The answer is cached until the element changes.
+     */
+    public boolean shouldBeReplaced(CssContext c) {
+        return shouldBeReplaced(c.getSharedContext());
+    }
+
+    private boolean shouldBeReplaced(SharedContext sharedContext) {
+        if (_isReplaced == null) {
+            _isReplaced = sharedContext.getReplacedElementFactory().isReplacedElement(getElement());
+        }
+        return _isReplaced;
     }
     
     public boolean isReplaced() {
@@ -985,6 +1006,8 @@ public class BlockBox extends Box implements InlinePaintable {
     }
 
     public void layout(LayoutContext c, int contentStart) {
+        c.getSharedContext().checkCancelled();
+
         CalculatedStyle style = getStyle();
         boolean pushedLayer = false;
 
@@ -2015,7 +2038,7 @@ public class BlockBox extends Box implements InlinePaintable {
                     }
 
                     iB.setStyle(styles.getLast());
-                    iB.applyTextTransform();
+                    iB.applyTextTransform(c);
 
                     if (iB.isEndsHere()) {
                         styles.removeLast();
@@ -2329,7 +2352,7 @@ public class BlockBox extends Box implements InlinePaintable {
             String pageName = getStyle().getStringProperty(CSSName.PAGE);
             if (!pageName.equals(c.getPageName()) && 
                 isInDocumentFlow() &&
-                (shouldBeReplaced() || isContainsInlineContent(c))) {
+                (shouldBeReplaced(c) || isContainsInlineContent(c))) {
                 c.setPendingPageName(pageName);
                 return true;
             }
@@ -27,6 +27,7 @@ import com.openhtmltopdf.css.constants.IdentValue;
 import com.openhtmltopdf.css.extend.ContentFunction;
 import com.openhtmltopdf.css.parser.FSFunction;
 import com.openhtmltopdf.css.style.CalculatedStyle;
+import com.openhtmltopdf.css.style.CssContext;
 import com.openhtmltopdf.extend.FSTextBreaker;
 import com.openhtmltopdf.layout.Breaker;
 import com.openhtmltopdf.layout.LayoutContext;
@@ -109,11 +110,20 @@ public class InlineBox implements Styleable {
         _originalText = text;
     }
 
+    /**
+     * @deprecated Use {@link #applyTextTransform(CssContext)}.
+     */
+    @Deprecated
     public void applyTextTransform() {
         _text = _originalText;
         _text = TextUtil.transformText(_text, getStyle());
     }
 
+    public void applyTextTransform(CssContext c) {
+        _text = _originalText;
+        _text = TextUtil.transformText(c, _text, getStyle());
+    }
+
     public boolean isRemovableWhitespace() {
         return _removableWhitespace;
     }
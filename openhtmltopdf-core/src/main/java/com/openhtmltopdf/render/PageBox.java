@@ -46,7 +46,6 @@ import com.openhtmltopdf.layout.Layer;
 import com.openhtmltopdf.layout.LayoutContext;
 import com.openhtmltopdf.newtable.TableBox;
 import com.openhtmltopdf.render.simplepainter.SimplePainter;
-import com.openhtmltopdf.util.ThreadCtx;
 
 public class PageBox {
     private static final MarginArea[] MARGIN_AREA_DEFS = new MarginArea[] {
@@ -161,9 +160,9 @@ public class PageBox {
      * @return
      */
     private int resolveAutoPageWidth(CssContext cssCtx) {
-      if (ThreadCtx.get().sharedContext().getDefaultPageWidth() != null) {
-    	  float defaultPageWidth = ThreadCtx.get().sharedContext().getDefaultPageWidth();
-    	  boolean isInches = ThreadCtx.get().sharedContext().isDefaultPageSizeInches();
+      if (cssCtx.getSharedContext().getDefaultPageWidth() != null) {
+    	  float defaultPageWidth = cssCtx.getSharedContext().getDefaultPageWidth();
+    	  boolean isInches = cssCtx.getSharedContext().isDefaultPageSizeInches();
     	  return (int) LengthValue.calcFloatProportionalValue(getStyle(),
     			  CSSName.FS_PAGE_WIDTH, String.valueOf(defaultPageWidth), defaultPageWidth, isInches ? CSSPrimitiveValue.CSS_IN : CSSPrimitiveValue.CSS_MM, 0, cssCtx);
       }
@@ -185,9 +184,9 @@ public class PageBox {
      * @return
      */
     private int resolveAutoPageHeight(CssContext cssCtx) {
-        if (ThreadCtx.get().sharedContext().getDefaultPageHeight() != null) {
-      	  float defaultPageHeight = ThreadCtx.get().sharedContext().getDefaultPageHeight();
-      	  boolean isInches = ThreadCtx.get().sharedContext().isDefaultPageSizeInches();
+        if (cssCtx.getSharedContext().getDefaultPageHeight() != null) {
+      	  float defaultPageHeight = cssCtx.getSharedContext().getDefaultPageHeight();
+      	  boolean isInches = cssCtx.getSharedContext().isDefaultPageSizeInches();
       	  return (int) LengthValue.calcFloatProportionalValue(getStyle(),
       			  CSSName.FS_PAGE_WIDTH, String.valueOf(defaultPageHeight), defaultPageHeight, isInches ? CSSPrimitiveValue.CSS_IN : CSSPrimitiveValue.CSS_MM, 0, cssCtx);
         }
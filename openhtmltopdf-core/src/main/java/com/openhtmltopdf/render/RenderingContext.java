@@ -62,6 +62,10 @@ public class RenderingContext implements CssContext, Cloneable {
         this.sharedContext = sharedContext;
     }
     
+    public SharedContext getSharedContext() {
+        return sharedContext;
+    }
+
     public boolean isFastRenderer() {
     	return isFastRenderer;
     }
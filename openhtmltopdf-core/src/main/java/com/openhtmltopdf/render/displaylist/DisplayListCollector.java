@@ -51,7 +51,9 @@ public class DisplayListCollector {
 	
 	protected void addItem(DisplayListOperation item, List<PageInfo> pages, DisplayListContainer dlPages) {
 	    for (PageInfo pg : pages) {
-	        if (pg.shadowPageNumber == PageInfo.BASE_PAGE) {
+	        if (!isCollectedPage(pg, dlPages)) {
+	            continue;
+	        } else if (pg.shadowPageNumber == PageInfo.BASE_PAGE) {
 	            dlPages.getPageInstructions(pg.pageNumber).addOp(item);
 	        } else {
 	            dlPages.getPageInstructions(pg.pageNumber).getShadowPage(pg.shadowPageNumber).addOp(item);
@@ -61,7 +63,9 @@ public class DisplayListCollector {
 	
 	protected void addTransformItem(Box master, List<PageInfo> pages, DisplayListContainer dlPages) {
 	    for (PageInfo pg : pages) {
-	        if (pg.shadowPageNumber == PageInfo.BASE_PAGE) {
+	        if (!isCollectedPage(pg, dlPages)) {
+	            continue;
+	        } else if (pg.shadowPageNumber == PageInfo.BASE_PAGE) {
                 dlPages.getPageInstructions(pg.pageNumber).addOp(new PaintPushTransformLayer(master, -1));
             } else {
                 dlPages.getPageInstructions(pg.pageNumber).getShadowPage(pg.shadowPageNumber).addOp(new PaintPushTransformLayer(master, pg.shadowPageNumber));
@@ -69,11 +73,28 @@ public class DisplayListCollector {
 	    }
 	}
 
+	private static boolean isCollectedPage(PageInfo pg, DisplayListContainer dlPages) {
+	    return pg.pageNumber >= dlPages.getMinPage() && pg.pageNumber <= dlPages.getMaxPage();
+	}
+
 	/**
 	 * Use this method to collect all boxes recursively into a list of paint instructions
 	 * for each page.
 	 */
 	public DisplayListContainer collectRoot(RenderingContext c, Layer rootLayer) {
+		return collectRoot(c, rootLayer, 0, _pages.size() - 1);
+	}
+
+	/**
+	 * Like {@link #collectRoot(RenderingContext, Layer)} but only collects paint instructions
+	 * for pages minPage to maxPage inclusive. This allows the caller to collect the display
+	 * list for a window of pages just before painting them, rather than holding
+	 * the display list for the entire document in memory.
+	 * <br><br>
+	 * NOTE: Every call walks the entire box tree so collecting very small windows
+	 * trades CPU time for memory.
+	 */
+	public DisplayListContainer collectRoot(RenderingContext c, Layer rootLayer, int minPage, int maxPage) {
 		if (!rootLayer.isRootLayer()) {
 			return null;
 		}
@@ -81,7 +102,7 @@ public class DisplayListCollector {
 		// We propagate any transformation matrixes recursively after layout has finished.
 		rootLayer.propagateCurrentTransformationMatrix(c);
 
-		DisplayListContainer displayList = new ArrayDisplayListContainer(0, _pages.size() - 1);
+		DisplayListContainer displayList = new ArrayDisplayListContainer(minPage, maxPage);
 
 		// Recursively collect boxes for root layer and any children layers. Don't include
 		// fixed boxes at this point. They are collected at the point of painting each page.
@@ -115,8 +136,11 @@ public class DisplayListCollector {
 		}
 
 		List<PageInfo> layerPages = PagedBoxCollector.findLayerPages(c, layer, _pages);
-		int layerPageStart = findStartPage(c, layer);
-		int layerPageEnd = findEndPage(c, layer);
+		// Only collect for the pages we are interested in. The layer may not
+		// appear on any of these pages, in which case start will be after end.
+		int layerPageStart = Math.max(findStartPage(c, layer), dlPages.getMinPage());
+		int layerPageEnd = Math.min(findEndPage(c, layer), dlPages.getMaxPage());
+		boolean onCollectedPages = layerPageStart <= layerPageEnd;
 		boolean pushedClip = false;
 
 		Rectangle parentClip = layer.getMaster().getParentClipBox(c, layer.getParent());
@@ -144,12 +168,15 @@ public class DisplayListCollector {
 			collectReplacedElementLayer(c, layer, dlPages, layerPageStart, layerPageEnd);
 		} else {
 
-			PagedBoxCollector collector = createBoundedBoxCollector(layerPageStart, layerPageEnd);
-			
-			collector.collectFloats(c, layer);
-			collector.collect(c, layer);
+			PagedBoxCollector collector = null;
+
+			if (onCollectedPages) {
+			    collector = createBoundedBoxCollector(layerPageStart, layerPageEnd);
+			    collector.collectFloats(c, layer);
+			    collector.collect(c, layer);
+			}
 
-			if (!layer.isInline() && layer.getMaster() instanceof BlockBox) {
+			if (onCollectedPages && !layer.isInline() && layer.getMaster() instanceof BlockBox) {
 				collectLayerBackgroundAndBorder(c, layer, dlPages, layerPageStart, layerPageEnd);
 			}
 
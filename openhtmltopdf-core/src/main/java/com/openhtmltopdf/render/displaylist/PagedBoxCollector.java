@@ -284,7 +284,7 @@ public class PagedBoxCollector {
         	int pgStart = findStartPage(c, b, layer.getCurrentTransformMatrix());
         	int pgEnd = findEndPage(c, b, layer.getCurrentTransformMatrix());
         	
-        	for (int i = pgStart; i <= pgEnd; i++) {
+        	for (int i = getValidMinPageNumber(pgStart); i <= getValidMaxPageNumber(pgEnd); i++) {
         	    Shape pageClip = getPageResult(i).getContentWindowOnDocument(getPageBox(i), c);
         	
         		if (b.intersects(c, pageClip)) {
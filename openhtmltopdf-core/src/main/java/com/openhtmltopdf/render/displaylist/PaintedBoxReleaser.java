@@ -0,0 +1,90 @@
+package com.openhtmltopdf.render.displaylist;
+
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.openhtmltopdf.newtable.TableSectionBox;
+import com.openhtmltopdf.render.Box;
+import com.openhtmltopdf.render.PageBox;
+import com.openhtmltopdf.render.RenderingContext;
+
+/**
+ * Lets go of the children of boxes that lie wholly on pages that have already been
+ * painted, so that memory use of the box tree scales with page size rather than
+ * document size.
+ * <br><br>
+ * Only the child lists are cleared. The released boxes themselves stay in their parent
+ * with their geometry and cached painting info intact, so links, bookmarks and
+ * anchors (which hold on to their own target boxes) still resolve when the document
+ * is finished. Running elements, fixed boxes and repeated table headers and footers
+ * are painted on every page and are never released.
+ * <br><br>
+ * This is only useful if the display list is collected lazily, otherwise
+ * the display list holds on to every box anyway. Once boxes have been released
+ * the box tree MUST NOT be laid out or painted again.
+ */
+public class PaintedBoxReleaser {
+    private final List<PageBox> _pages;
+
+    /**
+     * For each container, the index of the first child that has not yet been
+     * released so we don't scan the same children again for every page.
+     */
+    private final Map<Box, Integer> _firstUnreleased = new IdentityHashMap<>();
+
+    public PaintedBoxReleaser(List<PageBox> pages) {
+        this._pages = pages;
+    }
+
+    /**
+     * Releases the children of every box in the tree under root that ends
+     * on or before lastPaintedPage (zero based).
+     */
+    public void releasePaintedBoxes(RenderingContext c, Box root, int lastPaintedPage) {
+        release(c, root, lastPaintedPage);
+    }
+
+    private void release(RenderingContext c, Box container, int lastPaintedPage) {
+        int start = _firstUnreleased.getOrDefault(container, 0);
+        int childCount = container.getChildCount();
+
+        for (int i = start; i < childCount; i++) {
+            Box child = container.getChild(i);
+
+            if (PagedBoxCollector.findEndPage(c, child, _pages) <= lastPaintedPage) {
+                if (isReleasable(child)) {
+                    child.removeAllChildren();
+                }
+
+                if (i == start) {
+                    start++;
+                }
+            } else if (PagedBoxCollector.findStartPage(c, child, _pages) <= lastPaintedPage) {
+                // Straddles the page boundary, release what we can inside it.
+                release(c, child, lastPaintedPage);
+            } else {
+                // Boxes are (mostly) in document order, leave the rest for a later page.
+                break;
+            }
+        }
+
+        if (start > 0) {
+            _firstUnreleased.put(container, start);
+        }
+    }
+
+    private boolean isReleasable(Box box) {
+        if (box.getStyle() != null &&
+            (box.getStyle().isRunning() || box.getStyle().isFixed())) {
+            return false;
+        }
+
+        if (box instanceof TableSectionBox) {
+            TableSectionBox section = (TableSectionBox) box;
+            return !section.isHeader() && !section.isFooter();
+        }
+
+        return true;
+    }
+}
@@ -36,6 +36,7 @@ import javax.xml.transform.TransformerFactoryConfigurationError;
 import javax.xml.transform.dom.DOMResult;
 import javax.xml.transform.sax.SAXSource;
 
+import com.openhtmltopdf.layout.SharedContext;
 import com.openhtmltopdf.util.*;
 import org.w3c.dom.Document;
 import org.xml.sax.ErrorHandler;
@@ -70,15 +71,37 @@ public class XMLResource extends AbstractResource {
     }
 
     public static XMLResource load(InputStream stream) {
-        return XML_RESOURCE_BUILDER.createXMLResource(new XMLResource(stream));
+        return load(stream, null);
+    }
+
+    /**
+     * Loads a document using the preferred XML implementations of the given shared context.
+     * If ctx is null, the shared context registered with the current thread is used.
+     */
+    public static XMLResource load(InputStream stream, SharedContext ctx) {
+        return XML_RESOURCE_BUILDER.createXMLResource(new XMLResource(stream), ctx);
     }
 
     public static XMLResource load(InputSource source) {
-        return XML_RESOURCE_BUILDER.createXMLResource(new XMLResource(source));
+        return load(source, null);
+    }
+
+    /**
+     * See {@link #load(InputStream, SharedContext)}.
+     */
+    public static XMLResource load(InputSource source, SharedContext ctx) {
+        return XML_RESOURCE_BUILDER.createXMLResource(new XMLResource(source), ctx);
     }
 
     public static XMLResource load(Reader reader) {
-        return XML_RESOURCE_BUILDER.createXMLResource(new XMLResource(new InputSource(reader)));
+        return load(reader, null);
+    }
+
+    /**
+     * See {@link #load(InputStream, SharedContext)}.
+     */
+    public static XMLResource load(Reader reader, SharedContext ctx) {
+        return XML_RESOURCE_BUILDER.createXMLResource(new XMLResource(new InputSource(reader)), ctx);
     }
 
     @Deprecated
@@ -211,7 +234,7 @@ public class XMLResource extends AbstractResource {
             }
     	}
 
-    	private XMLResource createXMLResource(XMLResource target) {
+    	private XMLResource createXMLResource(XMLResource target, SharedContext ctx) {
             Source input = null;
             DOMResult output = null;
             TransformerFactory xformFactory = null;
@@ -225,11 +248,15 @@ public class XMLResource extends AbstractResource {
             addHandlers(xmlReader);
             setParserFeatures(xmlReader);
 
+            if (ctx == null) {
+                ctx = ThreadCtx.get().sharedContext();
+            }
+
             st = System.currentTimeMillis();
             try {
                 input = new SAXSource(xmlReader, target.getResourceInputSource());
                 
-                String preferredDocumentBuilderFactory = ThreadCtx.get().sharedContext()._preferredDocumentBuilderFactoryImplementationClass;
+                String preferredDocumentBuilderFactory = ctx._preferredDocumentBuilderFactoryImplementationClass;
                 DocumentBuilderFactory dbf = loadPreferredDocumentBuilderFactory(preferredDocumentBuilderFactory);
                 
                 setDocumentBuilderSecurityFeatures(dbf);
@@ -238,7 +265,7 @@ public class XMLResource extends AbstractResource {
                 
                 output = new DOMResult(dbf.newDocumentBuilder().newDocument());
                 
-                String preferredTransformerFactory = ThreadCtx.get().sharedContext()._preferredTransformerFactoryImplementationClass;
+                String preferredTransformerFactory = ctx._preferredTransformerFactoryImplementationClass;
                 
                 if (preferredTransformerFactory == null) {
                 	xformFactory = TransformerFactory.newInstance();
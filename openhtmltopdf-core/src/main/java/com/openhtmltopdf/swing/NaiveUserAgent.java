@@ -40,6 +40,7 @@ import com.openhtmltopdf.extend.FSUriResolver;
 import com.openhtmltopdf.extend.FSStreamFactory;
 import com.openhtmltopdf.extend.FSStream;
 import com.openhtmltopdf.extend.UserAgentCallback;
+import com.openhtmltopdf.layout.SharedContext;
 import com.openhtmltopdf.outputdevice.helper.ExternalResourceControlPriority;
 import com.openhtmltopdf.outputdevice.helper.ExternalResourceType;
 import com.openhtmltopdf.resource.CSSResource;
@@ -47,6 +48,7 @@ import com.openhtmltopdf.resource.ImageResource;
 import com.openhtmltopdf.resource.XMLResource;
 import com.openhtmltopdf.util.ImageUtil;
 import com.openhtmltopdf.util.LogMessageId;
+import com.openhtmltopdf.util.ResourceBudget;
 import com.openhtmltopdf.util.XRLog;
 
 /**
@@ -72,6 +74,8 @@ public class NaiveUserAgent implements UserAgentCallback, DocumentListener {
     protected FSUriResolver _resolver = DEFAULT_URI_RESOLVER;
     protected String _baseUri;
 	protected Map<String, FSStreamFactory> _protocolsStreamFactory = new HashMap<>(2);
+	protected ResourceBudget _resourceBudget = ResourceBudget.unlimited();
+	private SharedContext _sharedContext;
     
     public static class DefaultHttpStream implements FSStream {
     	private InputStream strm;
@@ -165,6 +169,25 @@ public class NaiveUserAgent implements UserAgentCallback, DocumentListener {
     public void setUriResolver(FSUriResolver resolver) {
     	this._resolver = resolver;
     }
+
+    /**
+     * Sets the budget that bytes read from streams opened by this user agent are charged to.
+     */
+    public void setResourceBudget(ResourceBudget resourceBudget) {
+        this._resourceBudget = resourceBudget;
+    }
+
+    public SharedContext getSharedContext() {
+        return _sharedContext;
+    }
+
+    /**
+     * Sets the shared context of the render, used to load XML resources without
+     * looking it up from the current thread.
+     */
+    public void setSharedContext(SharedContext sharedContext) {
+        this._sharedContext = sharedContext;
+    }
     
     public FSUriResolver getDefaultUriResolver() {
     	return DEFAULT_URI_RESOLVER;
@@ -205,7 +228,7 @@ public class NaiveUserAgent implements UserAgentCallback, DocumentListener {
 			String protocol = extractProtocol(uri);
 
 			if (hasProtocolFactory(protocol)) {
-				return getProtocolFactory(protocol).getUrl(uri).getStream();
+				return _resourceBudget.countBytes(getProtocolFactory(protocol).getUrl(uri).getStream());
 			} else {
 		        try {
 		            is = new URL(uri).openStream();
@@ -221,7 +244,7 @@ public class NaiveUserAgent implements UserAgentCallback, DocumentListener {
 			XRLog.log(Level.WARNING, LogMessageId.LogMessageId1Param.EXCEPTION_MALFORMED_URL, uri, e1);
 		}
 
-        return is;
+        return _resourceBudget.countBytes(is);
     }
 
     /**
@@ -234,7 +257,7 @@ public class NaiveUserAgent implements UserAgentCallback, DocumentListener {
 			String protocol = extractProtocol(uri);
 
 			if (hasProtocolFactory(protocol)) {
-				return getProtocolFactory(protocol).getUrl(uri).getReader();
+				return _resourceBudget.countChars(getProtocolFactory(protocol).getUrl(uri).getReader());
 			} else {
 		        try {
 		            is = new URL(uri).openStream();
@@ -250,7 +273,7 @@ public class NaiveUserAgent implements UserAgentCallback, DocumentListener {
 			XRLog.log(Level.WARNING, LogMessageId.LogMessageId1Param.EXCEPTION_MALFORMED_URL, uri, e1);
 		}
 
-		return is == null ? null : new InputStreamReader(is, StandardCharsets.UTF_8);
+		return is == null ? null : new InputStreamReader(_resourceBudget.countBytes(is), StandardCharsets.UTF_8);
     }
     
     protected String readAll(Reader reader) throws IOException {
@@ -378,7 +401,7 @@ public class NaiveUserAgent implements UserAgentCallback, DocumentListener {
     	
         try (Reader inputReader = openReader(resolved)) {
             return inputReader == null ? null :
-                        XMLResource.load(inputReader);
+                        XMLResource.load(inputReader, _sharedContext);
         } catch (IOException e) {
             // On auto close, swallow.
             return null;
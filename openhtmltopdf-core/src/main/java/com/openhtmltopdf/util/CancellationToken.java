@@ -0,0 +1,84 @@
+package com.openhtmltopdf.util;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A token that can be used to abort a render, either explicitly from another thread
+ * with {@link #cancel()} or automatically once a deadline has passed.
+ * <br><br>
+ * Layout and painting check the token at safe points (between blocks, lines, tables
+ * and pages) and throw a {@link RenderCancelledException} when it is cancelled, so a
+ * render may run a little past its deadline before it stops.
+ * <br><br>
+ * This class is thread safe. One token may be shared by many renders, for
+ * example to cancel every render started for a request.
+ */
+public final class CancellationToken {
+    private static final long NO_DEADLINE = Long.MIN_VALUE;
+
+    private final long _deadlineNanos;
+    private final CancellationToken _parent;
+    private volatile boolean _cancelled;
+
+    private CancellationToken(long deadlineNanos, CancellationToken parent) {
+        this._deadlineNanos = deadlineNanos;
+        this._parent = parent;
+    }
+
+    /**
+     * Creates a token without a deadline that is only cancelled by calling {@link #cancel()}.
+     */
+    public static CancellationToken create() {
+        return new CancellationToken(NO_DEADLINE, null);
+    }
+
+    /**
+     * Creates a token that is cancelled once timeout has passed from now or when
+     * {@link #cancel()} is called, whichever comes first.
+     */
+    public static CancellationToken withTimeout(long timeout, TimeUnit unit) {
+        return new CancellationToken(System.nanoTime() + unit.toNanos(timeout), null);
+    }
+
+    /**
+     * Creates a token that is cancelled when this token is cancelled (or its deadline passes)
+     * or when its own {@link #cancel()} is called. Cancelling the child does not cancel this token.
+     */
+    public CancellationToken createChild() {
+        return new CancellationToken(NO_DEADLINE, this);
+    }
+
+    /**
+     * Cancels any render using this token.
+     */
+    public void cancel() {
+        _cancelled = true;
+    }
+
+    /**
+     * @return true if {@link #cancel()} has been called on this token or its parent.
+     */
+    public boolean isCancelled() {
+        return _cancelled || (_parent != null && _parent.isCancelled());
+    }
+
+    /**
+     * @return true if this token or its parent has a deadline and it has passed.
+     */
+    public boolean isDeadlineExceeded() {
+        return (_deadlineNanos != NO_DEADLINE && System.nanoTime() - _deadlineNanos >= 0) ||
+               (_parent != null && _parent.isDeadlineExceeded());
+    }
+
+    /**
+     * Throws a {@link RenderCancelledException} if this token has been cancelled
+     * or its deadline has passed.
+     */
+    public void throwIfCancelled() {
+        if (isCancelled()) {
+            throw new RenderCancelledException(false);
+        } else if (isDeadlineExceeded()) {
+            throw new RenderCancelledException(true);
+        }
+    }
+}
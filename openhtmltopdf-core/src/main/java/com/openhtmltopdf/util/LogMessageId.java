@@ -41,6 +41,8 @@ public interface LogMessageId {
         GENERAL_PDF_ACCESSIBILITY_NO_ALT_ATTRIBUTE_PROVIDED_FOR_IMAGE(XRLog.GENERAL, "No alt attribute provided for image/replaced in PDF/UA document."),
         GENERAL_PDF_SPECIFIED_FONTS_DONT_CONTAIN_A_SPACE_CHARACTER(XRLog.GENERAL, "Specified fonts don't contain a space character!"),
         GENERAL_PDF_USING_FAST_MODE(XRLog.GENERAL, "Using fast-mode renderer. Prepare to fly."),
+        GENERAL_PDF_RELEASE_PAINTED_BOXES_NOT_SUPPORTED_WITH_ACCESSIBILITY(XRLog.GENERAL, "Releasing painted boxes is not supported for PDF/UA or PDF/A-a documents. Ignoring."),
+        GENERAL_PDF_CONCURRENT_FONT_SUBSETTING_NOT_AVAILABLE(XRLog.GENERAL, "Concurrent font subsetting is not supported by this version of PDF-BOX. Fonts will be subset when saving."),
         GENERAL_PDF_ACCESSIBILITY_NO_DOCUMENT_TITLE_PROVIDED(XRLog.GENERAL, "No document title provided. Document will not be PDF/UA compliant."),
         GENERAL_PDF_ACCESSIBILITY_NO_DOCUMENT_DESCRIPTION_PROVIDED(XRLog.GENERAL, "No document description provided. Document will not be PDF/UA compliant."),
         GENERAL_PDF_USING_GET_REQUEST_FOR_FORM(XRLog.GENERAL, "Using GET request method for form. You probably meant to add a method=\"post\" attribute to your form"),
@@ -131,6 +133,9 @@ public interface LogMessageId {
                 "FS configuration if necessary. Will now try JDK default."),
         LOAD_COULD_NOT_RESOLVE_RELATIVE_URI_BECAUSE_NO_BASE_URI_WAS_PROVIDED(XRLog.LOAD, "Couldn't resolve relative URI({}) because no base URI was provided."),
         LOAD_LOAD_IMMEDIATE_URI(XRLog.LOAD, "Load immediate: {}"),
+        LOAD_UPDATING_FONT_DIRECTORY_INDEX(XRLog.LOAD, "Font directory index ({}) is missing or out of date, updating it."),
+        LOAD_COULD_NOT_READ_CACHE_FILE(XRLog.LOAD, "Could not read cache file ({}), it will be rewritten."),
+        LOAD_COULD_NOT_SAVE_CACHE_FILE(XRLog.LOAD, "Could not save cache file ({})."),
 
         LAYOUT_FUNCTION_NOT_IMPLEMENTED(XRLog.LAYOUT, "{} function not implemented at this time"),
         LAYOUT_UNSUPPORTED_SHAPE(XRLog.LAYOUT, "Unsupported shape: '{}'"),
@@ -221,12 +226,14 @@ public interface LogMessageId {
         LOAD_COULD_NOT_READ_URI_AT_URL_MAY_BE_RELATIVE(XRLog.LOAD, "Could not read {} as a URL; may be relative. Testing using parent URL {}"),
         LOAD_WAS_ABLE_TO_READ_FROM_URI_USING_PARENT_URL(XRLog.LOAD, "Was able to read from {} using parent URL {}"),
         LOAD_RESOURCE_ACCESS_REJECTED(XRLog.LOAD, "URI {} with type {} was rejected by resource access controller"),
+        LOAD_FONT_RESOLUTION_CACHE_STATS(XRLog.LOAD, "Font resolution cache had {} hits and {} misses."),
 
         GENERAL_FATAL_INFINITE_LOOP_BUG_IN_LINE_BREAKING_ALGO(XRLog.GENERAL, "A fatal infinite loop bug was detected in the line breaking " +
                 "algorithm for break-word! Start-substring=[{}], end={}"),
         GENERAL_EXPECTING_BOX_CHILDREN_OF_TYPE_BUT_GOT(XRLog.GENERAL, "Expecting box children to be of type ({}) but got ({})."),
         GENERAL_PDF_FOUND_ELEMENT_WITHOUT_ATTRIBUTE_NAME(XRLog.GENERAL, "found a <{} {}> element without attribute name, the element will not work without this attribute"),
         GENERAL_UNABLE_TO_PARSE_VALUE_AS(XRLog.GENERAL, "Unable to parse value '{}' as {}"),
+        GENERAL_RESOURCE_LIMIT_EXCEEDED(XRLog.GENERAL, "Aborting render as it exceeded the limit of {} {}"),
 
         EXCEPTION_SVG_EXTERNAL_RESOURCE_NOT_ALLOWED(XRLog.EXCEPTION, "Tried to fetch external resource from SVG. Refusing. Details: {}, {}"),
         EXCEPTION_DEFAULT_USERAGENT_IS_NOT_ABLE_TO_RESOLVE_URL_WITH_BASE_URL(XRLog.EXCEPTION, "The default NaiveUserAgent cannot resolve the URL {} with base URL {}");
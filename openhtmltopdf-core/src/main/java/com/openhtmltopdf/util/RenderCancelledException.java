@@ -0,0 +1,24 @@
+package com.openhtmltopdf.util;
+
+/**
+ * Thrown from layout or painting when the render's {@link CancellationToken}
+ * has been cancelled or its deadline has passed.
+ */
+public class RenderCancelledException extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+
+    private final boolean _deadlineExceeded;
+
+    public RenderCancelledException(boolean deadlineExceeded) {
+        super(deadlineExceeded ? "Render deadline exceeded" : "Render cancelled");
+        this._deadlineExceeded = deadlineExceeded;
+    }
+
+    /**
+     * @return true if the render was aborted because its deadline passed, false
+     * if it was cancelled explicitly.
+     */
+    public boolean isDeadlineExceeded() {
+        return _deadlineExceeded;
+    }
+}
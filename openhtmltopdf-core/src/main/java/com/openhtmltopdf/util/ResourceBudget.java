@@ -0,0 +1,160 @@
+package com.openhtmltopdf.util;
+
+import java.io.FilterInputStream;
+import java.io.FilterReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.util.logging.Level;
+
+/**
+ * Tracks the resources used by a single render against the limits set with the builder,
+ * see {@link com.openhtmltopdf.outputdevice.helper.BaseRendererBuilder#useMaxPages(int)} and friends.
+ * A limit of zero or less means unlimited.
+ * <br><br>
+ * When a limit is exceeded, the problem is logged and a {@link ResourceLimitExceededException}
+ * is thrown to abort the render.
+ * <br><br>
+ * A render is single threaded so this class is not thread safe.
+ */
+public class ResourceBudget {
+    public enum Limit {
+        PAGES("pages"),
+        BOXES("boxes"),
+        RESOURCE_BYTES("bytes of fetched resources"),
+        IMAGE_PIXELS("pixels in one image");
+
+        private final String description;
+
+        Limit(String description) {
+            this.description = description;
+        }
+
+        public String getDescription() {
+            return description;
+        }
+    }
+
+    private final int _maxPages;
+    private final int _maxBoxes;
+    private final long _maxResourceBytes;
+    private final long _maxImagePixels;
+
+    private int _boxCount;
+    private long _resourceBytes;
+
+    public ResourceBudget(int maxPages, int maxBoxes, long maxResourceBytes, long maxImagePixels) {
+        this._maxPages = maxPages;
+        this._maxBoxes = maxBoxes;
+        this._maxResourceBytes = maxResourceBytes;
+        this._maxImagePixels = maxImagePixels;
+    }
+
+    /**
+     * A budget without any limits.
+     */
+    public static ResourceBudget unlimited() {
+        return new ResourceBudget(0, 0, 0, 0);
+    }
+
+    /**
+     * Called before a page is added.
+     * @param pageCount the number of pages once the page is added.
+     */
+    public void checkPageCount(int pageCount) {
+        if (_maxPages > 0 && pageCount > _maxPages) {
+            fail(Limit.PAGES, _maxPages);
+        }
+    }
+
+    /**
+     * Called as each box is created.
+     */
+    public void countBox() {
+        if (_maxBoxes > 0 && ++_boxCount > _maxBoxes) {
+            fail(Limit.BOXES, _maxBoxes);
+        }
+    }
+
+    /**
+     * Called once the dimensions of an image are known, before it is decoded.
+     */
+    public void checkImagePixels(long width, long height) {
+        if (_maxImagePixels > 0 && width * height > _maxImagePixels) {
+            fail(Limit.IMAGE_PIXELS, _maxImagePixels);
+        }
+    }
+
+    /**
+     * Returns a stream that charges each byte read from is to this budget,
+     * or is itself if fetched resources are unlimited.
+     */
+    public InputStream countBytes(InputStream is) {
+        if (_maxResourceBytes <= 0 || is == null) {
+            return is;
+        }
+
+        return new FilterInputStream(is) {
+            @Override
+            public int read() throws IOException {
+                int b = super.read();
+                if (b != -1) {
+                    addResourceBytes(1);
+                }
+                return b;
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                int count = super.read(b, off, len);
+                if (count > 0) {
+                    addResourceBytes(count);
+                }
+                return count;
+            }
+        };
+    }
+
+    /**
+     * Returns a reader that charges each char read from reader to this budget, as if it
+     * were one byte, or reader itself if fetched resources are unlimited.
+     */
+    public Reader countChars(Reader reader) {
+        if (_maxResourceBytes <= 0 || reader == null) {
+            return reader;
+        }
+
+        return new FilterReader(reader) {
+            @Override
+            public int read() throws IOException {
+                int c = super.read();
+                if (c != -1) {
+                    addResourceBytes(1);
+                }
+                return c;
+            }
+
+            @Override
+            public int read(char[] cbuf, int off, int len) throws IOException {
+                int count = super.read(cbuf, off, len);
+                if (count > 0) {
+                    addResourceBytes(count);
+                }
+                return count;
+            }
+        };
+    }
+
+    private void addResourceBytes(long count) {
+        _resourceBytes += count;
+
+        if (_resourceBytes > _maxResourceBytes) {
+            fail(Limit.RESOURCE_BYTES, _maxResourceBytes);
+        }
+    }
+
+    private void fail(Limit limit, long maximum) {
+        XRLog.log(Level.SEVERE, LogMessageId.LogMessageId2Param.GENERAL_RESOURCE_LIMIT_EXCEEDED, maximum, limit.getDescription());
+        throw new ResourceLimitExceededException(limit, maximum);
+    }
+}
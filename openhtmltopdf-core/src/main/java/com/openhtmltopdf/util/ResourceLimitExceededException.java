@@ -0,0 +1,31 @@
+package com.openhtmltopdf.util;
+
+/**
+ * Thrown when a render exceeds one of the limits of its {@link ResourceBudget}.
+ */
+public class ResourceLimitExceededException extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+
+    private final ResourceBudget.Limit _limit;
+    private final long _maximum;
+
+    public ResourceLimitExceededException(ResourceBudget.Limit limit, long maximum) {
+        super("Render exceeded the limit of " + maximum + " " + limit.getDescription());
+        this._limit = limit;
+        this._maximum = maximum;
+    }
+
+    /**
+     * @return which limit was exceeded.
+     */
+    public ResourceBudget.Limit getLimit() {
+        return _limit;
+    }
+
+    /**
+     * @return the maximum that was set for the limit.
+     */
+    public long getMaximum() {
+        return _maximum;
+    }
+}
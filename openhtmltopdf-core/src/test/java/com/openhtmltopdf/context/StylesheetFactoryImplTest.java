@@ -0,0 +1,50 @@
+package com.openhtmltopdf.context;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+import org.junit.Test;
+
+import com.openhtmltopdf.css.sheet.Ruleset;
+import com.openhtmltopdf.css.sheet.StylesheetInfo;
+import com.openhtmltopdf.swing.NaiveUserAgent;
+
+public class StylesheetFactoryImplTest {
+    private static StylesheetFactoryImpl createFactory(StyleDeclarationCache cache, String baseUrl) {
+        NaiveUserAgent uac = new NaiveUserAgent();
+        uac.setBaseURL(baseUrl);
+
+        StylesheetFactoryImpl factory = new StylesheetFactoryImpl(uac);
+        factory.setStyleDeclarationCache(cache);
+        return factory;
+    }
+
+    /**
+     * Tests that a style declaration is parsed once per origin and base url,
+     * even by different documents, and that the cache is bounded.
+     */
+    @Test
+    public void testStyleDeclarationCache() {
+        String style = "color: red; background-image: url(a.png);";
+        StyleDeclarationCache cache = new StyleDeclarationCache(2);
+
+        StylesheetFactoryImpl first = createFactory(cache, "http://example.com/");
+        StylesheetFactoryImpl second = createFactory(cache, "http://example.com/");
+        StylesheetFactoryImpl other = createFactory(cache, "http://example.org/");
+
+        Ruleset ruleset = first.parseStyleDeclaration(StylesheetInfo.AUTHOR, style);
+
+        assertThat(ruleset.getPropertyDeclarations().size(), equalTo(2));
+        assertThat(first.parseStyleDeclaration(StylesheetInfo.AUTHOR, style), sameInstance(ruleset));
+        assertThat(second.parseStyleDeclaration(StylesheetInfo.AUTHOR, style), sameInstance(ruleset));
+        assertThat(first.parseStyleDeclaration(StylesheetInfo.USER, style), not(sameInstance(ruleset)));
+        assertThat(other.parseStyleDeclaration(StylesheetInfo.AUTHOR, style), not(sameInstance(ruleset)));
+        assertThat(cache.size(), equalTo(2));
+
+        StylesheetFactoryImpl uncached = createFactory(null, "http://example.com/");
+        assertThat(uncached.parseStyleDeclaration(StylesheetInfo.AUTHOR, style),
+                   not(sameInstance(uncached.parseStyleDeclaration(StylesheetInfo.AUTHOR, style))));
+    }
+}
@@ -0,0 +1,177 @@
+package com.openhtmltopdf.css.newmatch;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.Collections;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+
+import org.junit.Test;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NodeList;
+import org.xml.sax.InputSource;
+
+import com.openhtmltopdf.context.StandardAttributeResolver;
+import com.openhtmltopdf.context.StylesheetFactoryImpl;
+import com.openhtmltopdf.css.constants.CSSName;
+import com.openhtmltopdf.css.constants.IdentValue;
+import com.openhtmltopdf.css.extend.lib.DOMTreeResolver;
+import com.openhtmltopdf.css.parser.CSSParser;
+import com.openhtmltopdf.css.sheet.Stylesheet;
+import com.openhtmltopdf.css.sheet.StylesheetInfo;
+import com.openhtmltopdf.simple.extend.XhtmlNamespaceHandler;
+import com.openhtmltopdf.swing.NaiveUserAgent;
+
+public class MatcherTest {
+    private static final String CSS =
+            "p { text-align: left; }\n" +
+            ".a { text-align: right; }\n" +
+            "p.b { text-align: center; }\n" +
+            "#x { text-align: justify; }\n" +
+            ".o1 { text-align: left; }\n" +
+            ".o2 { text-align: right; }\n" +
+            "div > p.c { text-align: center; }\n" +
+            "section.theme span { text-align: justify; }\n" +
+            "* { font-style: italic; }\n" +
+            "[title] { font-weight: bold; }\n";
+
+    private static Document parse(String xml) throws Exception {
+        return DocumentBuilderFactory.newInstance().newDocumentBuilder()
+                .parse(new InputSource(new StringReader(xml)));
+    }
+
+    private static Matcher createMatcher(String css) throws IOException {
+        StringBuilder sb = new StringBuilder();
+        // Enough selectors that mappers index them.
+        for (int i = 0; i < 100; i++) {
+            sb.append(".unused").append(i).append(" { text-align: center; }\n");
+        }
+        sb.append(css);
+
+        Stylesheet sheet = new CSSParser((uri, message) -> {})
+                .parseStylesheet("test.css", StylesheetInfo.AUTHOR, new StringReader(sb.toString()));
+
+        return new Matcher(
+                new DOMTreeResolver(),
+                new StandardAttributeResolver(new XhtmlNamespaceHandler(), null, null),
+                new StylesheetFactoryImpl(new NaiveUserAgent()),
+                Collections.singletonList(sheet),
+                "print");
+    }
+
+    private static IdentValue textAlign(Matcher matcher, Element e) {
+        CascadedStyle style = matcher.getCascadedStyle(e, false);
+        return style.hasProperty(CSSName.TEXT_ALIGN) ? style.getIdent(CSSName.TEXT_ALIGN) : null;
+    }
+
+    /**
+     * Tests that selectors indexed by id, class and element name
+     * match the same elements, in the same cascade order, as testing each selector.
+     */
+    @Test
+    public void testIndexedSelectorsKeepCascadeOrder() throws Exception {
+        StringBuilder body = new StringBuilder();
+        // Repeated so that the body mapper is used for more than one element and indexes its selectors.
+        for (int i = 0; i < 3; i++) {
+            body.append("<div>")
+                .append("<p expect='left'/>")
+                .append("<p class='a' expect='right'/>")
+                .append("<p class='a b' expect='center'/>")
+                .append("<p class='b  a a' expect='center'/>")
+                .append("<p class='c' expect='center'/>")
+                .append("<p class='o2 o1' expect='right'/>")
+                .append("<p class='a' id='x' expect='justify'/>")
+                .append("<span class='unknown' title='t' expect='none'/>")
+                .append("</div>")
+                .append("<p class='c' expect='left'/>")
+                .append("<section class='theme'><div><span expect='justify'/></div></section>");
+        }
+
+        Document doc = parse("<html><body>" + body + "</body></html>");
+        Matcher matcher = createMatcher(CSS);
+        NodeList elements = doc.getElementsByTagName("*");
+
+        for (int i = 0; i < elements.getLength(); i++) {
+            Element e = (Element) elements.item(i);
+            IdentValue align = textAlign(matcher, e);
+
+            if (e.hasAttribute("expect")) {
+                String expected = e.getAttribute("expect");
+                assertThat(e.getAttribute("class"), align, equalTo(expected.equals("none") ? null : IdentValue.getByIdentString(expected)));
+            }
+
+            assertThat(matcher.getCascadedStyle(e, false).getIdent(CSSName.FONT_STYLE), equalTo(IdentValue.ITALIC));
+            assertThat(matcher.getCascadedStyle(e, false).hasProperty(CSSName.FONT_WEIGHT), equalTo(e.hasAttribute("title")));
+        }
+    }
+
+    /**
+     * Tests that the chained selectors of a selector matching nested elements
+     * are not repeated for each level of nesting.
+     */
+    @Test
+    public void testNestedAncestorsDoNotRepeatSelectors() throws Exception {
+        StringBuilder open = new StringBuilder();
+        StringBuilder close = new StringBuilder();
+        for (int i = 0; i < 10; i++) {
+            open.append("<div class='theme'>");
+            close.append("</div>");
+        }
+
+        Document doc = parse("<html><body>" + open +
+                "<div class='x'><table><tr><td/></tr></table></div>" +
+                close + "</body></html>");
+
+        Matcher matcher = createMatcher(".theme .x td { text-align: right; }\n");
+        Element target = (Element) doc.getElementsByTagName("div").item(10);
+        Element td = (Element) doc.getElementsByTagName("td").item(0);
+
+        assertThat(textAlign(matcher, td), equalTo(IdentValue.RIGHT));
+
+        String css = matcher.getCSSForAllDescendants(target);
+        assertThat(css, css.indexOf("td"), equalTo(css.lastIndexOf("td")));
+    }
+
+    /**
+     * Tests that alike siblings share a cascaded style, unless their inline style or
+     * a selector depending on more than their name, id and class tells them apart.
+     */
+    @Test
+    public void testAlikeSiblingsShareCascadedStyle() throws Exception {
+        Document doc = parse("<html><body>" +
+                "<table><tr><td class='n'/><td class='n'/><td class='n' style='text-align: right;'/><td class='n'/></tr></table>" +
+                "<ul><li/><li/><li/></ul>" +
+                "<ol><li/><li title='t'/><li/></ol>" +
+                "</body></html>");
+
+        Matcher matcher = createMatcher(
+                "td.n { text-align: center; }\n" +
+                "ul li:first-child { text-align: left; }\n" +
+                "ol li[title] { text-align: justify; }\n");
+
+        NodeList tds = doc.getElementsByTagName("td");
+        CascadedStyle first = matcher.getCascadedStyle(tds.item(0), false);
+        CascadedStyle second = matcher.getCascadedStyle(tds.item(1), false);
+
+        assertThat(second, sameInstance(first));
+        assertThat(textAlign(matcher, (Element) tds.item(0)), equalTo(IdentValue.CENTER));
+        assertThat(textAlign(matcher, (Element) tds.item(2)), equalTo(IdentValue.RIGHT));
+        assertThat(textAlign(matcher, (Element) tds.item(3)), equalTo(IdentValue.CENTER));
+
+        NodeList lis = doc.getElementsByTagName("li");
+        IdentValue[] expected = { IdentValue.LEFT, null, null, null, IdentValue.JUSTIFY, null };
+
+        for (int i = 0; i < lis.getLength(); i++) {
+            assertThat("li " + i, textAlign(matcher, (Element) lis.item(i)), equalTo(expected[i]));
+        }
+
+        assertThat(matcher.getCascadedStyle(lis.item(2), false),
+                   not(sameInstance(matcher.getCascadedStyle(lis.item(0), false))));
+    }
+}
@@ -1,40 +1,65 @@
 package com.openhtmltopdf.nonvisualregressiontests;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.CoreMatchers.equalTo;
 import static org.hamcrest.CoreMatchers.instanceOf;
 
 import java.awt.Color;
+import java.awt.image.BufferedImage;
 import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
 import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
+import java.util.stream.Stream;
 
 import org.apache.commons.io.FileUtils;
+import org.apache.pdfbox.cos.COSBase;
 import org.apache.pdfbox.cos.COSDocument;
 import org.apache.pdfbox.cos.COSName;
 import org.apache.pdfbox.cos.COSObject;
 import org.apache.pdfbox.cos.COSObjectKey;
+import org.apache.pdfbox.cos.COSStream;
 import org.apache.pdfbox.io.IOUtils;
 import org.apache.pdfbox.pdmodel.PDDocument;
 import org.apache.pdfbox.pdmodel.PDDocumentInformation;
+import org.apache.pdfbox.pdmodel.PDPage;
 import org.apache.pdfbox.pdmodel.PDPageContentStream;
 import org.apache.pdfbox.pdmodel.PDPageContentStream.AppendMode;
+import org.apache.pdfbox.pdmodel.PDResources;
 import org.apache.pdfbox.pdmodel.common.PDRectangle;
 import org.apache.pdfbox.pdmodel.font.PDFont;
 import org.apache.pdfbox.pdmodel.font.PDType0Font;
 import org.apache.pdfbox.pdmodel.interactive.action.PDActionGoTo;
 import org.apache.pdfbox.pdmodel.interactive.action.PDActionURI;
+import org.apache.pdfbox.pdmodel.interactive.annotation.PDAnnotation;
 import org.apache.pdfbox.pdmodel.interactive.annotation.PDAnnotationFileAttachment;
 import org.apache.pdfbox.pdmodel.interactive.annotation.PDAnnotationLink;
 import org.apache.pdfbox.pdmodel.interactive.annotation.PDAnnotationWidget;
@@ -50,15 +75,35 @@ import org.junit.Assert;
 import org.junit.BeforeClass;
 import org.junit.Test;
 
+import com.openhtmltopdf.css.constants.IdentValue;
+import com.openhtmltopdf.extend.FSSupplier;
+import com.openhtmltopdf.java2d.Java2DFontCache;
+import com.openhtmltopdf.java2d.api.BufferedImagePageProcessor;
+import com.openhtmltopdf.java2d.api.Java2DRendererBuilder;
 import com.openhtmltopdf.layout.Layer;
 import com.openhtmltopdf.outputdevice.helper.ExternalResourceControlPriority;
 import com.openhtmltopdf.pdfboxout.PDFontSupplier;
 import com.openhtmltopdf.pdfboxout.PagePosition;
+import com.openhtmltopdf.pdfboxout.PdfBatchRenderer;
+import com.openhtmltopdf.pdfboxout.PdfBoxFontDirectoryIndex;
+import com.openhtmltopdf.pdfboxout.PdfBoxFontRegistry;
+import com.openhtmltopdf.pdfboxout.PdfBoxFontResolver.FontDescription;
+import com.openhtmltopdf.pdfboxout.PdfBoxFontResolver.FontGroup;
+import com.openhtmltopdf.pdfboxout.PdfBoxPersistentCacheStore;
+import com.openhtmltopdf.pdfboxout.PdfBoxRawPDFontMetrics;
 import com.openhtmltopdf.pdfboxout.PdfBoxRenderer;
+import com.openhtmltopdf.pdfboxout.PdfMultiDocumentRenderer;
 import com.openhtmltopdf.pdfboxout.PdfRendererBuilder;
+import com.openhtmltopdf.pdfboxout.PdfRendererBuilder.CacheStore;
+import com.openhtmltopdf.pdfboxout.PdfRendererFactory;
+import com.openhtmltopdf.pdfboxout.RenderResult;
 import com.openhtmltopdf.testcases.TestcaseRunner;
+import com.openhtmltopdf.util.CancellationToken;
 import com.openhtmltopdf.util.Diagnostic;
 import com.openhtmltopdf.util.LogMessageId;
+import com.openhtmltopdf.util.RenderCancelledException;
+import com.openhtmltopdf.util.ResourceBudget;
+import com.openhtmltopdf.util.ResourceLimitExceededException;
 import com.openhtmltopdf.visualregressiontests.VisualRegressionTest;
 import com.openhtmltopdf.visualtest.TestSupport;
 import com.openhtmltopdf.visualtest.VisualTester.BuilderConfig;
@@ -1229,6 +1274,1130 @@ public class NonVisualRegressionTest {
         }
     }
 
+    private static String createPagedHtml(int pageCount) {
+        StringBuilder sb = new StringBuilder();
+        sb.append("<html><head><style>@page { size: 200px 200px; margin: 10px; } ");
+        sb.append("div + div { page-break-before: always; }</style></head><body>");
+
+        for (int i = 0; i < pageCount; i++) {
+            sb.append("<div id=\"pg").append(i).append("\">Page ").append(i);
+            sb.append(" <a href=\"#pg0\">back</a></div>");
+        }
+
+        sb.append("</body></html>");
+        return sb.toString();
+    }
+
+    private static byte[] renderToBytes(String html, BuilderConfig config) throws IOException {
+        ByteArrayOutputStream os = new ByteArrayOutputStream();
+
+        PdfRendererBuilder builder = new PdfRendererBuilder();
+        builder.withHtmlContent(html, NonVisualRegressionTest.class.getResource(RES_PATH).toString());
+        builder.toStream(os);
+        builder.testMode(true);
+        config.configure(builder);
+        builder.run();
+
+        return os.toByteArray();
+    }
+
+    private static void assertSamePageContent(String message, byte[] expected, byte[] actual) throws IOException {
+        try (PDDocument exp = PDDocument.load(expected);
+             PDDocument act = PDDocument.load(actual)) {
+            assertEquals(message, exp.getNumberOfPages(), act.getNumberOfPages());
+
+            for (int i = 0; i < exp.getNumberOfPages(); i++) {
+                try (InputStream e = exp.getPage(i).getContents();
+                     InputStream a = act.getPage(i).getContents()) {
+                    Assert.assertArrayEquals(message + " page " + i, IOUtils.toByteArray(e), IOUtils.toByteArray(a));
+                }
+            }
+        }
+    }
+
+    private static void assertSameAnnotations(String message, byte[] expected, byte[] actual) throws IOException {
+        try (PDDocument exp = PDDocument.load(expected);
+             PDDocument act = PDDocument.load(actual)) {
+            for (int i = 0; i < exp.getNumberOfPages(); i++) {
+                List<PDAnnotation> e = exp.getPage(i).getAnnotations();
+                List<PDAnnotation> a = act.getPage(i).getAnnotations();
+                assertEquals(message + " page " + i, e.size(), a.size());
+
+                for (int j = 0; j < e.size(); j++) {
+                    assertEquals(message + " page " + i, e.get(j).getRectangle().toString(), a.get(j).getRectangle().toString());
+                }
+            }
+
+            PDDocumentOutline e = exp.getDocumentCatalog().getDocumentOutline();
+            PDDocumentOutline a = act.getDocumentCatalog().getDocumentOutline();
+            assertEquals(message, e == null, a == null);
+
+            if (e != null) {
+                Iterator<PDOutlineItem> aItems = a.children().iterator();
+                for (PDOutlineItem eItem : e.children()) {
+                    PDOutlineItem aItem = aItems.next();
+                    assertEquals(message, eItem.getTitle(), aItem.getTitle());
+                    assertEquals(message, ((PDPageXYZDestination) eItem.getDestination()).getTop(),
+                                          ((PDPageXYZDestination) aItem.getDestination()).getTop());
+                }
+                assertFalse(message, aItems.hasNext());
+            }
+        }
+    }
+
+    private static String extractText(byte[] pdf) throws IOException {
+        try (PDDocument doc = PDDocument.load(pdf)) {
+            return new PDFTextStripper().getText(doc);
+        }
+    }
+
+    /**
+     * Tests that spilling page content streams to a scratch file produces
+     * the same document as keeping them on the heap.
+     */
+    @Test
+    public void testPageStreamSpillFile() throws IOException {
+        String html = createPagedHtml(20);
+
+        byte[] expected = renderToBytes(html, builder -> {});
+        byte[] actual = renderToBytes(html, builder -> builder.usePageStreamSpillFile(null, 0));
+
+        try (PDDocument doc = PDDocument.load(actual)) {
+            assertEquals(20, doc.getNumberOfPages());
+        }
+
+        assertEquals(extractText(expected), extractText(actual));
+    }
+
+    /**
+     * Tests that collecting the display list a window of pages at a time
+     * paints exactly the same page content as collecting it for all pages up-front.
+     */
+    @Test
+    public void testLazyDisplayListCollection() throws IOException {
+        String[] resources = new String[] {
+                "horiz-page-overflow-table-paged", "issue-472-fixed-position-multiple-pages",
+                "issue-427-body-page-positions", "transform-fixed", "running-table" };
+
+        for (String resource : resources) {
+            String html = loadHtml(resource);
+            byte[] expected = renderToBytes(html, builder -> {});
+
+            for (int window : new int[] { 1, 2 }) {
+                byte[] actual = renderToBytes(html, builder -> builder.useLazyDisplayListCollection(window));
+                assertSamePageContent(resource + " (window " + window + ")", expected, actual);
+            }
+        }
+    }
+
+    /**
+     * Tests that releasing boxes on painted pages does not change page content,
+     * links or bookmarks, including repeated table headers, running and fixed content.
+     */
+    @Test
+    public void testReleasePaintedBoxes() throws IOException {
+        String[] resources = new String[] {
+                "horiz-page-overflow-table-paged", "issue-472-fixed-position-multiple-pages",
+                "running-table", "transform-fixed", "link-area-multiple-page",
+                "link-after-overflow-target", "bookmark-head-after-overflow-page" };
+
+        List<String> htmls = new ArrayList<>();
+        htmls.add(createPagedHtml(20));
+        for (String resource : resources) {
+            htmls.add(loadHtml(resource));
+        }
+
+        for (String html : htmls) {
+            byte[] expected = renderToBytes(html, builder -> {});
+            byte[] actual = renderToBytes(html, builder -> builder.useLazyDisplayListCollection(1).useReleasePaintedBoxes(true));
+
+            String msg = html.substring(0, Math.min(60, html.length()));
+            assertSamePageContent(msg, expected, actual);
+            assertSameAnnotations(msg, expected, actual);
+        }
+    }
+
+    /**
+     * Tests that a renderer factory, used concurrently from several threads,
+     * produces the same documents as the builder, including linked and inline stylesheets
+     * that are served from the shared stylesheet cache.
+     */
+    @Test
+    public void testRendererFactory() throws Exception {
+        String html = "<html><head><link rel=\"stylesheet\" href=\"stylesheets/basic.css\" />" +
+                      "<style>@page { size: 200px 200px; } div#two { color: blue; }</style></head>" +
+                      "<body><div id=\"one\">One</div><div id=\"two\">Two</div></body></html>";
+        String baseUri = NonVisualRegressionTest.class.getResource(RES_PATH).toString();
+
+        byte[] expected = renderToBytes(html, builder -> {});
+
+        PdfRendererBuilder builder = new PdfRendererBuilder();
+        builder.testMode(true);
+        PdfRendererFactory factory = builder.buildFactory();
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+
+        try {
+            List<Future<byte[]>> results = new ArrayList<>();
+
+            for (int i = 0; i < 8; i++) {
+                results.add(executor.submit(() -> {
+                    ByteArrayOutputStream os = new ByteArrayOutputStream();
+                    factory.run(html, baseUri, os);
+                    return os.toByteArray();
+                }));
+            }
+
+            for (Future<byte[]> result : results) {
+                assertSamePageContent("factory", expected, result.get());
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * Tests that asynchronous renders produce the same documents as the builder and
+     * that a failed render completes its future exceptionally.
+     */
+    @Test
+    public void testRendererFactoryAsync() throws Exception {
+        String html = createPagedHtml(20);
+        String baseUri = NonVisualRegressionTest.class.getResource(RES_PATH).toString();
+
+        byte[] expected = renderToBytes(html, builder -> {});
+
+        PdfRendererBuilder builder = new PdfRendererBuilder();
+        builder.testMode(true);
+        PdfRendererFactory factory = builder.useMaxPages(20).buildFactory();
+
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+
+        try {
+            List<CompletableFuture<RenderResult>> results = new ArrayList<>();
+
+            for (int i = 0; i < 4; i++) {
+                results.add(factory.runAsync(html, baseUri, executor));
+            }
+
+            for (CompletableFuture<RenderResult> result : results) {
+                assertEquals(20, result.get().getPageCount());
+                assertSamePageContent("async", expected, result.get().getPdf());
+            }
+
+            CompletableFuture<RenderResult> tooLong = factory.runAsync(createPagedHtml(21), baseUri, executor);
+
+            try {
+                tooLong.get();
+                Assert.fail("Render did not fail");
+            } catch (ExecutionException e) {
+                assertTrue(e.getCause() instanceof ResourceLimitExceededException);
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * Tests that the batch renderer renders every job, reports failed jobs
+     * without affecting others and never has more than maxInFlight jobs queued or running.
+     */
+    @Test
+    public void testBatchRenderer() throws Exception {
+        String html = createPagedHtml(3);
+        String baseUri = NonVisualRegressionTest.class.getResource(RES_PATH).toString();
+        byte[] expected = renderToBytes(html, builder -> {});
+
+        PdfRendererBuilder builder = new PdfRendererBuilder();
+        builder.testMode(true);
+        PdfRendererFactory factory = builder.buildFactory();
+
+        ExecutorService executor = Executors.newFixedThreadPool(3);
+        Map<String, ByteArrayOutputStream> outputs = new ConcurrentHashMap<>();
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+        AtomicInteger finished = new AtomicInteger();
+        AtomicInteger maxAhead = new AtomicInteger();
+
+        try {
+            PdfBatchRenderer batch = new PdfBatchRenderer(factory, executor, 2);
+
+            Stream<PdfBatchRenderer.Job> jobs = IntStream.range(0, 10).mapToObj(i -> {
+                // Jobs taken from the stream but not yet finished.
+                maxAhead.accumulateAndGet(i + 1 - finished.get(), Math::max);
+
+                String id = "job-" + i;
+                return new PdfBatchRenderer.Job(id, html, baseUri, () -> {
+                    maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+                    if (i == 4) {
+                        running.decrementAndGet();
+                        finished.incrementAndGet();
+                        throw new IllegalStateException("Can not open output");
+                    }
+                    ByteArrayOutputStream os = new ByteArrayOutputStream() {
+                        @Override
+                        public void close() {
+                            running.decrementAndGet();
+                            finished.incrementAndGet();
+                        }
+                    };
+                    outputs.put(id, os);
+                    return os;
+                });
+            });
+
+            List<PdfBatchRenderer.JobResult> results = batch.renderAll(jobs);
+
+            assertEquals(10, results.size());
+            assertTrue(maxRunning.get() <= 2);
+            assertTrue(maxAhead.get() <= 2);
+
+            for (PdfBatchRenderer.JobResult result : results) {
+                String id = result.getJob().getId();
+
+                if (id.equals("job-4")) {
+                    assertFalse(result.isSuccess());
+                    assertThat(result.getFailure(), instanceOf(IllegalStateException.class));
+                } else {
+                    assertTrue(result.getFailure() + "", result.isSuccess());
+                    assertSamePageContent(id, expected, outputs.get(id).toByteArray());
+                }
+            }
+
+            // A job failing with an error still gets a result and the error is
+            // thrown once the jobs in flight have finished.
+            StackOverflowError error = new StackOverflowError();
+            List<PdfBatchRenderer.JobResult> errorResults = new ArrayList<>();
+            Stream<PdfBatchRenderer.Job> errorJobs = IntStream.range(0, 2).mapToObj(i ->
+                new PdfBatchRenderer.Job("error-" + i, html, baseUri, () -> {
+                    if (i == 0) {
+                        throw error;
+                    }
+                    return new ByteArrayOutputStream();
+                }));
+
+            try {
+                batch.renderAll(errorJobs, result -> {
+                    synchronized (errorResults) {
+                        errorResults.add(result);
+                    }
+                });
+                Assert.fail("Error was not thrown");
+            } catch (StackOverflowError e) {
+                assertTrue(e == error);
+            }
+
+            PdfBatchRenderer.JobResult errorResult = errorResults.stream()
+                    .filter(result -> result.getJob().getId().equals("error-0"))
+                    .findFirst().get();
+            assertTrue(errorResult.getFailure() == error);
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * Tests that documents appended with the multi-document renderer share one
+     * embedded font and one image XObject and that bookmarks of later parts
+     * point at their own pages.
+     */
+    @Test
+    public void testMultiDocumentAppend() throws IOException {
+        String baseUri = NonVisualRegressionTest.class.getResource(RES_PATH).toString();
+
+        PdfRendererBuilder builder = new PdfRendererBuilder();
+        builder.testMode(true);
+        PdfRendererFactory factory = builder.buildFactory();
+
+        ByteArrayOutputStream os = new ByteArrayOutputStream();
+
+        try (PdfMultiDocumentRenderer multi = factory.buildMultiDocumentRenderer(os)) {
+            for (int part = 1; part <= 3; part++) {
+                StringBuilder html = new StringBuilder();
+                html.append("<html><head><bookmarks><bookmark name=\"Part ").append(part).append("\" href=\"#start\"/></bookmarks>");
+                html.append("<style>@font-face { font-family: 'Karla'; src: url(fonts/Karla-Bold.ttf); } ");
+                html.append("@page { size: 200px 200px; margin: 10px; } body { font-family: 'Karla'; } ");
+                html.append("div + div { page-break-before: always; }</style></head><body>");
+
+                for (int i = 0; i < part; i++) {
+                    html.append("<div").append(i == 0 ? " id=\"start\"" : "").append(">Part ").append(part);
+                    html.append(" <img src=\"../../demos/images/flyingsaucer.png\" /></div>");
+                }
+
+                html.append("</body></html>");
+                multi.append(html.toString(), baseUri);
+            }
+
+            assertEquals(3, multi.getPartCount());
+            multi.finish();
+        }
+
+        try (PDDocument doc = PDDocument.load(os.toByteArray())) {
+            assertEquals(6, doc.getNumberOfPages());
+
+            List<COSBase> fonts = new ArrayList<>();
+            List<COSBase> images = new ArrayList<>();
+
+            for (PDPage page : doc.getPages()) {
+                PDResources resources = page.getResources();
+
+                for (COSName name : resources.getFontNames()) {
+                    COSBase font = resources.getCOSObject().getCOSDictionary(COSName.FONT).getItem(name);
+                    if (fonts.stream().noneMatch(f -> f == font)) {
+                        fonts.add(font);
+                    }
+                }
+
+                for (COSName name : resources.getXObjectNames()) {
+                    COSBase image = resources.getCOSObject().getCOSDictionary(COSName.XOBJECT).getItem(name);
+                    if (images.stream().noneMatch(i -> i == image)) {
+                        images.add(image);
+                    }
+                }
+            }
+
+            assertEquals(1, fonts.size());
+            assertEquals(1, images.size());
+
+            PDDocumentOutline outline = doc.getDocumentCatalog().getDocumentOutline();
+            int[] expectedPages = new int[] { 0, 1, 3 };
+            int part = 0;
+
+            for (PDOutlineItem item : outline.children()) {
+                PDPageXYZDestination dest = (PDPageXYZDestination) item.getDestination();
+                assertEquals("Part " + (part + 1), item.getTitle());
+                assertEquals(item.getTitle(), expectedPages[part], doc.getPages().indexOf(dest.getPage()));
+                part++;
+            }
+
+            assertEquals(3, part);
+        }
+    }
+
+    /**
+     * Tests that a font collection used by several parts of a multi-document PDF
+     * stays open until the document is saved and is embedded once.
+     */
+    @Test
+    public void testMultiDocumentFontCollection() throws IOException {
+        File ttc = new File("target/test/multi-document/Karla-Bold.ttc");
+        ttc.getParentFile().mkdirs();
+        writeTrueTypeCollection(TestSupport.fontFileKarlaBold(), ttc);
+
+        assertMultiDocumentSharesFont(builder -> builder.useFont(ttc, "KarlaCollection"), "KarlaCollection");
+    }
+
+    /**
+     * Tests the same for a font collection found through a font directory index.
+     */
+    @Test
+    public void testMultiDocumentIndexedFontCollection() throws IOException {
+        File directory = new File("target/test/multi-document-index");
+        FileUtils.deleteDirectory(directory);
+        directory.mkdirs();
+        writeTrueTypeCollection(TestSupport.fontFileKarlaBold(), new File(directory, "Karla-Bold.ttc"));
+
+        PdfBoxFontDirectoryIndex index = PdfBoxFontDirectoryIndex.load(directory, new File(directory, "fonts.idx"));
+        assertEquals(0, index.getEntries().get(0).getCollectionIndex());
+
+        assertMultiDocumentSharesFont(builder -> builder.useFontDirectoryIndex(index, FontGroup.MAIN), "Karla");
+    }
+
+    private void assertMultiDocumentSharesFont(BuilderConfig config, String family) throws IOException {
+        PdfRendererBuilder builder = new PdfRendererBuilder();
+        builder.testMode(true);
+        config.configure(builder);
+        PdfRendererFactory factory = builder.buildFactory();
+
+        ByteArrayOutputStream os = new ByteArrayOutputStream();
+
+        try (PdfMultiDocumentRenderer multi = factory.buildMultiDocumentRenderer(os)) {
+            for (int part = 1; part <= 2; part++) {
+                multi.append("<html><head><style>@page { size: 200px 200px; margin: 10px; }</style></head>" +
+                        "<body style=\"font-family: '" + family + "'; font-weight: bold;\">Part " + part + "</body></html>",
+                        NonVisualRegressionTest.class.getResource(RES_PATH).toString());
+            }
+
+            multi.finish();
+        }
+
+        try (PDDocument doc = PDDocument.load(os.toByteArray())) {
+            assertEquals(2, doc.getNumberOfPages());
+
+            COSBase first = null;
+            for (PDPage page : doc.getPages()) {
+                PDResources resources = page.getResources();
+                COSName name = resources.getFontNames().iterator().next();
+                COSBase font = resources.getCOSObject().getCOSDictionary(COSName.FONT).getItem(name);
+
+                assertTrue(resources.getFont(name).getName().contains("+Karla"));
+                assertTrue(first == null || first == font);
+                first = font;
+            }
+        }
+    }
+
+    /**
+     * Writes a TrueType collection holding just the font in ttf.
+     */
+    private static void writeTrueTypeCollection(File ttf, File ttc) throws IOException {
+        byte[] font = Files.readAllBytes(ttf.toPath());
+        int headerLength = 16;
+        ByteBuffer table = ByteBuffer.wrap(font);
+
+        // Table offsets are from the start of the file, so move them past the collection header.
+        int numTables = table.getShort(4) & 0xFFFF;
+        for (int i = 0; i < numTables; i++) {
+            int offsetPos = 12 + i * 16 + 8;
+            table.putInt(offsetPos, table.getInt(offsetPos) + headerLength);
+        }
+
+        try (DataOutputStream out = new DataOutputStream(Files.newOutputStream(ttc.toPath()))) {
+            out.writeBytes("ttcf");
+            out.writeInt(0x0001_0000);
+            out.writeInt(1);
+            out.writeInt(headerLength);
+            out.write(font);
+        }
+    }
+
+    /**
+     * Tests that a cancelled token or a passed deadline aborts the render
+     * with a RenderCancelledException and that a distant deadline does not.
+     */
+    @Test
+    public void testCancellationToken() throws IOException {
+        String html = createPagedHtml(20);
+
+        CancellationToken cancelled = CancellationToken.create();
+        cancelled.cancel();
+
+        try {
+            renderToBytes(html, builder -> builder.useCancellationToken(cancelled));
+            Assert.fail("Render was not cancelled");
+        } catch (RenderCancelledException e) {
+            assertFalse(e.isDeadlineExceeded());
+        }
+
+        CancellationToken expired = CancellationToken.withTimeout(0, TimeUnit.MILLISECONDS);
+
+        try {
+            renderToBytes(html, builder -> builder.useCancellationToken(expired));
+            Assert.fail("Render deadline was not enforced");
+        } catch (RenderCancelledException e) {
+            assertTrue(e.isDeadlineExceeded());
+        }
+
+        byte[] pdf = renderToBytes(html, builder -> builder.useCancellationToken(CancellationToken.withTimeout(1, TimeUnit.HOURS)));
+
+        try (PDDocument doc = PDDocument.load(pdf)) {
+            assertEquals(20, doc.getNumberOfPages());
+        }
+    }
+
+    private static ResourceBudget.Limit renderWithLimit(String html, BuilderConfig config) throws IOException {
+        try {
+            renderToBytes(html, config);
+        } catch (ResourceLimitExceededException e) {
+            return e.getLimit();
+        }
+        return null;
+    }
+
+    /**
+     * Tests that each resource limit aborts a render that exceeds it
+     * and does not affect a render within it.
+     */
+    @Test
+    public void testResourceLimits() throws IOException {
+        String paged = createPagedHtml(20);
+        String image = "<html><body><img src=\"../../demos/images/flyingsaucer.png\" /></body></html>";
+
+        assertEquals(ResourceBudget.Limit.PAGES, renderWithLimit(paged, builder -> builder.useMaxPages(5)));
+        assertEquals(null, renderWithLimit(paged, builder -> builder.useMaxPages(20)));
+
+        assertEquals(ResourceBudget.Limit.BOXES, renderWithLimit(paged, builder -> builder.useMaxBoxes(10)));
+        assertEquals(null, renderWithLimit(paged, builder -> builder.useMaxBoxes(10_000)));
+
+        assertEquals(ResourceBudget.Limit.RESOURCE_BYTES, renderWithLimit(image, builder -> builder.useMaxResourceBytes(100)));
+        assertEquals(null, renderWithLimit(image, builder -> builder.useMaxResourceBytes(10_000_000)));
+
+        assertEquals(ResourceBudget.Limit.IMAGE_PIXELS, renderWithLimit(image, builder -> builder.useMaxImagePixels(100)));
+        assertEquals(null, renderWithLimit(image, builder -> builder.useMaxImagePixels(100_000_000)));
+    }
+
+    /**
+     * Tests that pages compressed on another thread decode to the
+     * same content as pages compressed while painting.
+     */
+    @Test
+    public void testConcurrentPageCompression() throws IOException {
+        String html = createPagedHtml(30);
+        ExecutorService executor = Executors.newFixedThreadPool(3);
+
+        try {
+            byte[] expected = renderToBytes(html, builder -> builder.testMode(false));
+            byte[] actual = renderToBytes(html, builder -> builder.testMode(false).useConcurrentPageCompression(executor));
+
+            assertSamePageContent("concurrent compression", expected, actual);
+
+            try (PDDocument doc = PDDocument.load(actual)) {
+                for (int i = 0; i < doc.getNumberOfPages(); i++) {
+                    COSStream contents = (COSStream) doc.getPage(i).getCOSObject().getDictionaryObject(COSName.CONTENTS);
+                    assertEquals(COSName.FLATE_DECODE, contents.getFilters());
+                }
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * Tests that a renderer built on one thread can lay out and paint on another
+     * thread which has no shared context registered with it, including a linked SVG.
+     */
+    @Test
+    public void testRenderOnAnotherThread() throws Exception {
+        String html = "<html><head><style>p { text-transform: uppercase; }</style></head>" +
+                      "<body><p>Moved between threads</p>" +
+                      "<img src=\"solid.svg\" style=\"width: 20px; height: 20px;\" /></body></html>";
+
+        byte[] expected = renderToBytes(html, TestSupport.WITH_SVG);
+
+        ByteArrayOutputStream os = new ByteArrayOutputStream();
+        PdfRendererBuilder builder = new PdfRendererBuilder();
+        builder.withHtmlContent(html, NonVisualRegressionTest.class.getResource(RES_PATH).toString());
+        builder.toStream(os);
+        builder.testMode(true);
+        TestSupport.WITH_SVG.configure(builder);
+
+        PdfBoxRenderer renderer = builder.buildPdfRenderer();
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+
+        try {
+            executor.submit(() -> {
+                try (PdfBoxRenderer r = renderer) {
+                    r.layout();
+                    r.createPDF();
+                }
+                return null;
+            }).get();
+        } finally {
+            executor.shutdown();
+        }
+
+        assertSamePageContent("other thread", expected, os.toByteArray());
+
+        try (PDDocument doc = PDDocument.load(os.toByteArray())) {
+            assertTrue(new PDFTextStripper().getText(doc).contains("MOVED BETWEEN THREADS"));
+        }
+    }
+
+    /**
+     * Tests that fonts from a font registry are parsed once for many renders
+     * and give the same output as fonts parsed by each render.
+     */
+    @Test
+    public void testFontRegistry() throws IOException {
+        String html = "<html><body style=\"font-family: 'TestFont';\">Shared font</body></html>";
+        byte[] expected = renderToBytes(html, TestSupport.WITH_FONT);
+
+        try (PdfBoxFontRegistry registry = new PdfBoxFontRegistry()) {
+            for (int i = 0; i < 2; i++) {
+                byte[] actual = renderToBytes(html, builder -> {
+                    TestSupport.WITH_FONT.configure(builder);
+                    builder.useFontRegistry(registry);
+                });
+
+                assertSamePageContent("font registry", expected, actual);
+
+                try (PDDocument doc = PDDocument.load(actual)) {
+                    assertTrue(new PDFTextStripper().getText(doc).contains("Shared font"));
+                }
+            }
+
+            assertEquals(1, registry.size());
+        }
+    }
+
+    /**
+     * Tests that renders running at the same time with one font registry share its
+     * fonts and each give the same output as a render without a registry.
+     */
+    @Test
+    public void testFontRegistryConcurrentRenders() throws Exception {
+        String html = "<html><body style=\"font-family: 'TestFont', 'Arabic';\">" +
+                "Shared \u0645\u0631\u062d\u0628\u0627 <span style=\"font-family: 'Sans';\">fonts</span></body></html>";
+        BuilderConfig fonts = builder -> {
+            TestSupport.WITH_FONT.configure(builder);
+            builder.useFont(TestSupport.fontFileNotoNaskhArabicRegular(), "Arabic");
+            builder.useFont(TestSupport.fontFileSourceSansProRegular(), "Sans");
+        };
+
+        byte[] expected = renderToBytes(html, fonts);
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+
+        try (PdfBoxFontRegistry registry = new PdfBoxFontRegistry()) {
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<byte[]>> renders = new ArrayList<>();
+
+            for (int i = 0; i < 8; i++) {
+                renders.add(executor.submit(() -> {
+                    start.await();
+                    return renderToBytes(html, builder -> {
+                        fonts.configure(builder);
+                        builder.useFontRegistry(registry);
+                    });
+                }));
+            }
+
+            start.countDown();
+
+            for (Future<byte[]> render : renders) {
+                byte[] actual = render.get(60, TimeUnit.SECONDS);
+
+                assertSamePageContent("concurrent font registry", expected, actual);
+                assertEquals(getFontNames(expected), getFontNames(actual));
+            }
+
+            assertEquals(3, registry.size());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * Tests that a registry with a spool directory reads stream fonts from a temporary
+     * file, gives the same output as a heap registry and deletes the file on close.
+     */
+    @Test
+    public void testFontRegistrySpoolDirectory() throws IOException {
+        File spool = new File("target/test/font-spool");
+        FileUtils.deleteDirectory(spool);
+        spool.mkdirs();
+
+        FSSupplier<InputStream> font = () -> TestSupport.class.getResourceAsStream("/visualtest/html/fonts/Karla-Bold.ttf");
+        String html = "<html><body style=\"font-family: 'Streamed';\">Spooled font</body></html>";
+        byte[] expected = renderToBytes(html, builder -> builder.useFont(font, "Streamed"));
+
+        try (PdfBoxFontRegistry registry = new PdfBoxFontRegistry(spool)) {
+            for (int i = 0; i < 2; i++) {
+                byte[] actual = renderToBytes(html, builder -> {
+                    builder.useFont(font, "Streamed");
+                    builder.useFontRegistry(registry);
+                });
+
+                assertSamePageContent("spooled font", expected, actual);
+            }
+
+            assertEquals(1, spool.list().length);
+        }
+
+        assertEquals(0, spool.list().length);
+    }
+
+    /**
+     * Tests that font metrics saved by a persistent cache store are available
+     * to the next process and give the same layout.
+     */
+    @Test
+    public void testPersistentFontMetricsCache() throws IOException {
+        File file = new File("target/test/font-metrics.cache");
+        file.delete();
+
+        String html = "<html><body style=\"font-family: 'TestFont';\">Cached metrics</body></html>";
+        byte[] expected;
+
+        try (PdfBoxPersistentCacheStore cache = PdfBoxPersistentCacheStore.load(file)) {
+            expected = renderToBytes(html, builder -> {
+                TestSupport.WITH_FONT.configure(builder);
+                builder.useCacheStore(CacheStore.PDF_FONT_METRICS, cache);
+            });
+            assertTrue(cache.size() > 0);
+        }
+
+        assertTrue(file.isFile());
+
+        PdfBoxPersistentCacheStore reloaded = PdfBoxPersistentCacheStore.load(file);
+        assertTrue(reloaded.size() > 0);
+
+        byte[] actual = renderToBytes(html, builder -> {
+            TestSupport.WITH_FONT.configure(builder);
+            builder.useCacheStore(CacheStore.PDF_FONT_METRICS, reloaded);
+        });
+
+        assertSamePageContent("persistent font metrics", expected, actual);
+
+        long written = file.lastModified();
+        reloaded.close();
+        assertEquals(written, file.lastModified());
+    }
+
+    /**
+     * Tests that a persistent cache store skips font metrics records of the wrong
+     * length and value types it does not know, and keeps reading after them.
+     */
+    @Test
+    public void testPersistentCacheStoreSkipsUnknownRecords() throws IOException {
+        File file = new File("target/test/font-metrics-records.cache");
+        file.getParentFile().mkdirs();
+
+        try (DataOutputStream out = new DataOutputStream(Files.newOutputStream(file.toPath()))) {
+            out.writeInt(0x4f48_4343);
+            out.writeInt(1);
+
+            // Font metrics with a length that is not six floats.
+            out.writeBoolean(true);
+            out.writeUTF("short");
+            out.writeInt(1);
+            out.writeInt(8);
+            out.writeFloat(1f);
+            out.writeFloat(2f);
+
+            // A value type from a later version.
+            out.writeBoolean(true);
+            out.writeUTF("unknown");
+            out.writeInt(99);
+            out.writeInt(3);
+            out.write(new byte[] { 1, 2, 3 });
+
+            out.writeBoolean(true);
+            out.writeUTF("good");
+            out.writeInt(1);
+            out.writeInt(24);
+            for (int i = 0; i < 6; i++) {
+                out.writeFloat(i);
+            }
+
+            out.writeBoolean(false);
+        }
+
+        PdfBoxPersistentCacheStore cache = PdfBoxPersistentCacheStore.load(file);
+
+        assertEquals(1, cache.size());
+        assertTrue(cache.get("good") != null);
+        assertTrue(cache.get("short") == null);
+        assertTrue(cache.get("unknown") == null);
+
+        // Saving keeps the value of unknown type as it was and drops the bad one.
+        cache.put("added", new PdfBoxRawPDFontMetrics(1, 2, 3, 4, 5, 6));
+        cache.close();
+
+        Map<String, byte[]> saved = new HashMap<>();
+        try (DataInputStream in = new DataInputStream(Files.newInputStream(file.toPath()))) {
+            assertEquals(0x4f48_4343, in.readInt());
+            assertEquals(1, in.readInt());
+
+            while (in.readBoolean()) {
+                String key = in.readUTF();
+                int type = in.readInt();
+                byte[] value = new byte[in.readInt()];
+                in.readFully(value);
+                saved.put(key + ":" + type, value);
+            }
+        }
+
+        assertEquals(3, saved.size());
+        assertTrue(saved.containsKey("good:1"));
+        assertTrue(saved.containsKey("added:1"));
+        assertTrue(Arrays.equals(new byte[] { 1, 2, 3 }, saved.get("unknown:99")));
+    }
+
+    /**
+     * Tests that metrics of a font file are keyed on the version of the file, so a
+     * persistent cache store does not give the metrics of a font file that has changed.
+     */
+    @Test
+    public void testPersistentFontMetricsCacheFontChange() throws IOException {
+        File font = new File("target/test/font-metrics-change/Karla-Bold.ttf");
+        font.getParentFile().mkdirs();
+        Files.copy(TestSupport.fontFileKarlaBold().toPath(), font.toPath(), StandardCopyOption.REPLACE_EXISTING);
+
+        String html = "<html><body style=\"font-family: 'Changing';\">Changing font</body></html>";
+        PdfBoxPersistentCacheStore cache = PdfBoxPersistentCacheStore.load(new File("target/test/font-metrics-change/metrics.cache"));
+        BuilderConfig config = builder -> {
+            builder.useFont(font, "Changing");
+            builder.useCacheStore(CacheStore.PDF_FONT_METRICS, cache);
+        };
+
+        renderToBytes(html, config);
+        int size = cache.size();
+
+        renderToBytes(html, config);
+        assertEquals(size, cache.size());
+
+        // As on a deploy of a new version of the font.
+        assertTrue(font.setLastModified(font.lastModified() - 60_000));
+
+        renderToBytes(html, config);
+        assertEquals(size + 1, cache.size());
+    }
+
+    /**
+     * Tests that a font directory index finds the real family and weight of fonts,
+     * is reused when the directory is unchanged and matches fonts by family name.
+     */
+    @Test
+    public void testFontDirectoryIndex() throws IOException {
+        File directory = new File(TestSupport.FONT_FILES_PATH);
+        File indexFile = new File("target/test/font-directory.idx");
+        indexFile.delete();
+
+        PdfBoxFontDirectoryIndex index = PdfBoxFontDirectoryIndex.load(directory, indexFile);
+        assertTrue(indexFile.isFile());
+
+        PdfBoxFontDirectoryIndex.Entry karla = index.getEntries().stream()
+                .filter(entry -> entry.getFile().getName().equals("Karla-Bold.ttf"))
+                .findFirst().get();
+
+        assertEquals("Karla", karla.getFamily());
+        assertEquals(700, karla.getWeight());
+        assertEquals(IdentValue.NORMAL, karla.getStyle());
+        assertTrue(karla.covers('K'));
+        assertFalse(karla.covers(0x4E00));
+
+        // Fallback checks use the indexed coverage rather than loading the font.
+        AtomicInteger loads = new AtomicInteger();
+        FontDescription indexed = new FontDescription(null, () -> {
+            loads.incrementAndGet();
+            return null;
+        }, karla.getStyle(), karla.getWeight(), karla.getFamily(), false, true, null, karla.getMetrics(), karla::covers, null);
+
+        assertTrue(indexed.hasGlyph('K'));
+        assertTrue(indexed.hasGlyphs("Karla"));
+        assertFalse(indexed.hasGlyph(0x4E00));
+        assertFalse(indexed.hasGlyphs("Karla \u4e00"));
+        assertEquals(0, loads.get());
+
+        long written = indexFile.lastModified();
+        PdfBoxFontDirectoryIndex reloaded = PdfBoxFontDirectoryIndex.load(directory, indexFile);
+        assertEquals(written, indexFile.lastModified());
+        assertEquals(index.getEntries().size(), reloaded.getEntries().size());
+
+        String html = "<html><body style=\"font-family: Karla; font-weight: bold;\">Indexed font</body></html>";
+        byte[] pdf = renderToBytes(html, builder -> builder.useFontDirectoryIndex(reloaded, FontGroup.MAIN));
+
+        try (PDDocument doc = PDDocument.load(pdf)) {
+            PDResources resources = doc.getPage(0).getResources();
+            PDFont font = resources.getFont(resources.getFontNames().iterator().next());
+            assertTrue(font.getName().contains("Karla"));
+        }
+    }
+
+    /**
+     * Tests that cached glyph advances give the same string widths as PDFBox
+     * and that characters missing from the font are still reported.
+     */
+    @Test
+    public void testGlyphAdvanceCache() throws IOException {
+        try (PDDocument doc = new PDDocument()) {
+            PDFont font = PDType0Font.load(doc, TestSupport.fontFileKarlaBold());
+            FontDescription description = new FontDescription(font, IdentValue.NORMAL, 700);
+
+            // Characters all in the font.
+            for (String str : Arrays.asList("Karla", "Measured twice, cut once.", "\u00e9t\u00e9 \u2013 it\u2019s \u00fcber sch\u00f6n", "Karla")) {
+                assertEquals(font.getStringWidth(str), description.getStringWidth(str), 0f);
+            }
+
+            // The font has no CJK glyphs, nor A with ring above.
+            for (String str : Arrays.asList("a\u4e00", "a\u4e00", "\u00c5ngstr\u00f6m")) {
+                try {
+                    description.getStringWidth(str);
+                    Assert.fail("Expected missing glyph in " + str);
+                } catch (IllegalArgumentException e) {
+                    // Expected.
+                }
+            }
+        }
+    }
+
+    /**
+     * Tests that font fallback uses cmap coverage: Latin text comes from the first
+     * font and Arabic text from the second, with both fonts embedded.
+     */
+    @Test
+    public void testFontCoverageFallback() throws IOException {
+        try (PDDocument doc = new PDDocument()) {
+            FontDescription karla = new FontDescription(
+                    PDType0Font.load(doc, TestSupport.fontFileKarlaBold()), IdentValue.NORMAL, 700);
+
+            assertTrue(karla.hasGlyph('K'));
+            assertTrue(karla.hasGlyphs("Karla \u2013 bold"));
+            assertFalse(karla.hasGlyph(0x0645));
+            assertFalse(karla.hasGlyphs("Karla \u0645"));
+        }
+
+        String html = "<html><body style=\"font-family: 'TestFont', 'Arabic';\">Hello \u0645\u0631\u062d\u0628\u0627 world</body></html>";
+        byte[] pdf = renderToBytes(html, builder -> {
+            TestSupport.WITH_FONT.configure(builder);
+            builder.useFont(TestSupport.fontFileNotoNaskhArabicRegular(), "Arabic");
+        });
+
+        try (PDDocument doc = PDDocument.load(pdf)) {
+            PDResources resources = doc.getPage(0).getResources();
+            List<String> names = new ArrayList<>();
+
+            for (COSName name : resources.getFontNames()) {
+                names.add(resources.getFont(name).getName());
+            }
+
+            assertTrue(names.stream().anyMatch(name -> name.contains("Karla")));
+            assertTrue(names.stream().anyMatch(name -> name.contains("NotoNaskhArabic")));
+        }
+    }
+
+    /**
+     * Tests that elements with the same font specification share a resolved font
+     * and that the cache statistics are reported to the diagnostic consumer.
+     * <br><br>
+     * Each calculated style resolves its font once, and alike elements share a calculated
+     * style, so the paragraphs differ in margin to give each one (and its bold child)
+     * its own calculated style with the same font specification.
+     */
+    @Test
+    public void testFontResolutionCache() throws IOException {
+        List<Diagnostic> logs = new ArrayList<>();
+        String html = "<html><body style=\"font-family: 'TestFont';\">" +
+                IntStream.range(0, 20).mapToObj(i -> "<p style=\"margin-left: " + i + "px;\">Paragraph <b>" + i + "</b></p>").collect(Collectors.joining()) +
+                "</body></html>";
+
+        renderToBytes(html, builder -> {
+            TestSupport.WITH_FONT.configure(builder);
+            builder.withDiagnosticConsumer(logs::add);
+        });
+
+        Diagnostic stats = logs.stream()
+                .filter(diag -> diag.getLogMessageId() == LogMessageId.LogMessageId2Param.LOAD_FONT_RESOLUTION_CACHE_STATS)
+                .findFirst().get();
+
+        int hits = (Integer) stats.getArgs()[0];
+        int misses = (Integer) stats.getArgs()[1];
+
+        // Only the regular and bold fonts are looked up in the font stores.
+        assertEquals(2, misses);
+        assertTrue(hits >= 38);
+    }
+
+    /**
+     * Tests that fonts subset concurrently before save give the same document
+     * as fonts subset by PDF-BOX while saving.
+     */
+    @Test
+    public void testConcurrentFontSubsetting() throws IOException {
+        String html = "<html><body style=\"font-family: 'TestFont', 'Arabic';\">" +
+                "Hello \u0645\u0631\u062d\u0628\u0627 <span style=\"font-family: 'Sans';\">sans</span></body></html>";
+        BuilderConfig fonts = builder -> {
+            TestSupport.WITH_FONT.configure(builder);
+            builder.useFont(TestSupport.fontFileNotoNaskhArabicRegular(), "Arabic");
+            builder.useFont(TestSupport.fontFileSourceSansProRegular(), "Sans");
+        };
+
+        byte[] expected = renderToBytes(html, fonts);
+
+        ExecutorService executor = Executors.newFixedThreadPool(3);
+        try {
+            // Repeat so that fonts finish in different orders and create their
+            // streams at the same time.
+            for (int i = 0; i < 20; i++) {
+                byte[] actual = renderToBytes(html, builder -> {
+                    fonts.configure(builder);
+                    builder.useConcurrentFontSubsetting(executor);
+                });
+
+                assertSamePageContent("concurrent font subsetting", expected, actual);
+                assertEquals(getFontNames(expected), getFontNames(actual));
+                assertEquals(3, getFontNames(actual).size());
+                assertTrue(getFontNames(actual).stream().allMatch(name -> name.contains("+")));
+            }
+
+            // Factory renders subset on the executor too.
+            AtomicInteger tasks = new AtomicInteger();
+            PdfRendererBuilder builder = new PdfRendererBuilder();
+            builder.testMode(true);
+            fonts.configure(builder);
+            builder.useConcurrentFontSubsetting(task -> {
+                tasks.incrementAndGet();
+                executor.execute(task);
+            });
+
+            RenderResult result = builder.buildFactory()
+                    .runAsync(html, NonVisualRegressionTest.class.getResource(RES_PATH).toString(), executor)
+                    .join();
+
+            assertEquals(3, tasks.get());
+            assertSamePageContent("factory font subsetting", expected, result.getPdf());
+            assertEquals(getFontNames(expected), getFontNames(result.getPdf()));
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private static List<String> getFontNames(byte[] pdf) throws IOException {
+        try (PDDocument doc = PDDocument.load(pdf)) {
+            PDResources resources = doc.getPage(0).getResources();
+            List<String> names = new ArrayList<>();
+
+            for (COSName name : resources.getFontNames()) {
+                names.add(resources.getFont(name).getName());
+            }
+
+            names.sort(null);
+            return names;
+        }
+    }
+
+    /**
+     * Tests that Java2D renders sharing a font cache give the same image
+     * as a render that creates and measures its own fonts.
+     */
+    @Test
+    public void testJava2DFontCache() throws Exception {
+        String html = "<html><body style=\"font-family: 'TestFont'; width: 300px;\">" +
+                "<p>Cached fonts and advances, wrapped onto more than one line of text.</p>" +
+                "<p style=\"font-size: 20px; font-weight: bold;\">Larger \u00e9t\u00e9</p>" +
+                "<p style=\"font-size: 9.5px;\">Smaller [text] &amp; {symbols}</p></body></html>";
+
+        BufferedImage expected = renderJava2D(html, null);
+
+        Java2DFontCache cache = new Java2DFontCache();
+        BufferedImage first = renderJava2D(html, cache);
+        int size = cache.size();
+        BufferedImage second = renderJava2D(html, cache);
+
+        assertTrue(size > 0);
+        assertEquals(size, cache.size());
+        assertSameImage(expected, first);
+        assertSameImage(expected, second);
+    }
+
+    private static BufferedImage renderJava2D(String html, Java2DFontCache cache) throws Exception {
+        Java2DRendererBuilder builder = new Java2DRendererBuilder();
+        BufferedImagePageProcessor processor = new BufferedImagePageProcessor(BufferedImage.TYPE_INT_RGB, 1.0);
+
+        builder.withHtmlContent(html, NonVisualRegressionTest.class.getResource(RES_PATH).toString());
+        builder.useFastMode();
+        builder.testMode(true);
+        builder.toSinglePage(processor);
+        TestSupport.J2D_WITH_FONT.configure(builder);
+
+        if (cache != null) {
+            builder.useFontCache(cache);
+        }
+
+        builder.runFirstPage();
+        return processor.getPageImages().get(0);
+    }
+
+    private static void assertSameImage(BufferedImage expected, BufferedImage actual) {
+        assertEquals(expected.getWidth(), actual.getWidth());
+        assertEquals(expected.getHeight(), actual.getHeight());
+
+        int w = expected.getWidth();
+        int h = expected.getHeight();
+        assertTrue(Arrays.equals(expected.getRGB(0, 0, w, h, null, 0, w), actual.getRGB(0, 0, w, h, null, 0, w)));
+    }
+
     // TODO:
     // + More form controls.
     // + Custom meta info.
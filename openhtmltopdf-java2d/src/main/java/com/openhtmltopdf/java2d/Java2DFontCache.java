@@ -0,0 +1,330 @@
+package com.openhtmltopdf.java2d;
+
+import java.awt.Font;
+import java.awt.FontFormatException;
+import java.awt.font.FontRenderContext;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.logging.Level;
+
+import com.openhtmltopdf.extend.FSSupplier;
+import com.openhtmltopdf.util.LogMessageId;
+import com.openhtmltopdf.util.XRLog;
+
+/**
+ * A cache of AWT fonts and their character advances that can be shared by renders, see
+ * {@link com.openhtmltopdf.java2d.api.Java2DRendererBuilder#useFontCache(Java2DFontCache)}.
+ * <br><br>
+ * Without a shared cache every render creates its fonts from their files or input streams,
+ * derives each size and style it uses and measures text through <code>FontMetrics</code>.
+ * With a shared cache fonts are created once, derived fonts are reused and the advance of each
+ * character is measured once per font and font render context.
+ * <br><br>
+ * Font files are reloaded if their size or last modified time changes. Input stream
+ * suppliers are keyed on identity, font-face rules on their resolved uri.
+ * <br><br>
+ * Each kind of entry is bounded, the least recently used entries being dropped first.
+ * This class is thread safe.
+ */
+public final class Java2DFontCache {
+    /**
+     * The default maximum number of entries of each kind.
+     */
+    public static final int DEFAULT_MAX_SIZE = 512;
+
+    /**
+     * AWT measures text up to the combining diacritical marks as the sum of its character
+     * advances, so only strings of these characters are measured from the cache.
+     */
+    static final int SIMPLE_LIMIT = 0x300;
+
+    private static final float UNKNOWN = Float.NEGATIVE_INFINITY;
+
+    private final Map<Object, Font> _baseFonts;
+    private final Map<DerivedFontKey, Font> _derivedFonts;
+    private final Map<AdvancesKey, float[]> _advances;
+
+    /**
+     * Creates a cache holding up to {@link #DEFAULT_MAX_SIZE} entries of each kind.
+     */
+    public Java2DFontCache() {
+        this(DEFAULT_MAX_SIZE);
+    }
+
+    /**
+     * @param maxSize the maximum number of base fonts, derived fonts and
+     * per font advance tables each to keep.
+     */
+    public Java2DFontCache(int maxSize) {
+        this._baseFonts = lruMap(maxSize);
+        this._derivedFonts = lruMap(maxSize);
+        this._advances = lruMap(maxSize);
+    }
+
+    private static <K, V> Map<K, V> lruMap(int maxSize) {
+        return Collections.synchronizedMap(new LinkedHashMap<K, V>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+                return size() > maxSize;
+            }
+        });
+    }
+
+    /**
+     * @return the number of base fonts, derived fonts and advance tables in the cache.
+     */
+    public int size() {
+        return _baseFonts.size() + _derivedFonts.size() + _advances.size();
+    }
+
+    /**
+     * Returns the TrueType font in file, creating it on first use.
+     * @return the font or null if it could not be loaded.
+     */
+    Font getFont(File file) {
+        File absolute = file.getAbsoluteFile();
+        FileKey key = new FileKey(absolute, absolute.lastModified(), absolute.length());
+
+        return getBaseFont(key, () -> {
+            try {
+                return Font.createFont(Font.TRUETYPE_FONT, absolute);
+            } catch (IOException | FontFormatException e) {
+                XRLog.log(Level.WARNING, LogMessageId.LogMessageId0Param.EXCEPTION_JAVA2D_COULD_NOT_LOAD_FONT, e);
+                return null;
+            }
+        });
+    }
+
+    /**
+     * Returns the TrueType font read from supplier, reading it on first use.
+     * @param key identifies the font, for example the supplier itself or a resolved uri.
+     * @return the font or null if it could not be loaded.
+     */
+    Font getFont(Object key, FSSupplier<InputStream> supplier) {
+        return getBaseFont(key, () -> {
+            InputStream is = supplier.supply();
+
+            if (is == null) {
+                return null;
+            }
+
+            try {
+                return Font.createFont(Font.TRUETYPE_FONT, is);
+            } catch (IOException | FontFormatException e) {
+                XRLog.log(Level.WARNING, LogMessageId.LogMessageId0Param.EXCEPTION_JAVA2D_COULD_NOT_LOAD_FONT, e);
+                return null;
+            } finally {
+                try {
+                    is.close();
+                } catch (IOException e) {
+                }
+            }
+        });
+    }
+
+    /**
+     * Returns the environment font with the given family name at size one.
+     */
+    Font getSystemFont(String name) {
+        return getBaseFont(new SystemFontKey(name), () -> new Font(name, Font.PLAIN, 1));
+    }
+
+    private Font getBaseFont(Object key, FSSupplier<Font> loader) {
+        Font font = _baseFonts.get(key);
+
+        if (font == null) {
+            // Creating a font reads its file, so it is done without holding the lock.
+            Font created = loader.supply();
+
+            if (created == null) {
+                // Don't remember failures, the font may be fixed or become available later.
+                return null;
+            }
+
+            font = _baseFonts.putIfAbsent(key, created);
+            return font != null ? font : created;
+        }
+
+        return font;
+    }
+
+    /**
+     * Returns <code>base.deriveFont(style, size)</code>, reusing the derived font
+     * if it has been derived from the same base font before.
+     */
+    Font deriveFont(Font base, int style, float size) {
+        DerivedFontKey key = new DerivedFontKey(base, style, size);
+        Font font = _derivedFonts.get(key);
+
+        if (font == null) {
+            Font derived = base.deriveFont(style, size);
+            font = _derivedFonts.putIfAbsent(key, derived);
+            return font != null ? font : derived;
+        }
+
+        return font;
+    }
+
+    /**
+     * Returns the width of str in font, the same as <code>font.getStringBounds(str, frc).getWidth()</code>,
+     * or NaN if str needs text layout (or has characters at or above {@link #SIMPLE_LIMIT}) and
+     * must be measured by AWT.
+     */
+    float getStringWidth(Font font, FontRenderContext frc, String str) {
+        if (font.hasLayoutAttributes()) {
+            return Float.NaN;
+        }
+
+        for (int i = 0; i < str.length(); i++) {
+            if (str.charAt(i) >= SIMPLE_LIMIT) {
+                return Float.NaN;
+            }
+        }
+
+        float[] advances = getAdvances(font, frc);
+        float width = 0;
+
+        for (int i = 0; i < str.length(); i++) {
+            char c = str.charAt(i);
+            float advance = advances[c];
+
+            if (advance == UNKNOWN) {
+                // Racy but benign: a float write is atomic and every
+                // thread computes the same value for a character.
+                advance = (float) font.getStringBounds(new char[] { c }, 0, 1, frc).getWidth();
+                advances[c] = advance;
+            }
+
+            width += advance;
+        }
+
+        return width;
+    }
+
+    private float[] getAdvances(Font font, FontRenderContext frc) {
+        AdvancesKey key = new AdvancesKey(font, frc);
+        float[] advances = _advances.get(key);
+
+        if (advances == null) {
+            float[] created = new float[SIMPLE_LIMIT];
+            Arrays.fill(created, UNKNOWN);
+            advances = _advances.putIfAbsent(key, created);
+            return advances != null ? advances : created;
+        }
+
+        return advances;
+    }
+
+    private static final class FileKey {
+        private final File _file;
+        private final long _lastModified;
+        private final long _length;
+
+        FileKey(File file, long lastModified, long length) {
+            this._file = file;
+            this._lastModified = lastModified;
+            this._length = length;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(_file, _lastModified, _length);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof FileKey)) {
+                return false;
+            }
+
+            FileKey other = (FileKey) obj;
+            return _file.equals(other._file) &&
+                   _lastModified == other._lastModified &&
+                   _length == other._length;
+        }
+    }
+
+    private static final class SystemFontKey {
+        private final String _name;
+
+        SystemFontKey(String name) {
+            this._name = name;
+        }
+
+        @Override
+        public int hashCode() {
+            return _name.hashCode();
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            return obj instanceof SystemFontKey && _name.equals(((SystemFontKey) obj)._name);
+        }
+    }
+
+    /**
+     * Base fonts are compared by identity as fonts created from different
+     * files may have the same name and so be equal.
+     */
+    private static final class DerivedFontKey {
+        private final Font _base;
+        private final int _style;
+        private final float _size;
+
+        DerivedFontKey(Font base, int style, float size) {
+            this._base = base;
+            this._style = style;
+            this._size = size;
+        }
+
+        @Override
+        public int hashCode() {
+            return (System.identityHashCode(_base) * 31 + _style) * 31 + Float.floatToIntBits(_size);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof DerivedFontKey)) {
+                return false;
+            }
+
+            DerivedFontKey other = (DerivedFontKey) obj;
+            return _base == other._base &&
+                   _style == other._style &&
+                   Float.floatToIntBits(_size) == Float.floatToIntBits(other._size);
+        }
+    }
+
+    private static final class AdvancesKey {
+        private final Font _font;
+        private final FontRenderContext _frc;
+
+        AdvancesKey(Font font, FontRenderContext frc) {
+            this._font = font;
+            this._frc = frc;
+        }
+
+        @Override
+        public int hashCode() {
+            return System.identityHashCode(_font) * 31 + _frc.hashCode();
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof AdvancesKey)) {
+                return false;
+            }
+
+            AdvancesKey other = (AdvancesKey) obj;
+            return _font == other._font && _frc.equals(other._frc);
+        }
+    }
+}
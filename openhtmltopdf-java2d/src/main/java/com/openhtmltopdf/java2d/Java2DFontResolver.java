@@ -37,10 +37,8 @@ import com.openhtmltopdf.util.LogMessageId;
 import com.openhtmltopdf.util.XRLog;
 
 import java.awt.Font;
-import java.awt.FontFormatException;
 import java.awt.GraphicsEnvironment;
 import java.io.File;
-import java.io.IOException;
 import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.HashMap;
@@ -79,38 +77,26 @@ public class Java2DFontResolver implements FontResolver {
             return _font;
         }
 
-        protected abstract boolean realizeFont();
+        protected abstract boolean realizeFont(Java2DFontCache cache);
     }
 
     private static class InputStreamFontDescription extends FontDescription {
+        private final Object _key;
         private FSSupplier<InputStream> _supplier;
 
-        private InputStreamFontDescription(FSSupplier<InputStream> supplier, int weight, IdentValue style) {
+        private InputStreamFontDescription(Object key, FSSupplier<InputStream> supplier, int weight, IdentValue style) {
             super(weight, style);
+            this._key = key;
             this._supplier = supplier;
         }
         
         @Override
-        protected boolean realizeFont() {
+        protected boolean realizeFont(Java2DFontCache cache) {
             if (_font == null && _supplier != null) {
-                InputStream is = _supplier.supply();
+                FSSupplier<InputStream> supplier = _supplier;
                 _supplier = null; // We only try once.
 
-                if (is == null) {
-                    return false;
-                }
-
-                try {
-                    _font = Font.createFont(Font.TRUETYPE_FONT, is);
-                } catch (IOException|FontFormatException e) {
-                    XRLog.log(Level.WARNING, LogMessageId.LogMessageId0Param.EXCEPTION_JAVA2D_COULD_NOT_LOAD_FONT, e);
-                    return false;
-                } finally {
-                    try {
-                        is.close();
-                    } catch (IOException e) {
-                    }
-                }
+                _font = cache.getFont(_key, supplier);
             }
 
             return _font != null;
@@ -126,15 +112,15 @@ public class Java2DFontResolver implements FontResolver {
         }
         
         @Override
-        protected boolean realizeFont() {
+        protected boolean realizeFont(Java2DFontCache cache) {
             if (_font == null && _fontFile != null) {
-                try {
-                    _font = Font.createFont(Font.TRUETYPE_FONT, _fontFile);
-                    _fontFile = null;
-                } catch (IOException | FontFormatException e) {
-                    XRLog.log(Level.WARNING, LogMessageId.LogMessageId0Param.EXCEPTION_JAVA2D_COULD_NOT_LOAD_FONT, e);
+                _font = cache.getFont(_fontFile);
+
+                if (_font == null) {
                     return false;
                 }
+
+                _fontFile = null;
             }
 
             return _font != null;
@@ -155,9 +141,20 @@ public class Java2DFontResolver implements FontResolver {
     private final SharedContext _sharedContext;
 
     private final HashMap<String, FontFamily<FontDescription>> _fontFamilies = new HashMap<>();
+
+    private final Java2DFontCache _fontCache;
     
     public Java2DFontResolver(SharedContext sharedCtx, boolean useEnvironmentFonts) {
+        this(sharedCtx, useEnvironmentFonts, new Java2DFontCache());
+    }
+
+    /**
+     * @param fontCache fonts are created, derived and measured through this cache, which
+     * may be shared with other renders, see {@link Java2DFontCache}.
+     */
+    public Java2DFontResolver(SharedContext sharedCtx, boolean useEnvironmentFonts, Java2DFontCache fontCache) {
         _sharedContext = sharedCtx;
+        _fontCache = fontCache;
         if (useEnvironmentFonts) {
             init();
         }
@@ -176,9 +173,9 @@ public class Java2DFontResolver implements FontResolver {
         }
 
         // preload sans, serif, and monospace into the available font hash
-        availableFontsHash.put("Serif", new Font("Serif", Font.PLAIN, 1));
-        availableFontsHash.put("SansSerif", new Font("SansSerif", Font.PLAIN, 1));
-        availableFontsHash.put("Monospaced", new Font("Monospaced", Font.PLAIN, 1));
+        availableFontsHash.put("Serif", _fontCache.getSystemFont("Serif"));
+        availableFontsHash.put("SansSerif", _fontCache.getSystemFont("SansSerif"));
+        availableFontsHash.put("Monospaced", _fontCache.getSystemFont("Monospaced"));
     }
     
     @Deprecated
@@ -223,10 +220,16 @@ public class Java2DFontResolver implements FontResolver {
     
     public void addInputStreamFont(FSSupplier<InputStream> fontSupplier, String fontFamilyNameOverride,
             Integer fontWeightOverride, IdentValue fontStyleOverride) {
-        
+        addInputStreamFont(fontSupplier, fontSupplier, fontFamilyNameOverride, fontWeightOverride, fontStyleOverride);
+    }
+
+    private void addInputStreamFont(Object key, FSSupplier<InputStream> fontSupplier, String fontFamilyNameOverride,
+            Integer fontWeightOverride, IdentValue fontStyleOverride) {
+
         FontFamily<FontDescription> fontFamily = getFontFamily(fontFamilyNameOverride);
         
         FontDescription descr = new InputStreamFontDescription(
+                key,
                 fontSupplier,
                 fontWeightOverride != null ? fontWeightOverride : 400,
                 fontStyleOverride != null ? fontStyleOverride : IdentValue.NORMAL); 
@@ -239,7 +242,10 @@ public class Java2DFontResolver implements FontResolver {
             String uri) {
         
         FSSupplier<InputStream> fontSupplier = new FontFaceFontSupplier(_sharedContext, uri);
+        // A new supplier is created for each render, so the font is cached on its resolved uri.
+        String uriResolved = _sharedContext.getUserAgentCallback().resolveURI(uri);
         addInputStreamFont(
+                uriResolved != null ? uriResolved : fontSupplier,
                 fontSupplier,
                 fontFamilyNameOverride,
                 fontWeightOverride != null ? FontResolverHelper.convertWeightToInt(fontWeightOverride) : 400, 
@@ -302,7 +308,7 @@ public class Java2DFontResolver implements FontResolver {
             FontDescription result = fontFamily.match(FontResolverHelper.convertWeightToInt(weight), style);
 
             if (result != null) {
-               if (result.realizeFont()) {
+               if (result.realizeFont(_fontCache)) {
                     return result.getBaseFont();
                }
             }
@@ -344,7 +350,7 @@ public class Java2DFontResolver implements FontResolver {
 
                     // We always use Font.PLAIN here as the provided font is already in the specifed
                     // weight and style.
-                    Font derivedFont = baseFont.deriveFont(Font.PLAIN, size);
+                    Font derivedFont = _fontCache.deriveFont(baseFont, Font.PLAIN, size);
 
                     // add the font to the hash so we don't have to do this again
                     instanceHash.put(fontInstanceName, derivedFont);
@@ -363,12 +369,12 @@ public class Java2DFontResolver implements FontResolver {
                     if (possiblyNullFont != null) {
                         rootFont = possiblyNullFont;
                     } else {
-                        rootFont = new Font(normal, Font.PLAIN, 1);
+                        rootFont = _fontCache.getSystemFont(normal);
                         availableFontsHash.put(normal, rootFont);
                     }
 
                     // now that we have a root font, we need to create the correct version of it
-                    Font fnt = createFont(ctx, rootFont, size, weight, style, variant);
+                    Font fnt = createFont(ctx, _fontCache, rootFont, size, weight, style, variant);
 
                     // add the font to the hash so we don't have to do this again
                     instanceHash.put(fontInstanceName, fnt);
@@ -381,7 +387,7 @@ public class Java2DFontResolver implements FontResolver {
 
         if (availableFontsHash.containsKey("Serif")) {
             // We add the default serif as last fallback font.
-            Font fnt = createFont(ctx, availableFontsHash.get("Serif"), size, weight, style, variant);
+            Font fnt = createFont(ctx, _fontCache, availableFontsHash.get("Serif"), size, weight, style, variant);
             instanceHash.put(getFontInstanceHashName(ctx, "Serif", size, weight, style, variant), fnt);
             fonts.add(fnt);
         }
@@ -403,6 +409,13 @@ public class Java2DFontResolver implements FontResolver {
      * Creates a concrete instance of a font at specified size, weight, style and variant.
      */
     protected static Font createFont(SharedContext ctx, Font rootFont, float size, IdentValue weight, IdentValue style, IdentValue variant) {
+        return createFont(ctx, null, rootFont, size, weight, style, variant);
+    }
+
+    /**
+     * Creates a concrete instance of a font, deriving it through fontCache if not null.
+     */
+    private static Font createFont(SharedContext ctx, Java2DFontCache fontCache, Font rootFont, float size, IdentValue weight, IdentValue style, IdentValue variant) {
         //Uu.p("creating font: " + root_font + " size = " + size +
         //    " weight = " + weight + " style = " + style + " variant = " + variant);
         int fontConst = Font.PLAIN;
@@ -421,16 +434,20 @@ public class Java2DFontResolver implements FontResolver {
         // scale vs font scale value too
         size *= ctx.getTextRenderer().getFontScale();
 
-        Font fnt = rootFont.deriveFont(fontConst, size);
+        Font fnt = deriveFont(fontCache, rootFont, fontConst, size);
         if (variant != null) {
             if (variant == IdentValue.SMALL_CAPS) {
-                fnt = fnt.deriveFont((float) (((float) fnt.getSize()) * 0.6));
+                fnt = deriveFont(fontCache, fnt, fnt.getStyle(), (float) (((float) fnt.getSize()) * 0.6));
             }
         }
 
         return fnt;
     }
 
+    private static Font deriveFont(Java2DFontCache fontCache, Font font, int style, float size) {
+        return fontCache != null ? fontCache.deriveFont(font, style, size) : font.deriveFont(style, size);
+    }
+
     /**
      * Gets the hash key for a concrete instance of a font.
      * This incorporates size, weight, etc.
@@ -47,6 +47,7 @@ import com.openhtmltopdf.resource.XMLResource;
 import com.openhtmltopdf.simple.extend.XhtmlNamespaceHandler;
 import com.openhtmltopdf.swing.NaiveUserAgent;
 import com.openhtmltopdf.util.Configuration;
+import com.openhtmltopdf.util.ResourceBudget;
 import com.openhtmltopdf.util.ThreadCtx;
 import com.openhtmltopdf.util.XRLog;
 
@@ -108,13 +109,18 @@ public class Java2DRenderer implements Closeable {
         
         _sharedContext._preferredTransformerFactoryImplementationClass = state._preferredTransformerFactoryImplementationClass;
         _sharedContext._preferredDocumentBuilderFactoryImplementationClass = state._preferredDocumentBuilderFactoryImplementationClass;
+        _sharedContext.setCancellationToken(state._cancellationToken);
+        _sharedContext.setResourceBudget(new ResourceBudget(state._maxPages, state._maxBoxes, state._maxResourceBytes, state._maxImagePixels));
+        uac.setResourceBudget(_sharedContext.getResourceBudget());
         
         _sharedContext.setUserAgentCallback(uac);
         _sharedContext.setCss(new StyleReference(uac));
-//        uac.setSharedContext(_sharedContext);
+        _sharedContext.getCss().setStyleDeclarationCache(state._styleDeclarationCache);
+        uac.setSharedContext(_sharedContext);
 //        _outputDevice.setSharedContext(_sharedContext);
 
-        Java2DFontResolver fontResolver = new Java2DFontResolver(_sharedContext, state._useEnvironmentFonts);
+        Java2DFontCache fontCache = state._fontCache != null ? state._fontCache : new Java2DFontCache();
+        Java2DFontResolver fontResolver = new Java2DFontResolver(_sharedContext, state._useEnvironmentFonts, fontCache);
         _sharedContext.setFontResolver(fontResolver);
         
         /*
@@ -143,7 +149,7 @@ public class Java2DRenderer implements Closeable {
 				_objectDrawerFactory, this._mathMLImpl);
         _sharedContext.setReplacedElementFactory(replacedFactory);
         
-        _sharedContext.setTextRenderer(new Java2DTextRenderer());
+        _sharedContext.setTextRenderer(new Java2DTextRenderer(fontCache));
         _sharedContext.setDPI(DEFAULT_DPI * DEFAULT_DOTS_PER_PIXEL);
         _sharedContext.setDotsPerPixel(DEFAULT_DOTS_PER_PIXEL);
         _sharedContext.setPrint(true);
@@ -206,7 +212,7 @@ public class Java2DRenderer implements Closeable {
 	
     private void setDocumentFromString(String content, String baseUrl) {
         InputSource is = new InputSource(new BufferedReader(new StringReader(content)));
-        Document dom = XMLResource.load(is).getDocument();
+        Document dom = XMLResource.load(is, _sharedContext).getDocument();
         setDocument(dom, baseUrl);
     }
     
@@ -431,6 +437,8 @@ public class Java2DRenderer implements Closeable {
         DisplayListContainer displayList = boxCollector.collectRoot(c, _root.getLayer());
 
         for (int i = 0; i < pageCount; i++) {
+            _sharedContext.checkCancelled();
+
             PageBox currentPage = pages.get(i);
             
             c.setPage(i, currentPage);
@@ -55,7 +55,18 @@ public class Java2DTextRenderer implements TextRenderer {
     protected Object antiAliasRenderingHint;
     protected Object fractionalFontMetricsHint;
 
+    private final Java2DFontCache _fontCache;
+
     public Java2DTextRenderer() {
+        this(new Java2DFontCache());
+    }
+
+    /**
+     * @param fontCache text is measured through this cache, which may be shared
+     * with other renders, see {@link Java2DFontCache}.
+     */
+    public Java2DTextRenderer(Java2DFontCache fontCache) {
+        _fontCache = fontCache;
         scale = Configuration.valueAsFloat("xr.text.scale", 1.0f);
         threshold = Configuration.valueAsFloat("xr.text.aa-fontsize-threshhold", 7);
 
@@ -211,12 +222,15 @@ public class Java2DTextRenderer implements TextRenderer {
         graphics.setRenderingHint(RenderingHints.KEY_FRACTIONALMETRICS, fractionalFontMetricsHint);
         int width = 0;
 
+        double bounds = _fontCache.getStringWidth(awtFont, graphics.getFontRenderContext(), string);
+        if (Double.isNaN(bounds)) {
+            bounds = graphics.getFontMetrics(awtFont).getStringBounds(string, graphics).getWidth();
+        }
+
         if(fractionalFontMetricsHint == RenderingHints.VALUE_FRACTIONALMETRICS_ON) {
-            width = (int) Math.round(
-                    graphics.getFontMetrics(awtFont).getStringBounds(string, graphics).getWidth());            
+            width = (int) Math.round(bounds);
         } else {
-            width = (int) Math.ceil(
-                    graphics.getFontMetrics(awtFont).getStringBounds(string, graphics).getWidth());
+            width = (int) Math.ceil(bounds);
         }
         graphics.setRenderingHint(RenderingHints.KEY_FRACTIONALMETRICS, fracHint);
 
@@ -5,6 +5,7 @@ import java.awt.image.BufferedImage;
 import java.io.Closeable;
 
 import com.openhtmltopdf.extend.OutputDevice;
+import com.openhtmltopdf.java2d.Java2DFontCache;
 import com.openhtmltopdf.java2d.Java2DRenderer;
 import com.openhtmltopdf.layout.Layer;
 import com.openhtmltopdf.outputdevice.helper.BaseDocument;
@@ -56,6 +57,17 @@ public class Java2DRendererBuilder extends BaseRendererBuilder<Java2DRendererBui
         return this;
     }
 
+    /**
+     * Uses a font cache that may be shared by many renders, so that fonts are created and
+     * derived once and text is measured from cached character advances.
+     * Without one, each render creates and measures its fonts from scratch.
+     * See {@link Java2DFontCache}.
+     */
+    public Java2DRendererBuilder useFontCache(Java2DFontCache fontCache) {
+        state._fontCache = fontCache;
+        return this;
+    }
+
 	/**
 	 * Render everything to a single page. I.e. only one big page is genereated, no
 	 * pagebreak will be done. The page is only as height as needed.
@@ -1,5 +1,6 @@
 package com.openhtmltopdf.java2d.api;
 
+import com.openhtmltopdf.java2d.Java2DFontCache;
 import com.openhtmltopdf.outputdevice.helper.BaseRendererBuilder;
 
 import java.awt.*;
@@ -16,4 +17,5 @@ public class Java2DRendererBuilderState extends BaseRendererBuilder.BaseRenderer
 	public Graphics2D _layoutGraphics;
 	public FSPageProcessor _pageProcessor;
     public boolean _useEnvironmentFonts = false;
+    public Java2DFontCache _fontCache;
 }
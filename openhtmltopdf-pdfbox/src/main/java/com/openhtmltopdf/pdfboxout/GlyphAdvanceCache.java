@@ -0,0 +1,323 @@
+package com.openhtmltopdf.pdfboxout;
+
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+import org.apache.fontbox.ttf.CmapLookup;
+import org.apache.fontbox.ttf.CmapSubtable;
+import org.apache.fontbox.ttf.TrueTypeFont;
+import org.apache.pdfbox.pdmodel.font.PDCIDFont;
+import org.apache.pdfbox.pdmodel.font.PDCIDFontType2;
+import org.apache.pdfbox.pdmodel.font.PDFont;
+import org.apache.pdfbox.pdmodel.font.PDType0Font;
+
+/**
+ * Caches the advance width of each code point of a font, in the same units as
+ * <code>PDFont.getStringWidth</code> (1/1000 em), so that measuring a string is a
+ * lookup per code point rather than an encode and width lookup by PDFBox.
+ * <br><br>
+ * Code points below {@link #DENSE_SIZE} (Latin) are kept in a flat array, others in a
+ * primitive open addressing map. Code points that are not in the font are remembered
+ * as well so that repeated misses are also cheap.
+ * <br><br>
+ * For TrueType fonts the code points the font covers are read from its unicode cmap
+ * up front, so font fallback is a bit test rather than catching the exception PDFBox
+ * throws for a missing glyph.
+ * <br><br>
+ * Caches are shared by every <code>PDType0Font</code> created from the same
+ * <code>TrueTypeFont</code>, so when a {@link PdfBoxFontRegistry} is shared by many
+ * documents, they also share measurements.
+ */
+final class GlyphAdvanceCache {
+    /**
+     * Basic Latin up to the end of Latin Extended-B.
+     */
+    static final int DENSE_SIZE = 0x250;
+
+    private static final float UNKNOWN = Float.NEGATIVE_INFINITY;
+    private static final float MISSING = Float.NaN;
+
+    private static final int FREE = -1;
+    private static final int INITIAL_CAPACITY = 64;
+
+    private static final Map<TrueTypeFont, GlyphAdvanceCache> SHARED =
+            Collections.synchronizedMap(new WeakHashMap<>());
+
+    private static final Field CHARACTER_CODE_TO_GLYPH_ID = findCharacterCodeToGlyphId();
+
+    // Writes to the dense array are racy but benign: a float write is atomic
+    // and every thread computes the same value for a code point.
+    private final float[] _dense = new float[DENSE_SIZE];
+
+    // Null if not known up front, in which case coverage is found by measuring.
+    private final BitSet _coverage;
+
+    private int[] _keys;
+    private float[] _values;
+    private int _size;
+
+    GlyphAdvanceCache(BitSet coverage) {
+        _coverage = coverage;
+        Arrays.fill(_dense, UNKNOWN);
+        _keys = new int[INITIAL_CAPACITY];
+        _values = new float[INITIAL_CAPACITY];
+        Arrays.fill(_keys, FREE);
+    }
+
+    /**
+     * Returns the cache for font. Fonts backed by the same TrueType font share a cache,
+     * other fonts (such as the PDF built-in fonts) get a cache of their own.
+     */
+    static GlyphAdvanceCache forFont(PDFont font) {
+        TrueTypeFont ttf = getTrueTypeFont(font);
+
+        if (ttf == null) {
+            return new GlyphAdvanceCache(null);
+        }
+
+        GlyphAdvanceCache cache = SHARED.get(ttf);
+
+        if (cache == null) {
+            // Reading the cmap of a large font takes a while, so it is done
+            // without holding the lock on the shared map.
+            GlyphAdvanceCache created = new GlyphAdvanceCache(readCoverage(ttf));
+            cache = SHARED.putIfAbsent(ttf, created);
+            return cache != null ? cache : created;
+        }
+
+        return cache;
+    }
+
+    private static BitSet readCoverage(TrueTypeFont ttf) {
+        try {
+            return readUnicodeCoverage(ttf);
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    private static Field findCharacterCodeToGlyphId() {
+        try {
+            Field field = CmapSubtable.class.getDeclaredField("characterCodeToGlyphId");
+            field.setAccessible(true);
+            return field.getType() == Map.class ? field : null;
+        } catch (NoSuchFieldException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Returns the code points that the unicode cmap of ttf maps to a glyph other
+     * than .notdef, or null if the font has no unicode cmap.
+     * <br><br>
+     * PDF-BOX only exposes the cmap as a lookup in either direction, so its code to glyph
+     * map is read by reflection, once per font. If it can not be reached, each glyph is
+     * looked up in turn, which allocates a list per glyph.
+     */
+    static BitSet readUnicodeCoverage(TrueTypeFont ttf) throws IOException {
+        CmapLookup cmap = ttf.getUnicodeCmapLookup(false);
+
+        if (cmap == null) {
+            return null;
+        }
+
+        Map<?, ?> codeToGlyph = getCharacterCodeToGlyphId(cmap);
+
+        if (codeToGlyph != null) {
+            BitSet coverage = new BitSet();
+
+            for (Map.Entry<?, ?> entry : codeToGlyph.entrySet()) {
+                if (((Integer) entry.getValue()) > 0) {
+                    coverage.set((Integer) entry.getKey());
+                }
+            }
+
+            return coverage;
+        }
+
+        BitSet coverage = new BitSet();
+        int numGlyphs = ttf.getNumberOfGlyphs();
+
+        for (int gid = 1; gid < numGlyphs; gid++) {
+            List<Integer> codes = cmap.getCharCodes(gid);
+            if (codes != null) {
+                for (Integer code : codes) {
+                    coverage.set(code);
+                }
+            }
+        }
+
+        return coverage;
+    }
+
+    private static Map<?, ?> getCharacterCodeToGlyphId(CmapLookup cmap) {
+        // Other lookups, such as those substituting vertical glyphs, wrap a subtable.
+        if (CHARACTER_CODE_TO_GLYPH_ID == null || !(cmap instanceof CmapSubtable)) {
+            return null;
+        }
+
+        try {
+            return (Map<?, ?>) CHARACTER_CODE_TO_GLYPH_ID.get(cmap);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    private static TrueTypeFont getTrueTypeFont(PDFont font) {
+        if (font instanceof PDType0Font) {
+            PDCIDFont descendant = ((PDType0Font) font).getDescendantFont();
+
+            if (descendant instanceof PDCIDFontType2) {
+                return ((PDCIDFontType2) descendant).getTrueTypeFont();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns whether font has a glyph for codePoint.
+     */
+    boolean hasGlyph(PDFont font, int codePoint) throws IOException {
+        if (_coverage != null) {
+            return _coverage.get(codePoint);
+        }
+
+        return !Float.isNaN(getAdvance(font, codePoint));
+    }
+
+    /**
+     * Returns whether font has a glyph for every character of str.
+     */
+    boolean hasGlyphs(PDFont font, String str) throws IOException {
+        for (int i = 0; i < str.length(); ) {
+            int codePoint = str.codePointAt(i);
+            i += Character.charCount(codePoint);
+
+            if (!hasGlyph(font, codePoint)) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Returns the width of str in font, the same as <code>font.getStringWidth(str)</code>.
+     * @throws IllegalArgumentException if a character of str is not in font.
+     */
+    float getStringWidth(PDFont font, String str) throws IOException {
+        float width = 0;
+
+        for (int i = 0; i < str.length(); ) {
+            int codePoint = str.codePointAt(i);
+            i += Character.charCount(codePoint);
+
+            float advance = getAdvance(font, codePoint);
+
+            if (Float.isNaN(advance)) {
+                throw new IllegalArgumentException(
+                        String.format("No glyph for U+%04X in font %s", codePoint, font.getName()));
+            }
+
+            width += advance;
+        }
+
+        return width;
+    }
+
+    /**
+     * Returns the advance of codePoint in font or NaN if font does not contain it.
+     */
+    float getAdvance(PDFont font, int codePoint) throws IOException {
+        float advance = codePoint < DENSE_SIZE ? _dense[codePoint] : get(codePoint);
+
+        if (advance == UNKNOWN) {
+            advance = measure(font, codePoint);
+
+            if (codePoint < DENSE_SIZE) {
+                _dense[codePoint] = advance;
+            } else {
+                put(codePoint, advance);
+            }
+        }
+
+        return advance;
+    }
+
+    private float measure(PDFont font, int codePoint) throws IOException {
+        if (_coverage != null && !_coverage.get(codePoint)) {
+            return MISSING;
+        }
+
+        try {
+            return font.getStringWidth(new String(Character.toChars(codePoint)));
+        } catch (IllegalArgumentException e) {
+            return MISSING;
+        }
+    }
+
+    private static int slot(int key, int mask) {
+        int h = key * 0x9E3779B9;
+        return (h ^ (h >>> 16)) & mask;
+    }
+
+    private synchronized float get(int key) {
+        int mask = _keys.length - 1;
+
+        for (int i = slot(key, mask); ; i = (i + 1) & mask) {
+            int k = _keys[i];
+
+            if (k == key) {
+                return _values[i];
+            } else if (k == FREE) {
+                return UNKNOWN;
+            }
+        }
+    }
+
+    private synchronized void put(int key, float value) {
+        if ((_size + 1) * 2 > _keys.length) {
+            resize();
+        }
+
+        if (insert(_keys, _values, key, value)) {
+            _size++;
+        }
+    }
+
+    private static boolean insert(int[] keys, float[] values, int key, float value) {
+        int mask = keys.length - 1;
+
+        for (int i = slot(key, mask); ; i = (i + 1) & mask) {
+            if (keys[i] == key) {
+                values[i] = value;
+                return false;
+            } else if (keys[i] == FREE) {
+                keys[i] = key;
+                values[i] = value;
+                return true;
+            }
+        }
+    }
+
+    private void resize() {
+        int[] keys = new int[_keys.length * 2];
+        float[] values = new float[_values.length * 2];
+        Arrays.fill(keys, FREE);
+
+        for (int i = 0; i < _keys.length; i++) {
+            if (_keys[i] != FREE) {
+                insert(keys, values, _keys[i], _values[i]);
+            }
+        }
+
+        _keys = keys;
+        _values = values;
+    }
+}
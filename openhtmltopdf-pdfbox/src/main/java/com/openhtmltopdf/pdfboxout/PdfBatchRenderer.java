@@ -0,0 +1,243 @@
+package com.openhtmltopdf.pdfboxout;
+
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+import com.openhtmltopdf.extend.FSSupplier;
+
+/**
+ * Renders many documents with the same settings on an executor.
+ * <br><br>
+ * All documents are rendered by one {@link PdfRendererFactory} so they share its font metrics
+ * and stylesheet caches. At most <code>maxInFlight</code> jobs are queued or rendering at
+ * any one time. Once that limit is reached, the thread submitting jobs waits for a job to
+ * finish before it takes the next job from the stream, so a lazily generated stream of jobs is
+ * never read far ahead of the workers.
+ * <br><br>
+ * Usage:
+ * <pre>
+ * PdfRendererFactory factory = new PdfRendererBuilder().useFont(...).buildFactory();
+ * ExecutorService pool = Executors.newFixedThreadPool(4);
+ * PdfBatchRenderer batch = new PdfBatchRenderer(factory, pool, 16);
+ *
+ * batch.renderAll(jobs, result -&gt; {
+ *     if (!result.isSuccess()) {
+ *         log(result.getJob().getId(), result.getFailure());
+ *     }
+ * });
+ * </pre>
+ */
+public class PdfBatchRenderer {
+    private final PdfRendererFactory _factory;
+    private final Executor _executor;
+    private final int _maxInFlight;
+
+    /**
+     * @param factory the factory to render every job with
+     * @param executor the executor to render jobs on
+     * @param maxInFlight the maximum number of jobs that may be queued on or running on the executor
+     */
+    public PdfBatchRenderer(PdfRendererFactory factory, Executor executor, int maxInFlight) {
+        if (maxInFlight < 1) {
+            throw new IllegalArgumentException("maxInFlight must be at least one");
+        }
+
+        this._factory = factory;
+        this._executor = executor;
+        this._maxInFlight = maxInFlight;
+    }
+
+    /**
+     * A document to render. The output stream is opened by the supplier just before the
+     * document is rendered and closed once it has been rendered.
+     */
+    public static final class Job {
+        private final String _id;
+        private final String _html;
+        private final String _baseUri;
+        private final FSSupplier<OutputStream> _output;
+
+        /**
+         * @param id an id for the job, to identify it in results
+         * @param html the HTML (or XHTML) document as a string
+         * @param baseUri the base uri to resolve relative resources against
+         * @param output opens the output stream to write the PDF to
+         */
+        public Job(String id, String html, String baseUri, FSSupplier<OutputStream> output) {
+            this._id = id;
+            this._html = html;
+            this._baseUri = baseUri;
+            this._output = output;
+        }
+
+        public String getId() {
+            return _id;
+        }
+
+        public String getHtml() {
+            return _html;
+        }
+
+        public String getBaseUri() {
+            return _baseUri;
+        }
+
+        public FSSupplier<OutputStream> getOutput() {
+            return _output;
+        }
+    }
+
+    /**
+     * The outcome of a job, with timings in nanoseconds.
+     */
+    public static final class JobResult {
+        private final Job _job;
+        private final Throwable _failure;
+        private final long _queuedNanos;
+        private final long _renderNanos;
+
+        JobResult(Job job, Throwable failure, long queuedNanos, long renderNanos) {
+            this._job = job;
+            this._failure = failure;
+            this._queuedNanos = queuedNanos;
+            this._renderNanos = renderNanos;
+        }
+
+        public Job getJob() {
+            return _job;
+        }
+
+        public boolean isSuccess() {
+            return _failure == null;
+        }
+
+        /**
+         * @return the exception or error that caused the job to fail or null if it succeeded
+         */
+        public Throwable getFailure() {
+            return _failure;
+        }
+
+        /**
+         * @return time between the job being submitted to the executor and it starting to run
+         */
+        public long getQueuedNanos() {
+            return _queuedNanos;
+        }
+
+        /**
+         * @return time taken to render the job, including opening and closing its output stream
+         */
+        public long getRenderNanos() {
+            return _renderNanos;
+        }
+
+        @Override
+        public String toString() {
+            return "JobResult [id=" + _job.getId() + ", success=" + isSuccess() +
+                   ", queuedMs=" + TimeUnit.NANOSECONDS.toMillis(_queuedNanos) +
+                   ", renderMs=" + TimeUnit.NANOSECONDS.toMillis(_renderNanos) + "]";
+        }
+    }
+
+    /**
+     * Renders all jobs and returns once they have all finished.
+     *
+     * @return a result for every job, in order of completion
+     * @throws Error the first error (such as <code>OutOfMemoryError</code>) a job failed with,
+     * once the jobs in flight have finished, see {@link #renderAll(Stream, Consumer)}
+     */
+    public List<JobResult> renderAll(Stream<Job> jobs) throws InterruptedException {
+        List<JobResult> results = Collections.synchronizedList(new ArrayList<>());
+        renderAll(jobs, results::add);
+        return new ArrayList<>(results);
+    }
+
+    /**
+     * Renders all jobs and returns once they have all finished. The result consumer is
+     * called on the executor threads as each job finishes so must be thread safe.
+     * <br><br>
+     * A job that fails with an <code>Error</code> still gets a result. No further jobs are
+     * taken from the stream after that, and once the jobs in flight have finished the
+     * first such error is thrown from this method.
+     */
+    public void renderAll(Stream<Job> jobs, Consumer<JobResult> resultConsumer) throws InterruptedException {
+        Semaphore inFlight = new Semaphore(_maxInFlight);
+        Iterator<Job> it = jobs.iterator();
+        AtomicReference<Error> firstError = new AtomicReference<>();
+
+        try {
+            while (firstError.get() == null) {
+                // Wait for a free slot before taking the next job (hasNext may already
+                // generate it), so the stream is not read ahead of the jobs in flight.
+                inFlight.acquire();
+                boolean taken = false;
+
+                try {
+                    if (!it.hasNext()) {
+                        break;
+                    }
+
+                    Job job = it.next();
+                    long submitted = System.nanoTime();
+                    taken = true;
+
+                    try {
+                        _executor.execute(() -> {
+                            try {
+                                JobResult result = render(job, submitted);
+
+                                if (result.getFailure() instanceof Error) {
+                                    firstError.compareAndSet(null, (Error) result.getFailure());
+                                }
+
+                                resultConsumer.accept(result);
+                            } finally {
+                                inFlight.release();
+                            }
+                        });
+                    } catch (RejectedExecutionException e) {
+                        inFlight.release();
+                        resultConsumer.accept(new JobResult(job, e, 0, 0));
+                    }
+                } finally {
+                    if (!taken) {
+                        inFlight.release();
+                    }
+                }
+            }
+        } finally {
+            // Wait for the jobs we have submitted to finish.
+            inFlight.acquireUninterruptibly(_maxInFlight);
+        }
+
+        Error error = firstError.get();
+        if (error != null) {
+            throw error;
+        }
+    }
+
+    private JobResult render(Job job, long submitted) {
+        long start = System.nanoTime();
+        Throwable failure = null;
+
+        // Errors, such as StackOverflowError, are recorded too and rethrown by renderAll.
+        try (OutputStream os = job.getOutput().supply()) {
+            _factory.run(job.getHtml(), job.getBaseUri(), os);
+        } catch (Throwable e) {
+            failure = e;
+        }
+
+        return new JobResult(job, failure, start - submitted, System.nanoTime() - start);
+    }
+}
@@ -52,6 +52,7 @@ public class PdfBoxFastLinkManager {
 	private final Box _root;
 	private final PdfBoxFastOutputDevice _od;
 	private final List<LinkDetails> _links;
+	private final boolean _pdfUaConform;
     private PdfBoxAccessibilityHelper _pdfUa;
 
     /**
@@ -67,6 +68,11 @@ public class PdfBoxFastLinkManager {
     private PDAppearanceDictionary _embeddedFileAppearance;
 
 	public PdfBoxFastLinkManager(SharedContext ctx, float dotsPerPoint, Box root, PdfBoxFastOutputDevice od) {
+		this(ctx, dotsPerPoint, root, od, false);
+	}
+
+	public PdfBoxFastLinkManager(SharedContext ctx, float dotsPerPoint, Box root, PdfBoxFastOutputDevice od, boolean pdfUaConform) {
+		this._pdfUaConform = pdfUaConform;
 		this._sharedContext = ctx;
 		this._dotsPerPoint = dotsPerPoint;
 		this._root = root;
@@ -148,8 +154,8 @@ public class PdfBoxFastLinkManager {
 	}
 
 	private Rectangle2D checkLinkArea(PDPage page, RenderingContext c, Box box, float pageHeight,
-			AffineTransform transform, Shape linkShape) {
-		Rectangle2D targetArea = calcTotalLinkArea(c, box, pageHeight, transform);
+			AffineTransform transform, Shape linkShape, Rectangle2D totalLinkArea) {
+		Rectangle2D targetArea = totalLinkArea != null ? totalLinkArea : calcTotalLinkArea(c, box, pageHeight, transform);
 		String key = createRectKey(targetArea, linkShape, transform);
 		Set<String> keys = _linkTargetAreas.get(page);
 		if (keys == null) {
@@ -163,13 +169,13 @@ public class PdfBoxFastLinkManager {
 		return targetArea;
 	}
 
-	private void processLink(RenderingContext c, Box box, PDPage page, float pageHeight, AffineTransform transform) {
+	private void processLink(RenderingContext c, Box box, PDPage page, float pageHeight, AffineTransform transform, Rectangle2D totalLinkArea) {
 		Element elem = box.getElement();
 		if (elem != null) {
 			NamespaceHandler handler = _sharedContext.getNamespaceHandler();
 			String uri = handler.getLinkUri(elem);
 			if (uri != null) {
-				addUriAsLink(c, box, page, pageHeight, transform, elem, handler, uri, null);
+				addUriAsLink(c, box, page, pageHeight, transform, elem, handler, uri, null, totalLinkArea);
 			}
 		}
 		if (box instanceof BlockBox) {
@@ -181,7 +187,7 @@ public class PdfBoxFastLinkManager {
 						Shape shape = shapeStringEntry.getKey();
 						String shapeUri = shapeStringEntry.getValue();
 						NamespaceHandler handler = _sharedContext.getNamespaceHandler();
-						addUriAsLink(c, box, page, pageHeight, transform, elem, handler, shapeUri, shape);
+						addUriAsLink(c, box, page, pageHeight, transform, elem, handler, shapeUri, shape, totalLinkArea);
 					}
 				}
 			}
@@ -224,7 +230,7 @@ public class PdfBoxFastLinkManager {
 	}
 
 	private void addUriAsLink(RenderingContext c, Box box, PDPage page, float pageHeight, AffineTransform transform,
-			Element elem, NamespaceHandler handler, String uri, Shape linkShape) {
+			Element elem, NamespaceHandler handler, String uri, Shape linkShape, Rectangle2D totalLinkArea) {
 		if (uri.length() > 1 && uri.charAt(0) == '#') {
 			String anchor = uri.substring(1);
 			Box target = _sharedContext.getBoxById(anchor);
@@ -241,7 +247,7 @@ public class PdfBoxFastLinkManager {
 					action = go;
 				}
 
-				Rectangle2D targetArea = checkLinkArea(page, c, box, pageHeight, transform, linkShape);
+				Rectangle2D targetArea = checkLinkArea(page, c, box, pageHeight, transform, linkShape, totalLinkArea);
 				if (targetArea == null) {
 					return;
 				}
@@ -274,7 +280,7 @@ public class PdfBoxFastLinkManager {
             }
 
             if (annotContainer != null) {
-                Rectangle2D targetArea = checkLinkArea(page, c, box, pageHeight, transform, linkShape);
+                Rectangle2D targetArea = checkLinkArea(page, c, box, pageHeight, transform, linkShape, totalLinkArea);
 
                 if (targetArea == null) {
                     return;
@@ -581,6 +587,7 @@ public class PdfBoxFastLinkManager {
 		PDPage page;
 		float pageHeight;
 		AffineTransform transform;
+		Rectangle2D totalLinkArea;
 	}
 
 	public void processLinkLater(RenderingContext c, Box box, PDPage page, float pageHeight,
@@ -597,6 +604,12 @@ public class PdfBoxFastLinkManager {
 		link.pageHeight = pageHeight;
 		link.transform = (AffineTransform) transform.clone();
 
+		if (!_pdfUaConform) {
+		    // Work out the link area while the sibling boxes of a split
+		    // link are still around, they may be released before we finish.
+		    link.totalLinkArea = calcTotalLinkArea(link.c, box, pageHeight, link.transform);
+		}
+
 		_links.add(link);
 	    }
 	}
@@ -604,7 +617,7 @@ public class PdfBoxFastLinkManager {
 	public void processLinks(PdfBoxAccessibilityHelper pdfUa) {
 	    this._pdfUa = pdfUa;
 		for (LinkDetails link : _links) {
-			processLink(link.c, link.box, link.page, link.pageHeight, link.transform);
+			processLink(link.c, link.box, link.page, link.pageHeight, link.transform, link.totalLinkArea);
 		}
 	}
 }
@@ -387,32 +387,27 @@ public class PdfBoxFastOutputDevice extends AbstractOutputDevice implements Outp
     }
 
     public void drawString(String s, float x, float y, JustificationInfo info) {
-        PDFont firstFont = _font.getFontDescription().get(0).getFont();
+        FontDescription firstFont = _font.getFontDescription().get(0);
 
         String effectiveString = TextRenderer.getEffectivePrintableString(s);
 
         // First check if the string contains printable characters only and
         // will print with the current font entirely.
-        try {
-            firstFont.getStringWidth(effectiveString);
-            // We got here, so all is good.
-            drawStringFast(effectiveString, x, y, info, _font.getFontDescription().get(0), _font.getSize2D());
+        if (firstFont.hasGlyphs(effectiveString)) {
+            drawStringFast(effectiveString, x, y, info, firstFont, _font.getSize2D());
             return;
         }
-        catch (Exception e) {
-            // Fallthrough, we'll have to process the string into font runs.
-        }
-        
-        List<FontRun> fontRuns = PdfBoxTextRenderer.divideIntoFontRuns(_font, effectiveString, _reorderer);
+
+        List<FontRun> fontRuns = PdfBoxTextRenderer.divideIntoFontRuns(_font, effectiveString, _reorderer, _sharedContext.getReplacementText());
         
         float xOffset = 0f;
         for (FontRun run : fontRuns) {
             drawStringFast(run.str, x + xOffset, y, info, run.des, _font.getSize2D());
             try {
                 if (info == null) {
-                    xOffset += ((run.des.getFont().getStringWidth(run.str) / 1000f) * _font.getSize2D());
+                    xOffset += ((run.des.getStringWidth(run.str) / 1000f) * _font.getSize2D());
                 } else {
-                    xOffset += ((run.des.getFont().getStringWidth(run.str) / 1000f) * _font.getSize2D()) +
+                    xOffset += ((run.des.getStringWidth(run.str) / 1000f) * _font.getSize2D()) +
                                (run.spaceCharacterCount * info.getSpaceAdjust()) +
                                (run.otherCharacterCount * info.getNonSpaceAdjust());
                 }
@@ -882,7 +877,7 @@ public class PdfBoxFastOutputDevice extends AbstractOutputDevice implements Outp
 
     public void start(Document doc) {
         _bmManager = new PdfBoxBookmarkManager(doc, _writer, _sharedContext, _dotsPerPoint, this);
-        _linkManager = new PdfBoxFastLinkManager(_sharedContext, _dotsPerPoint, _root, this);
+        _linkManager = new PdfBoxFastLinkManager(_sharedContext, _dotsPerPoint, _root, this, _pdfUaConform);
         loadMetadata(doc);
         
         if (_pdfUaConform) {
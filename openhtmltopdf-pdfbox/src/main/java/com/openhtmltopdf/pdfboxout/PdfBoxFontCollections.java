@@ -0,0 +1,90 @@
+package com.openhtmltopdf.pdfboxout;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.fontbox.ttf.TrueTypeCollection;
+import org.apache.fontbox.ttf.TrueTypeFont;
+
+import com.openhtmltopdf.extend.FSSupplier;
+import com.openhtmltopdf.pdfboxout.fontstore.FontUtil;
+
+/**
+ * TrueType collections (.ttc) opened at most once each and kept open until this is closed.
+ * <br><br>
+ * The fonts of a collection read their glyphs from the open collection, so it must stay open
+ * until every document embedding them has been saved. It is therefore owned by whatever
+ * outlives those documents, such as the shared resources of a multi-document PDF.
+ * <br><br>
+ * This class is not thread safe.
+ */
+final class PdfBoxFontCollections implements Closeable {
+    private final Map<Object, List<TrueTypeFont>> _fonts = new HashMap<>();
+    private final List<TrueTypeCollection> _toClose = new ArrayList<>();
+
+    /**
+     * Returns the fonts of a collection file, opening it on first use.
+     */
+    List<TrueTypeFont> get(File file) throws IOException {
+        return get(file.getAbsoluteFile(), () -> new TrueTypeCollection(file));
+    }
+
+    /**
+     * Returns the fonts of a collection read from supplier, reading it on first use.
+     * Suppliers are keyed on identity.
+     */
+    List<TrueTypeFont> get(FSSupplier<InputStream> supplier) throws IOException {
+        return get(supplier, () -> {
+            try (InputStream is = supplier.supply()) {
+                return new TrueTypeCollection(is);
+            }
+        });
+    }
+
+    private List<TrueTypeFont> get(Object key, CollectionLoader loader) throws IOException {
+        List<TrueTypeFont> fonts = _fonts.get(key);
+
+        if (fonts == null) {
+            TrueTypeCollection collection = loader.load();
+            List<TrueTypeFont> loaded = new ArrayList<>();
+
+            try {
+                collection.processAllFonts(loaded::add);
+            } catch (IOException e) {
+                FontUtil.tryClose(collection);
+                throw e;
+            }
+
+            // The fonts of a collection share its data, so it is the collection that is closed.
+            _toClose.add(collection);
+            fonts = Collections.unmodifiableList(loaded);
+            _fonts.put(key, fonts);
+        }
+
+        return fonts;
+    }
+
+    /**
+     * Closes every collection. Documents embedding their fonts must already be saved.
+     */
+    @Override
+    public void close() {
+        for (TrueTypeCollection collection : _toClose) {
+            FontUtil.tryClose(collection);
+        }
+        _toClose.clear();
+        _fonts.clear();
+    }
+
+    @FunctionalInterface
+    private interface CollectionLoader {
+        TrueTypeCollection load() throws IOException;
+    }
+}
@@ -0,0 +1,400 @@
+package com.openhtmltopdf.pdfboxout;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.logging.Level;
+
+import org.apache.fontbox.ttf.HeaderTable;
+import org.apache.fontbox.ttf.HorizontalHeaderTable;
+import org.apache.fontbox.ttf.NameRecord;
+import org.apache.fontbox.ttf.NamingTable;
+import org.apache.fontbox.ttf.OS2WindowsMetricsTable;
+import org.apache.fontbox.ttf.TTFParser;
+import org.apache.fontbox.ttf.TrueTypeCollection;
+import org.apache.fontbox.ttf.TrueTypeFont;
+
+import com.openhtmltopdf.css.constants.IdentValue;
+import com.openhtmltopdf.util.LogMessageId;
+import com.openhtmltopdf.util.XRLog;
+
+/**
+ * An index of the TrueType fonts (.ttf and .ttc) in a directory, holding for each font its
+ * real family name, weight, style, unicode coverage and the metrics used for layout, see
+ * {@link PdfRendererBuilder#useFontDirectoryIndex(PdfBoxFontDirectoryIndex, PdfBoxFontResolver.FontGroup)}.
+ * <br><br>
+ * The index is persisted to a small binary file. When loaded, only fonts that were added or
+ * whose size or last modified time changed since the index was written are parsed, so
+ * registering a large directory of fonts does not require reading every font on startup.
+ * Fonts themselves are still only loaded by a render when they are used.
+ * <br><br>
+ * Instances are immutable and may be shared between threads and renders.
+ */
+public final class PdfBoxFontDirectoryIndex {
+    private static final int MAGIC = 0x4f48_4649; // OHFI
+    private static final int VERSION = 1;
+    private static final int NAME_TYPOGRAPHIC_FAMILY = 16;
+
+    /**
+     * Marks a file that could not be read, so it is not parsed again until it changes.
+     */
+    private static final int UNREADABLE = -2;
+
+    private final File _directory;
+    private final List<Entry> _entries;
+
+    private PdfBoxFontDirectoryIndex(File directory, List<Entry> entries) {
+        this._directory = directory;
+        this._entries = Collections.unmodifiableList(entries);
+    }
+
+    /**
+     * Loads the index for the fonts in directory from indexFile, updating the index (and the
+     * file) for fonts that were added, removed or changed. If indexFile does not exist or can not be
+     * read, every font in the directory is indexed and the file written.
+     *
+     * @param directory a directory containing .ttf and .ttc files. Sub-directories are not indexed.
+     * @param indexFile where to persist the index, which must be writable for the index to be saved.
+     */
+    public static PdfBoxFontDirectoryIndex load(File directory, File indexFile) throws IOException {
+        File[] files = directory.listFiles((dir, name) -> {
+            String lower = name.toLowerCase(Locale.US);
+            return lower.endsWith(".ttf") || lower.endsWith(".ttc");
+        });
+
+        if (files == null) {
+            throw new IOException("Not a font directory: " + directory);
+        }
+
+        Arrays.sort(files);
+
+        Map<String, List<Entry>> previous = readIndexFile(indexFile, directory);
+        List<Entry> entries = new ArrayList<>();
+        boolean changed = previous.size() != files.length;
+
+        for (File file : files) {
+            List<Entry> fileEntries = previous.get(file.getName());
+
+            if (fileEntries == null ||
+                fileEntries.get(0)._length != file.length() ||
+                fileEntries.get(0)._lastModified != file.lastModified()) {
+                fileEntries = indexFile(file);
+                changed = true;
+            }
+
+            entries.addAll(fileEntries);
+        }
+
+        if (changed) {
+            XRLog.log(Level.INFO, LogMessageId.LogMessageId1Param.LOAD_UPDATING_FONT_DIRECTORY_INDEX, indexFile);
+            writeIndexFile(indexFile, directory, entries);
+        }
+
+        entries.removeIf(entry -> entry._collectionIndex == UNREADABLE);
+        return new PdfBoxFontDirectoryIndex(directory, entries);
+    }
+
+    /**
+     * @return the directory that was indexed.
+     */
+    public File getDirectory() {
+        return _directory;
+    }
+
+    /**
+     * @return one entry per font, in file name order. A collection has an entry for each of its fonts.
+     */
+    public List<Entry> getEntries() {
+        return _entries;
+    }
+
+    /**
+     * The indexed information about one font.
+     */
+    public static final class Entry {
+        private final File _file;
+        private final long _length;
+        private final long _lastModified;
+        private final int _collectionIndex;
+        private final String _family;
+        private final int _weight;
+        private final boolean _italic;
+        private final int[] _ranges;
+        private final PdfBoxRawPDFontMetrics _metrics;
+
+        private Entry(
+                File file, long length, long lastModified, int collectionIndex,
+                String family, int weight, boolean italic, int[] ranges,
+                PdfBoxRawPDFontMetrics metrics) {
+            this._file = file;
+            this._length = length;
+            this._lastModified = lastModified;
+            this._collectionIndex = collectionIndex;
+            this._family = family;
+            this._weight = weight;
+            this._italic = italic;
+            this._ranges = ranges;
+            this._metrics = metrics;
+        }
+
+        public File getFile() {
+            return _file;
+        }
+
+        /**
+         * @return the index of the font in its collection or -1 if the file is not a collection.
+         */
+        public int getCollectionIndex() {
+            return _collectionIndex;
+        }
+
+        /**
+         * @return the family name from the font's name table, preferring the typographic family name.
+         */
+        public String getFamily() {
+            return _family;
+        }
+
+        /**
+         * @return the weight class from the font's OS/2 table, 400 if it has none.
+         */
+        public int getWeight() {
+            return _weight;
+        }
+
+        /**
+         * @return {@link IdentValue#ITALIC} or {@link IdentValue#NORMAL}.
+         */
+        public IdentValue getStyle() {
+            return _italic ? IdentValue.ITALIC : IdentValue.NORMAL;
+        }
+
+        /**
+         * @return whether the font's unicode cmap maps codePoint to a glyph.
+         */
+        public boolean covers(int codePoint) {
+            // Ranges are sorted inclusive start, end pairs.
+            int low = 0;
+            int high = _ranges.length / 2 - 1;
+
+            while (low <= high) {
+                int mid = (low + high) >>> 1;
+                if (codePoint < _ranges[mid * 2]) {
+                    high = mid - 1;
+                } else if (codePoint > _ranges[mid * 2 + 1]) {
+                    low = mid + 1;
+                } else {
+                    return true;
+                }
+            }
+
+            return false;
+        }
+
+        /**
+         * @return the metrics needed for layout, so the font does not have to be loaded for them.
+         */
+        public PdfBoxRawPDFontMetrics getMetrics() {
+            return _metrics;
+        }
+    }
+
+    private static List<Entry> indexFile(File file) {
+        List<Entry> entries = new ArrayList<>();
+        long length = file.length();
+        long lastModified = file.lastModified();
+
+        try {
+            if (file.getName().toLowerCase(Locale.US).endsWith(".ttc")) {
+                try (TrueTypeCollection collection = new TrueTypeCollection(file)) {
+                    collection.processAllFonts(ttf -> entries.add(indexFont(ttf, file, length, lastModified, entries.size())));
+                }
+            } else {
+                try (TrueTypeFont ttf = new TTFParser().parse(file)) {
+                    entries.add(indexFont(ttf, file, length, lastModified, -1));
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            XRLog.log(Level.WARNING, LogMessageId.LogMessageId1Param.EXCEPTION_COULD_NOT_LOAD_FONT, file, e);
+            return Collections.singletonList(unreadable(file, length, lastModified));
+        }
+
+        return entries.isEmpty() ? Collections.singletonList(unreadable(file, length, lastModified)) : entries;
+    }
+
+    private static Entry unreadable(File file, long length, long lastModified) {
+        return new Entry(file, length, lastModified, UNREADABLE, file.getName(), 400, false,
+                new int[0], new PdfBoxRawPDFontMetrics(0, 0, 0, 0, 0, 0));
+    }
+
+    private static Entry indexFont(TrueTypeFont ttf, File file, long length, long lastModified, int collectionIndex) throws IOException {
+        HeaderTable head = ttf.getHeader();
+        HorizontalHeaderTable hhea = ttf.getHorizontalHeader();
+        OS2WindowsMetricsTable os2 = ttf.getOS2Windows();
+        NamingTable naming = ttf.getNaming();
+
+        String family = null;
+        if (naming != null) {
+            family = naming.getName(NAME_TYPOGRAPHIC_FAMILY,
+                    NameRecord.PLATFORM_WINDOWS, NameRecord.ENCODING_WINDOWS_UNICODE_BMP, NameRecord.LANGUAGE_WINDOWS_EN_US);
+            if (family == null) {
+                family = naming.getFontFamily();
+            }
+        }
+        if (family == null) {
+            family = file.getName();
+        }
+
+        int weight = os2 != null ? os2.getWeightClass() : 400;
+        boolean italic = (os2 != null && (os2.getFsSelection() & 1) != 0) ||
+                         (head.getMacStyle() & 2) != 0;
+
+        // The same values PDF-BOX puts in the font descriptor when embedding the font,
+        // see PdfBoxRawPDFontMetrics.fromPdfBox.
+        float scale = 1000f / head.getUnitsPerEm();
+        float yMax = head.getYMax() * scale;
+        PdfBoxRawPDFontMetrics metrics = new PdfBoxRawPDFontMetrics(
+                yMax,
+                -(head.getYMin() * scale),
+                -yMax / 3f,
+                100f,
+                -(hhea.getDescender() * scale),
+                50f);
+
+        return new Entry(file, length, lastModified, collectionIndex, family, weight, italic, coverage(ttf), metrics);
+    }
+
+    private static int[] coverage(TrueTypeFont ttf) throws IOException {
+        BitSet codePoints = GlyphAdvanceCache.readUnicodeCoverage(ttf);
+        if (codePoints == null) {
+            return new int[0];
+        }
+
+        int[] ranges = new int[16];
+        int count = 0;
+
+        for (int start = codePoints.nextSetBit(0); start >= 0; start = codePoints.nextSetBit(start)) {
+            int end = codePoints.nextClearBit(start);
+            if (count + 2 > ranges.length) {
+                ranges = Arrays.copyOf(ranges, ranges.length * 2);
+            }
+            ranges[count++] = start;
+            ranges[count++] = end - 1;
+            start = end;
+        }
+
+        return Arrays.copyOf(ranges, count);
+    }
+
+    private static Map<String, List<Entry>> readIndexFile(File indexFile, File directory) {
+        if (!indexFile.isFile()) {
+            return Collections.emptyMap();
+        }
+
+        Map<String, List<Entry>> entries = new HashMap<>();
+
+        try (InputStream is = Files.newInputStream(indexFile.toPath());
+             DataInputStream in = new DataInputStream(new BufferedInputStream(is))) {
+
+            if (in.readInt() != MAGIC ||
+                in.readInt() != VERSION ||
+                !in.readUTF().equals(directory.getAbsolutePath())) {
+                return Collections.emptyMap();
+            }
+
+            int count = in.readInt();
+
+            for (int i = 0; i < count; i++) {
+                String name = in.readUTF();
+                long length = in.readLong();
+                long lastModified = in.readLong();
+                int collectionIndex = in.readInt();
+                String family = in.readUTF();
+                int weight = in.readInt();
+                boolean italic = in.readBoolean();
+
+                PdfBoxRawPDFontMetrics metrics = new PdfBoxRawPDFontMetrics(
+                        in.readFloat(), in.readFloat(), in.readFloat(),
+                        in.readFloat(), in.readFloat(), in.readFloat());
+
+                int[] ranges = new int[in.readInt()];
+                for (int j = 0; j < ranges.length; j++) {
+                    ranges[j] = in.readInt();
+                }
+
+                Entry entry = new Entry(new File(directory, name), length, lastModified, collectionIndex,
+                        family, weight, italic, ranges, metrics);
+                entries.computeIfAbsent(name, k -> new ArrayList<>()).add(entry);
+            }
+        } catch (IOException | RuntimeException e) {
+            // Corrupt or truncated, so the whole directory is indexed again.
+            return Collections.emptyMap();
+        }
+
+        return entries;
+    }
+
+    private static void writeIndexFile(File indexFile, File directory, List<Entry> entries) {
+        File temp = new File(indexFile.getPath() + ".tmp");
+
+        try {
+            try (OutputStream os = Files.newOutputStream(temp.toPath());
+                 DataOutputStream out = new DataOutputStream(new BufferedOutputStream(os))) {
+
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeUTF(directory.getAbsolutePath());
+                out.writeInt(entries.size());
+
+                for (Entry entry : entries) {
+                    out.writeUTF(entry._file.getName());
+                    out.writeLong(entry._length);
+                    out.writeLong(entry._lastModified);
+                    out.writeInt(entry._collectionIndex);
+                    out.writeUTF(entry._family);
+                    out.writeInt(entry._weight);
+                    out.writeBoolean(entry._italic);
+
+                    PdfBoxRawPDFontMetrics m = entry._metrics;
+                    out.writeFloat(m._ascent);
+                    out.writeFloat(m._descent);
+                    out.writeFloat(m._strikethroughOffset);
+                    out.writeFloat(m._strikethroughThickness);
+                    out.writeFloat(m._underlinePosition);
+                    out.writeFloat(m._underlineThickness);
+
+                    out.writeInt(entry._ranges.length);
+                    for (int value : entry._ranges) {
+                        out.writeInt(value);
+                    }
+                }
+            }
+
+            try {
+                Files.move(temp.toPath(), indexFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp.toPath(), indexFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException e) {
+            // The index still works, it just has to be rebuilt next time.
+            XRLog.log(Level.WARNING, LogMessageId.LogMessageId1Param.LOAD_UPDATING_FONT_DIRECTORY_INDEX, indexFile, e);
+            temp.delete();
+        }
+    }
+}
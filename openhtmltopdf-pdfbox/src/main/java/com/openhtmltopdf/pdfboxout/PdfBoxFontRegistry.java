@@ -0,0 +1,276 @@
+package com.openhtmltopdf.pdfboxout;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.logging.Level;
+
+import org.apache.fontbox.ttf.TTFParser;
+import org.apache.fontbox.ttf.TrueTypeCollection;
+import org.apache.fontbox.ttf.TrueTypeFont;
+
+import com.openhtmltopdf.extend.FSSupplier;
+import com.openhtmltopdf.util.LogMessageId;
+import com.openhtmltopdf.util.XRLog;
+
+/**
+ * A process wide registry of parsed TrueType fonts, see
+ * {@link PdfRendererBuilder#useFontRegistry(PdfBoxFontRegistry)}.
+ * <br><br>
+ * Without a registry every render parses each font it uses from scratch. With a
+ * registry, a font file, collection, input stream supplier or font-face uri is parsed
+ * once and its tables (cmap, metrics, glyph outlines) are kept for the life of the registry.
+ * Each document then only creates the light weight <code>PDType0Font</code> wrapper
+ * (and its subset) around the shared <code>TrueTypeFont</code>.
+ * <br><br>
+ * Font files are reloaded if their size or last modified time changes. Input stream
+ * suppliers are keyed on identity, so the same supplier object must be used for each
+ * render, as is the case when renders are created from a {@link PdfRendererFactory}.
+ * <br><br>
+ * NOTE: The registry does not know when renders stop using a font, so a font replaced
+ * because its file changed stays open (its file handle and parsed tables) until the registry
+ * is closed. A process whose font files change often should replace the registry from time
+ * to time, closing the old one once the renders using it have finished.
+ * <br><br>
+ * Fonts from files are read with random access, so only the tables in use are held on
+ * the heap and glyph data is read through the OS page cache. Fonts from input streams
+ * (and font-face rules) are held entirely on the heap, unless the registry is created with
+ * a spool directory, see {@link #PdfBoxFontRegistry(File)}.
+ * <br><br>
+ * This class is thread safe. Create one instance per process (or per set of fonts),
+ * use it with every builder and close it on shutdown to release open font files.
+ */
+public final class PdfBoxFontRegistry implements Closeable {
+    private final Map<Object, Entry> _entries = new ConcurrentHashMap<>();
+    private final Queue<Entry> _replaced = new ConcurrentLinkedQueue<>();
+    private final File _spoolDirectory;
+
+    /**
+     * Creates a registry that holds fonts read from input streams on the heap.
+     */
+    public PdfBoxFontRegistry() {
+        this(null);
+    }
+
+    /**
+     * Creates a registry that copies fonts read from input streams (and font-face rules) to
+     * a temporary file in spoolDirectory and then reads them like font files. Large (for example
+     * CJK) fonts from the classpath or the network are then not held on the heap. Temporary
+     * files are deleted when the registry is closed.
+     * @param spoolDirectory an existing directory for temporary font files or null to use the heap.
+     */
+    public PdfBoxFontRegistry(File spoolDirectory) {
+        this._spoolDirectory = spoolDirectory;
+    }
+
+    /**
+     * Returns the parsed font for a TrueType (.ttf) file, parsing it on first use.
+     * @return the font or null if it could not be loaded.
+     */
+    public TrueTypeFont getFont(File file) {
+        List<TrueTypeFont> fonts = get(file.getAbsoluteFile(), file, toClose -> {
+            TrueTypeFont ttf = new TTFParser().parse(file);
+            toClose.add(ttf);
+            return Collections.singletonList(ttf);
+        });
+        return fonts.isEmpty() ? null : fonts.get(0);
+    }
+
+    /**
+     * Returns the parsed fonts of a TrueType collection (.ttc) file, parsing them on first use.
+     * @return the fonts or an empty list if the collection could not be loaded.
+     */
+    public List<TrueTypeFont> getFontCollection(File file) {
+        return get(new CollectionKey(file.getAbsoluteFile()), file, toClose -> {
+            List<TrueTypeFont> fonts = new ArrayList<>();
+            TrueTypeCollection collection = new TrueTypeCollection(file);
+            // The fonts of a collection share its data, so it is the collection that is closed.
+            toClose.add(collection);
+            collection.processAllFonts(fonts::add);
+            return fonts;
+        });
+    }
+
+    /**
+     * Returns the parsed font read from supplier, reading it on first use.
+     * @param key identifies the font, for example the supplier itself or a resolved uri.
+     * @return the font or null if it could not be loaded.
+     */
+    public TrueTypeFont getFont(Object key, FSSupplier<InputStream> supplier) {
+        List<TrueTypeFont> fonts = get(key, null, toClose -> {
+            try (InputStream is = supplier.supply()) {
+                if (is == null) {
+                    return Collections.emptyList();
+                }
+
+                TrueTypeFont ttf;
+
+                if (_spoolDirectory != null) {
+                    File spooled = File.createTempFile("font-", ".ttf", _spoolDirectory);
+                    // Closed last, after the font has released the file.
+                    toClose.add(() -> Files.deleteIfExists(spooled.toPath()));
+                    Files.copy(is, spooled.toPath(), StandardCopyOption.REPLACE_EXISTING);
+                    ttf = new TTFParser().parse(spooled);
+                } else {
+                    ttf = new TTFParser().parse(is);
+                }
+
+                toClose.add(ttf);
+                return Collections.singletonList(ttf);
+            }
+        });
+        return fonts.isEmpty() ? null : fonts.get(0);
+    }
+
+    /**
+     * @return the number of fonts, collections and streams registered.
+     */
+    public int size() {
+        return _entries.size();
+    }
+
+    /**
+     * Closes all registered fonts. Fonts must not be used by a render after the
+     * registry has been closed.
+     */
+    @Override
+    public void close() {
+        for (Entry entry : _entries.values()) {
+            entry.close();
+        }
+        _entries.clear();
+
+        for (Entry entry : _replaced) {
+            entry.close();
+        }
+        _replaced.clear();
+    }
+
+    private List<TrueTypeFont> get(Object key, File file, FontLoader loader) {
+        Entry entry = _entries.computeIfAbsent(key, k -> new Entry(file));
+
+        if (file != null && !entry.isCurrent()) {
+            Entry replacement = new Entry(file);
+
+            if (_entries.replace(key, entry, replacement)) {
+                // Renders that already have the old fonts may still be using them,
+                // so they are left open until the registry is closed, see the class comment.
+                _replaced.add(entry);
+                entry = replacement;
+            } else {
+                entry = _entries.computeIfAbsent(key, k -> new Entry(file));
+            }
+        }
+
+        List<TrueTypeFont> fonts = entry.get(loader, key);
+
+        if (fonts.isEmpty()) {
+            // Don't remember failures, the font may be fixed or become available later.
+            _entries.remove(key, entry);
+        }
+
+        return fonts;
+    }
+
+    /**
+     * Reads the tables used by layout, embedding and subsetting so that
+     * they are parsed once here rather than lazily by concurrent renders.
+     */
+    private static void preload(TrueTypeFont ttf) throws IOException {
+        ttf.getHeader();
+        ttf.getHorizontalHeader();
+        ttf.getMaximumProfile();
+        ttf.getHorizontalMetrics();
+        ttf.getNaming();
+        ttf.getOS2Windows();
+        ttf.getPostScript();
+        ttf.getCmap();
+        ttf.getIndexToLocation();
+        ttf.getGlyph();
+        ttf.getUnicodeCmapLookup();
+    }
+
+    @FunctionalInterface
+    private interface FontLoader {
+        List<TrueTypeFont> load(List<Closeable> toClose) throws IOException;
+    }
+
+    private static final class CollectionKey {
+        private final File _file;
+
+        CollectionKey(File file) {
+            this._file = file;
+        }
+
+        @Override
+        public int hashCode() {
+            return _file.hashCode();
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            return obj instanceof CollectionKey && _file.equals(((CollectionKey) obj)._file);
+        }
+    }
+
+    /**
+     * A font (or collection) that is loaded at most once. Loading is done while holding
+     * the entry lock so that other keys are not blocked while a large font is parsed.
+     */
+    private static final class Entry {
+        private final File _file;
+        private final long _lastModified;
+        private final long _length;
+        private final List<Closeable> _toClose = new ArrayList<>();
+        private List<TrueTypeFont> _fonts;
+
+        Entry(File file) {
+            this._file = file;
+            this._lastModified = file != null ? file.lastModified() : 0;
+            this._length = file != null ? file.length() : 0;
+        }
+
+        boolean isCurrent() {
+            return _file.lastModified() == _lastModified &&
+                   _file.length() == _length;
+        }
+
+        synchronized List<TrueTypeFont> get(FontLoader loader, Object key) {
+            if (_fonts == null) {
+                try {
+                    List<TrueTypeFont> fonts = loader.load(_toClose);
+                    for (TrueTypeFont ttf : fonts) {
+                        preload(ttf);
+                    }
+                    _fonts = fonts;
+                } catch (IOException | RuntimeException e) {
+                    XRLog.log(Level.WARNING, LogMessageId.LogMessageId1Param.EXCEPTION_COULD_NOT_LOAD_FONT, key, e);
+                    _fonts = Collections.emptyList();
+                    close();
+                }
+            }
+            return _fonts;
+        }
+
+        synchronized void close() {
+            // In reverse order, as later resources may depend on earlier ones.
+            for (int i = _toClose.size() - 1; i >= 0; i--) {
+                try {
+                    _toClose.get(i).close();
+                } catch (IOException e) {
+                }
+            }
+            _toClose.clear();
+        }
+    }
+}
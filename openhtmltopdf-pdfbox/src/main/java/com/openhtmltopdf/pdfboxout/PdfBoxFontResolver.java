@@ -30,6 +30,7 @@ import com.openhtmltopdf.extend.FSCacheValue;
 import com.openhtmltopdf.extend.FSSupplier;
 import com.openhtmltopdf.extend.FontResolver;
 import com.openhtmltopdf.layout.SharedContext;
+import com.openhtmltopdf.outputdevice.helper.FontFaceFontSupplier;
 import com.openhtmltopdf.outputdevice.helper.MinimalFontDescription;
 import com.openhtmltopdf.pdfboxout.PdfRendererBuilder.PdfAConformance;
 import com.openhtmltopdf.pdfboxout.fontstore.AbstractFontStore;
@@ -41,6 +42,7 @@ import com.openhtmltopdf.util.LogMessageId;
 import com.openhtmltopdf.util.XRLog;
 
 import org.apache.fontbox.ttf.TrueTypeCollection;
+import org.apache.fontbox.ttf.TrueTypeFont;
 import org.apache.pdfbox.pdmodel.PDDocument;
 import org.apache.pdfbox.pdmodel.font.PDFont;
 import org.apache.pdfbox.pdmodel.font.PDFontDescriptor;
@@ -51,6 +53,7 @@ import java.io.FilenameFilter;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.*;
+import java.util.function.IntPredicate;
 import java.util.logging.Level;
 
 /**
@@ -64,13 +67,37 @@ public class PdfBoxFontResolver implements FontResolver {
     }
 
     private final PDDocument _doc;
+    private final SharedContext _sharedContext;
+    private final PdfBoxSharedResources _sharedResources;
+    private final PdfBoxFontRegistry _fontRegistry;
     private final MainFontStore _suppliedFonts;
     private final FallbackFontStore _preBuiltinFallbackFonts;
     private final AbstractFontStore _builtinFonts;
     private final FallbackFontStore _finalFallbackFonts;
+    // Collections of an indexed font directory, when there is no registry or shared resources to own them.
+    private final PdfBoxFontCollections _fontCollections = new PdfBoxFontCollections();
+
+    // Resolved fonts by specification, cleared whenever a font is added. A calculated style
+    // keeps the font it resolved, so this helps when many styles differ only in properties
+    // other than font, for example paragraphs with different margins or colors.
+    private final Map<FontKey, FSFont> _resolvedFonts = new HashMap<>();
+    private int _resolveCacheHits;
+    private int _resolveCacheMisses;
 
     public PdfBoxFontResolver(SharedContext sharedContext, PDDocument doc, FSCacheEx<String, FSCacheValue> pdfMetricsCache, PdfAConformance pdfAConformance, boolean pdfUaConform) {
+        this(sharedContext, doc, pdfMetricsCache, pdfAConformance, pdfUaConform, null, null);
+    }
+
+    /**
+     * @param sharedResources if not null, fonts loaded from files, input stream suppliers and font-face
+     * rules are looked up in (and added to) sharedResources so that each is embedded in doc only once.
+     * @param fontRegistry if not null, the same fonts are parsed once per registry rather than once per document.
+     */
+    PdfBoxFontResolver(SharedContext sharedContext, PDDocument doc, FSCacheEx<String, FSCacheValue> pdfMetricsCache, PdfAConformance pdfAConformance, boolean pdfUaConform, PdfBoxSharedResources sharedResources, PdfBoxFontRegistry fontRegistry) {
         this._doc = doc;
+        this._sharedContext = sharedContext;
+        this._sharedResources = sharedResources;
+        this._fontRegistry = fontRegistry;
 
         this._suppliedFonts = new MainFontStore(sharedContext, doc, pdfMetricsCache);
 
@@ -90,17 +117,40 @@ public class PdfBoxFontResolver implements FontResolver {
         return resolveFont(renderingContext, spec.families, spec.size, spec.fontWeight, spec.fontStyle, spec.variant);
     }
 
+    /**
+     * @return the number of times {@link #resolveFont(SharedContext, FontSpecification)} returned
+     * an already resolved font.
+     */
+    public int getResolveCacheHits() {
+        return _resolveCacheHits;
+    }
+
+    /**
+     * @return the number of times {@link #resolveFont(SharedContext, FontSpecification)} had to
+     * search the font stores.
+     */
+    public int getResolveCacheMisses() {
+        return _resolveCacheMisses;
+    }
+
     /**
      * Free all font resources (i.e. open files), the document should already be
      * closed.
      */
     public void close() {
+        if (_resolveCacheHits + _resolveCacheMisses > 0) {
+            XRLog.log(Level.INFO, LogMessageId.LogMessageId2Param.LOAD_FONT_RESOLUTION_CACHE_STATS, _resolveCacheHits, _resolveCacheMisses);
+        }
+
         FontUtil.tryClose(this._suppliedFonts);
         FontUtil.tryClose(this._preBuiltinFallbackFonts);
         FontUtil.tryClose(this._finalFallbackFonts);
+
+        _fontCollections.close();
     }
 
     public void importFontFaces(List<FontFaceRule> fontFaces) {
+        _resolvedFonts.clear();
         for (FontFaceRule rule : fontFaces) {
             CalculatedStyle style = rule.getCalculatedStyle();
 
@@ -130,10 +180,62 @@ public class PdfBoxFontResolver implements FontResolver {
                 fontStyle = style.getIdent(CSSName.FONT_STYLE);
             }
 
-            this._suppliedFonts.addFontFaceFont(fontFamily, fontWeight, fontStyle, src.asString(), !noSubset);
+            String uriResolved = _sharedResources != null || _fontRegistry != null ?
+                    _sharedContext.getUserAgentCallback().resolveURI(src.asString()) : null;
+
+            if (uriResolved != null) {
+                FontFaceFontSupplier fontSupplier = new FontFaceFontSupplier(_sharedContext, src.asString());
+                FSSupplier<PDFont> font = _fontRegistry != null ?
+                        type0Font(() -> _fontRegistry.getFont(uriResolved, fontSupplier), fontFamily, !noSubset) :
+                        streamFont(fontSupplier, fontFamily, !noSubset);
+
+                if (_sharedResources != null) {
+                    font = sharedFont(uriResolved, !noSubset, font);
+                }
+
+                this._suppliedFonts.addFontFaceFont(fontFamily, fontWeight, fontStyle, font, !noSubset);
+            } else {
+                this._suppliedFonts.addFontFaceFont(fontFamily, fontWeight, fontStyle, src.asString(), !noSubset);
+            }
         }
     }
 
+    /**
+     * Returns a supplier that takes the font from the shared resources, loading it with loader the first time.
+     */
+    private FSSupplier<PDFont> sharedFont(Object source, boolean subset, FSSupplier<PDFont> loader) {
+        return () -> _sharedResources.getFont(source, subset, loader);
+    }
+
+    /**
+     * Returns a supplier that loads a Type0 font from the input stream supplier.
+     */
+    private FSSupplier<PDFont> streamFont(FSSupplier<InputStream> supplier, String family, boolean subset) {
+        return () -> {
+            try (InputStream is = supplier.supply()) {
+                return is != null ? PDType0Font.load(_doc, is, subset) : null;
+            } catch (IOException e) {
+                XRLog.log(Level.WARNING, LogMessageId.LogMessageId1Param.EXCEPTION_COULD_NOT_LOAD_FONT, family, e);
+                return null;
+            }
+        };
+    }
+
+    /**
+     * Returns a supplier that wraps a parsed font in a Type0 font for this document.
+     */
+    private FSSupplier<PDFont> type0Font(FSSupplier<TrueTypeFont> ttf, String family, boolean subset) {
+        return () -> {
+            TrueTypeFont font = ttf.supply();
+            try {
+                return font != null ? PDType0Font.load(_doc, font, subset) : null;
+            } catch (IOException e) {
+                XRLog.log(Level.WARNING, LogMessageId.LogMessageId1Param.EXCEPTION_COULD_NOT_LOAD_FONT, family, e);
+                return null;
+            }
+        };
+    }
+
     /**
      * @deprecated Use {@link #addFontDirectory(String, boolean, FontGroup)}
      */
@@ -146,6 +248,7 @@ public class PdfBoxFontResolver implements FontResolver {
      * Add all fonts in the given directory
      */
     public void addFontDirectory(String dir, boolean embedded, FontGroup fontGroup) throws IOException {
+        _resolvedFonts.clear();
         File f = new File(dir);
         if (f.isDirectory()) {
             File[] files = f.listFiles(new FilenameFilter() {
@@ -162,6 +265,65 @@ public class PdfBoxFontResolver implements FontResolver {
         }
     }
 
+    /**
+     * Adds every font in an indexed font directory to a specific font group, using the family
+     * name, weight and style from each font rather than its file name. Fonts are only
+     * loaded if they are used and their metrics come from the index.
+     */
+    public void addFontDirectory(PdfBoxFontDirectoryIndex index, boolean subset, FontGroup fontGroup) {
+        _resolvedFonts.clear();
+        for (PdfBoxFontDirectoryIndex.Entry entry : index.getEntries()) {
+            File file = entry.getFile();
+            int collectionIndex = entry.getCollectionIndex();
+            FSSupplier<PDFont> fontSupplier;
+
+            if (collectionIndex < 0) {
+                fontSupplier = _fontRegistry != null ?
+                        type0Font(() -> _fontRegistry.getFont(file), entry.getFamily(), subset) :
+                        new FilePDFontSupplier(file, _doc);
+            } else {
+                fontSupplier = type0Font(() -> getCollectionFont(file, collectionIndex), entry.getFamily(), subset);
+            }
+
+            if (_sharedResources != null) {
+                Object source = collectionIndex < 0 ?
+                        file.getAbsoluteFile() :
+                        collectionSource(file.getAbsoluteFile(), collectionIndex);
+                fontSupplier = sharedFont(source, subset, fontSupplier);
+            }
+
+            if (fontGroup == FontGroup.MAIN) {
+                this._suppliedFonts.addFontLazy(fontSupplier, entry.getFamily(), entry.getWeight(), entry.getStyle(), subset, entry.getMetrics(), entry::covers, null);
+            } else {
+                getFallbackFontStore(fontGroup).addFontLazy(fontSupplier, entry.getFamily(), entry.getWeight(), entry.getStyle(), subset, entry.getMetrics(), entry::covers, null);
+            }
+        }
+    }
+
+    /**
+     * Returns one font of a collection file, which is opened once and kept open by the
+     * registry or, for a multi-document PDF, the shared resources, as the font may be saved
+     * after this resolver is closed. Otherwise it is kept open until this resolver is closed.
+     */
+    private TrueTypeFont getCollectionFont(File file, int collectionIndex) {
+        try {
+            List<TrueTypeFont> fonts;
+
+            if (_fontRegistry != null) {
+                fonts = _fontRegistry.getFontCollection(file);
+            } else if (_sharedResources != null) {
+                fonts = _sharedResources.getFontCollections().get(file);
+            } else {
+                fonts = _fontCollections.get(file);
+            }
+
+            return collectionIndex < fonts.size() ? fonts.get(collectionIndex) : null;
+        } catch (IOException e) {
+            XRLog.log(Level.WARNING, LogMessageId.LogMessageId1Param.EXCEPTION_COULD_NOT_LOAD_FONT, file, e);
+            return null;
+        }
+    }
+
     /**
      * Adds a font collection (.ttc in an input stream) to a
      * specific font group.
@@ -173,6 +335,13 @@ public class PdfBoxFontResolver implements FontResolver {
             IdentValue fontStyleOverride,
             boolean subset,
             FontGroup fontGroup) throws IOException {
+        _resolvedFonts.clear();
+
+        if (_sharedResources != null) {
+            List<TrueTypeFont> fonts = _sharedResources.getFontCollections().get(supplier);
+            addCollectionFonts(supplier, fonts, fontFamilyNameOverride, fontWeightOverride, fontStyleOverride, subset, fontGroup);
+            return;
+        }
 
         try (InputStream inputStream = supplier.supply()) {
             TrueTypeCollection collection = new TrueTypeCollection(inputStream);
@@ -193,10 +362,7 @@ public class PdfBoxFontResolver implements FontResolver {
 	public void addFontCollection(FSSupplier<InputStream> supplier, final String fontFamilyNameOverride,
 			final Integer fontWeightOverride, final IdentValue fontStyleOverride, final boolean subset)
 			throws IOException {
-		try (InputStream inputStream = supplier.supply()){
-			TrueTypeCollection collection = new TrueTypeCollection(inputStream);
-            this._suppliedFonts.addFontCollection(collection, fontFamilyNameOverride, fontWeightOverride, fontStyleOverride, subset);
-		}
+        addFontCollection(supplier, fontFamilyNameOverride, fontWeightOverride, fontStyleOverride, subset, FontGroup.MAIN);
     }
 
     /**
@@ -209,6 +375,17 @@ public class PdfBoxFontResolver implements FontResolver {
             IdentValue fontStyleOverride,
             boolean subset,
             FontGroup fontGroup) throws IOException {
+        _resolvedFonts.clear();
+
+        if (_fontRegistry != null || _sharedResources != null) {
+            // The collection must stay open until the document is saved, which for
+            // a multi-document PDF is after this part's resolver is closed.
+            List<TrueTypeFont> fonts = _fontRegistry != null ?
+                    _fontRegistry.getFontCollection(file) :
+                    _sharedResources.getFontCollections().get(file);
+            addCollectionFonts(file.getAbsoluteFile(), fonts, fontFamilyNameOverride, fontWeightOverride, fontStyleOverride, subset, fontGroup);
+            return;
+        }
 
         TrueTypeCollection collection = new TrueTypeCollection(file);
 
@@ -219,6 +396,42 @@ public class PdfBoxFontResolver implements FontResolver {
         }
     }
 
+    /**
+     * Adds the already open fonts of a collection, each loaded for this document on first use.
+     * @param collectionKey identifies the collection in the shared resources.
+     */
+    private void addCollectionFonts(
+            Object collectionKey,
+            List<TrueTypeFont> fonts,
+            String fontFamilyNameOverride,
+            Integer fontWeightOverride,
+            IdentValue fontStyleOverride,
+            boolean subset,
+            FontGroup fontGroup) {
+        for (int i = 0; i < fonts.size(); i++) {
+            TrueTypeFont ttf = fonts.get(i);
+            FSSupplier<PDFont> fontSupplier = type0Font(() -> ttf, fontFamilyNameOverride, subset);
+            String fingerprint = collectionKey instanceof File ? fingerprint((File) collectionKey) + "#" + i : null;
+
+            if (_sharedResources != null) {
+                fontSupplier = sharedFont(collectionSource(collectionKey, i), subset, fontSupplier);
+            }
+
+            if (fontGroup == FontGroup.MAIN) {
+                this._suppliedFonts.addFontLazy(fontSupplier, fontFamilyNameOverride, fontWeightOverride, fontStyleOverride, subset, null, null, fingerprint);
+            } else {
+                getFallbackFontStore(fontGroup).addFontLazy(fontSupplier, fontFamilyNameOverride, fontWeightOverride, fontStyleOverride, subset, null, null, fingerprint);
+            }
+        }
+    }
+
+    /**
+     * The shared resources source of one font of a collection.
+     */
+    private static Object collectionSource(Object collectionKey, int collectionIndex) {
+        return Arrays.asList(collectionKey, collectionIndex);
+    }
+
     /**
      * Add fonts using a .ttc TrueTypeCollection
      * @deprecated Use {@link #addFontCollection(File, String, Integer, IdentValue, boolean, FontGroup)}
@@ -227,8 +440,7 @@ public class PdfBoxFontResolver implements FontResolver {
     public void addFontCollection(File file, final String fontFamilyNameOverride,
                                   final Integer fontWeightOverride, final IdentValue fontStyleOverride, final boolean subset)
             throws IOException {
-		TrueTypeCollection collection = new TrueTypeCollection(file);
-        this._suppliedFonts.addFontCollection(collection, fontFamilyNameOverride, fontWeightOverride, fontStyleOverride, subset);
+        addFontCollection(file, fontFamilyNameOverride, fontWeightOverride, fontStyleOverride, subset, FontGroup.MAIN);
     }
 
     /**
@@ -241,17 +453,39 @@ public class PdfBoxFontResolver implements FontResolver {
             IdentValue fontStyleOverride,
             boolean subset,
             FontGroup fontGroup) throws IOException {
+        _resolvedFonts.clear();
 
         if (fontFile.getName().toLowerCase(Locale.US).endsWith(".ttc")) {
             // Specialcase for TrueTypeCollections
             addFontCollection(fontFile, fontFamilyNameOverride, fontWeightOverride, fontStyleOverride, subset, fontGroup);
-        } else if (fontGroup == FontGroup.MAIN) {
-            this._suppliedFonts.addFontLazy(new FilePDFontSupplier(fontFile, _doc), fontFamilyNameOverride, fontWeightOverride, fontStyleOverride, subset);
+            return;
+        }
+
+        FSSupplier<PDFont> fontSupplier = _fontRegistry != null ?
+                type0Font(() -> _fontRegistry.getFont(fontFile), fontFamilyNameOverride, subset) :
+                new FilePDFontSupplier(fontFile, _doc);
+
+        if (_sharedResources != null) {
+            fontSupplier = sharedFont(fontFile.getAbsoluteFile(), subset, fontSupplier);
+        }
+
+        String fingerprint = fingerprint(fontFile);
+
+        if (fontGroup == FontGroup.MAIN) {
+            this._suppliedFonts.addFontLazy(fontSupplier, fontFamilyNameOverride, fontWeightOverride, fontStyleOverride, subset, null, null, fingerprint);
         } else {
-            getFallbackFontStore(fontGroup).addFontLazy(new FilePDFontSupplier(fontFile, _doc), fontFamilyNameOverride, fontWeightOverride, fontStyleOverride, subset);
+            getFallbackFontStore(fontGroup).addFontLazy(fontSupplier, fontFamilyNameOverride, fontWeightOverride, fontStyleOverride, subset, null, null, fingerprint);
         }
     }
 
+    /**
+     * Identifies the version of a font file in the metrics cache, so that metrics
+     * saved by a {@link PdfBoxPersistentCacheStore} are not used once the file changes.
+     */
+    private static String fingerprint(File file) {
+        return file.getAbsolutePath() + ":" + file.length() + ":" + file.lastModified();
+    }
+
     private FallbackFontStore getFallbackFontStore(FontGroup fontGroup) {
         assert fontGroup == FontGroup.PRE_BUILT_IN_FALLBACK ||
                fontGroup == FontGroup.FINAL_FALLBACK;
@@ -269,18 +503,7 @@ public class PdfBoxFontResolver implements FontResolver {
     @Deprecated
 	public void addFont(File fontFile, final String fontFamilyNameOverride, final Integer fontWeightOverride,
 			final IdentValue fontStyleOverride, final boolean subset) throws IOException {
-		/*
-		 * Specialcase for TrueTypeCollections
-		 */
-		if (fontFile.getName().toLowerCase(Locale.US).endsWith(".ttc")) {
-			addFontCollection(fontFile, fontFamilyNameOverride, fontWeightOverride, fontStyleOverride, subset);
-			return;
-		}
-
-		/*
-		 * We load the font using the file.
-		 */
-        this._suppliedFonts.addFontLazy(new FilePDFontSupplier(fontFile, _doc), fontFamilyNameOverride, fontWeightOverride, fontStyleOverride, subset);
+        addFont(fontFile, fontFamilyNameOverride, fontWeightOverride, fontStyleOverride, subset, FontGroup.MAIN);
 	}
 
 	/**
@@ -316,8 +539,23 @@ public class PdfBoxFontResolver implements FontResolver {
             IdentValue fontStyleOverride,
             boolean subset,
             FontGroup fontGroup) {
+        _resolvedFonts.clear();
 
-        if (fontGroup == FontGroup.MAIN) {
+        if (_sharedResources != null || _fontRegistry != null) {
+            FSSupplier<PDFont> fontSupplier = _fontRegistry != null ?
+                    type0Font(() -> _fontRegistry.getFont(supplier, supplier), fontFamilyNameOverride, subset) :
+                    streamFont(supplier, fontFamilyNameOverride, subset);
+
+            if (_sharedResources != null) {
+                fontSupplier = sharedFont(supplier, subset, fontSupplier);
+            }
+
+            if (fontGroup == FontGroup.MAIN) {
+                this._suppliedFonts.addFontLazy(fontSupplier, fontFamilyNameOverride, fontWeightOverride, fontStyleOverride, subset);
+            } else {
+                getFallbackFontStore(fontGroup).addFontLazy(fontSupplier, fontFamilyNameOverride, fontWeightOverride, fontStyleOverride, subset);
+            }
+        } else if (fontGroup == FontGroup.MAIN) {
             this._suppliedFonts.addFont(
                     supplier, fontFamilyNameOverride, fontWeightOverride, fontStyleOverride, subset);
         } else {
@@ -339,9 +577,7 @@ public class PdfBoxFontResolver implements FontResolver {
        Integer fontWeightOverride,
        IdentValue fontStyleOverride,
        boolean subset) {
-
-       this._suppliedFonts.addFont(
-               supplier, fontFamilyNameOverride, fontWeightOverride, fontStyleOverride, subset);
+       addFont(supplier, fontFamilyNameOverride, fontWeightOverride, fontStyleOverride, subset, FontGroup.MAIN);
     }
 
     /**
@@ -354,6 +590,7 @@ public class PdfBoxFontResolver implements FontResolver {
             IdentValue fontStyleOverride,
             boolean subset,
             FontGroup fontGroup) {
+        _resolvedFonts.clear();
 
         if (fontGroup == FontGroup.MAIN) {
             this._suppliedFonts.addFont(supplier, fontFamilyNameOverride, fontWeightOverride, fontStyleOverride, subset);
@@ -375,8 +612,7 @@ public class PdfBoxFontResolver implements FontResolver {
             Integer fontWeightOverride,
             IdentValue fontStyleOverride,
             boolean subset) {
-
-        this._suppliedFonts.addFont(supplier, fontFamilyNameOverride, fontWeightOverride, fontStyleOverride, subset);
+        addFont(supplier, fontFamilyNameOverride, fontWeightOverride, fontStyleOverride, subset, FontGroup.MAIN);
     }
 
 
@@ -388,6 +624,21 @@ public class PdfBoxFontResolver implements FontResolver {
             style = IdentValue.NORMAL;
         }
 
+        FontKey key = new FontKey(families, size, weight, style, variant);
+        FSFont cached = _resolvedFonts.get(key);
+
+        if (cached != null) {
+            _resolveCacheHits++;
+            return cached;
+        }
+
+        _resolveCacheMisses++;
+        FSFont font = resolveFontUncached(ctx, families, size, weight, style, variant);
+        _resolvedFonts.put(key, font);
+        return font;
+    }
+
+    private FSFont resolveFontUncached(SharedContext ctx, String[] families, float size, IdentValue weight, IdentValue style, IdentValue variant) {
         List<FontDescription> fonts = new ArrayList<>(3);
 
         // Supplied fonts
@@ -411,7 +662,49 @@ public class PdfBoxFontResolver implements FontResolver {
         // Post built-in fallback fonts.
         fonts.addAll(_finalFallbackFonts.resolveFonts(ctx, families, size, weight, style, variant));
 
-        return new PdfBoxFSFont(fonts, size);
+        return new PdfBoxFSFont(Collections.unmodifiableList(fonts), size);
+    }
+
+    /**
+     * The parts of a font specification used to resolve a font.
+     */
+    private static class FontKey {
+        private final String[] _families;
+        private final float _size;
+        private final IdentValue _weight;
+        private final IdentValue _style;
+        private final IdentValue _variant;
+        private final int _hash;
+
+        FontKey(String[] families, float size, IdentValue weight, IdentValue style, IdentValue variant) {
+            // Copied as the specification's array belongs to the style.
+            _families = families != null ? families.clone() : null;
+            _size = size;
+            _weight = weight;
+            _style = style;
+            _variant = variant;
+            _hash = Objects.hash(Arrays.hashCode(_families), _size, _weight, _style, _variant);
+        }
+
+        @Override
+        public int hashCode() {
+            return _hash;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof FontKey)) {
+                return false;
+            }
+
+            FontKey other = (FontKey) obj;
+            return _hash == other._hash &&
+                   Float.compare(_size, other._size) == 0 &&
+                   _weight == other._weight &&
+                   _style == other._style &&
+                   _variant == other._variant &&
+                   Arrays.equals(_families, other._families);
+        }
     }
 
     private void resolveFamilyFont(
@@ -514,6 +807,10 @@ public class PdfBoxFontResolver implements FontResolver {
         private PdfBoxRawPDFontMetrics _metrics;
         private final FSCacheEx<String, FSCacheValue> _metricsCache;
 
+        private GlyphAdvanceCache _advances;
+        private final IntPredicate _coverage;
+        private final String _fingerprint;
+
         /**
          * Create a font description from one of the PDF built-in fonts.
          */
@@ -539,6 +836,8 @@ public class PdfBoxFontResolver implements FontResolver {
             this._isFromFontFace = isFromFontFace;
             this._isSubset = isSubset;
             this._metricsCache = metricsCache;
+            this._coverage = null;
+            this._fingerprint = null;
             this._metrics = getFontMetricsFromCache(family, weight, style);
         }
 
@@ -556,6 +855,8 @@ public class PdfBoxFontResolver implements FontResolver {
             _family = null;
             _isFromFontFace = false;
             _isSubset = false;
+            _coverage = null;
+            _fingerprint = null;
             PDFontDescriptor descriptor = font.getFontDescriptor();
             
             try {
@@ -574,6 +875,24 @@ public class PdfBoxFontResolver implements FontResolver {
                 IdentValue style, int weight, String family, 
                 boolean isFromFontFace, boolean isSubset,
                 FSCacheEx<String, FSCacheValue> metricsCache) {
+            this(doc, fontSupplier, style, weight, family, isFromFontFace, isSubset, metricsCache, null, null, null);
+        }
+
+        /**
+         * Creates a font description from a PDFont supplier and, if not null, metrics and unicode
+         * coverage that are already known (for example from a {@link PdfBoxFontDirectoryIndex}).
+         * Metrics are then not looked up in the cache and {@link #hasGlyph(int)} does not load the font.
+         * If not null, fingerprint identifies the version of the font (such as the path, size and last
+         * modified time of its file) and is part of its key in the metrics cache.
+         */
+        public FontDescription(
+                PDDocument doc, FSSupplier<PDFont> fontSupplier,
+                IdentValue style, int weight, String family,
+                boolean isFromFontFace, boolean isSubset,
+                FSCacheEx<String, FSCacheValue> metricsCache,
+                PdfBoxRawPDFontMetrics metrics,
+                IntPredicate coverage,
+                String fingerprint) {
             _fontSupplier = fontSupplier;
             _style = style;
             _weight = weight;
@@ -583,7 +902,9 @@ public class PdfBoxFontResolver implements FontResolver {
             _isFromFontFace = isFromFontFace;
             _isSubset = isSubset;
             _metricsCache = metricsCache;
-            _metrics = getFontMetricsFromCache(family, weight, style);
+            _coverage = coverage;
+            _fingerprint = fingerprint;
+            _metrics = metrics != null ? metrics : getFontMetricsFromCache(family, weight, style);
         }
 
         public String getFamily() {
@@ -591,7 +912,8 @@ public class PdfBoxFontResolver implements FontResolver {
         }
 
         private String createFontMetricsCacheKey(String family, int weight, IdentValue style) {
-            return "font-metrics:" + family + ":" + weight + ":" + style.toString();
+            String key = "font-metrics:" + family + ":" + weight + ":" + style.toString();
+            return _fingerprint != null ? key + ":" + _fingerprint : key;
         }
         
         private PdfBoxRawPDFontMetrics getFontMetricsFromCache(String family, int weight, IdentValue style) {
@@ -708,5 +1030,65 @@ public class PdfBoxFontResolver implements FontResolver {
             
             return _metrics;
         }
+
+        /**
+         * Returns the width of str in this font in 1/1000 em, the same as
+         * <code>getFont().getStringWidth(str)</code> but using a per code point cache.
+         * Downloads and parses the font if required.
+         * @throws IllegalArgumentException if a character of str is not in this font.
+         */
+        public float getStringWidth(String str) throws IOException {
+            PDFont font = getFont();
+
+            if (font == null) {
+                throw new IllegalArgumentException("Font " + _family + " is not available");
+            }
+
+            return getAdvanceCache(font).getStringWidth(font, str);
+        }
+
+        /**
+         * Returns whether this font has a glyph for codePoint, without throwing
+         * for a missing glyph. Downloads and parses the font if required, unless
+         * its coverage is already known.
+         */
+        public boolean hasGlyph(int codePoint) {
+            if (_coverage != null) {
+                return _coverage.test(codePoint);
+            }
+
+            PDFont font = getFont();
+
+            try {
+                return font != null && getAdvanceCache(font).hasGlyph(font, codePoint);
+            } catch (IOException e) {
+                return false;
+            }
+        }
+
+        /**
+         * Returns whether this font has a glyph for every character of str.
+         * @see #hasGlyph(int)
+         */
+        public boolean hasGlyphs(String str) {
+            if (_coverage != null) {
+                return str.codePoints().allMatch(_coverage);
+            }
+
+            PDFont font = getFont();
+
+            try {
+                return font != null && getAdvanceCache(font).hasGlyphs(font, str);
+            } catch (IOException e) {
+                return false;
+            }
+        }
+
+        private GlyphAdvanceCache getAdvanceCache(PDFont font) {
+            if (_advances == null) {
+                _advances = GlyphAdvanceCache.forFont(font);
+            }
+            return _advances;
+        }
     }
 }
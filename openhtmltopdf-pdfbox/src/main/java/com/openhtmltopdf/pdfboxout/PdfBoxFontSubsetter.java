@@ -0,0 +1,158 @@
+package com.openhtmltopdf.pdfboxout;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.logging.Level;
+
+import org.apache.pdfbox.cos.COSDocument;
+import org.apache.pdfbox.cos.COSStream;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.font.PDFont;
+
+import com.openhtmltopdf.util.LogMessageId;
+import com.openhtmltopdf.util.XRLog;
+
+/**
+ * Subsets the embedded fonts of a document on an executor, one font per task, just
+ * before the document is saved.
+ * <br><br>
+ * <code>PDDocument.save</code> subsets each font that was loaded for subsetting, one after
+ * another, and then forgets them. PDF-BOX only exposes that set of fonts package-private,
+ * so it is reached by reflection. If it can not be reached, fonts are left to be subset
+ * by <code>save</code> as usual.
+ * <br><br>
+ * Each font builds its own subset objects and the PDF-BOX scratch file is thread safe, but
+ * the streams each font creates (font file, ToUnicode, CIDSet and CIDToGIDMap) are added to
+ * a plain list in <code>COSDocument</code>. While fonts are subset that list is replaced,
+ * again by reflection, with a synchronized view of it so stream creation is serialised.
+ * If the list can not be reached, fonts are left to <code>save</code>.
+ */
+class PdfBoxFontSubsetter {
+    private static final Method GET_FONTS_TO_SUBSET = findGetFontsToSubset();
+    private static final Field COS_DOCUMENT_STREAMS = findCOSDocumentStreams();
+
+    private PdfBoxFontSubsetter() {
+    }
+
+    private static Method findGetFontsToSubset() {
+        try {
+            Method method = PDDocument.class.getDeclaredMethod("getFontsToSubset");
+            method.setAccessible(true);
+            return method;
+        } catch (NoSuchMethodException | RuntimeException e) {
+            XRLog.log(Level.WARNING, LogMessageId.LogMessageId0Param.GENERAL_PDF_CONCURRENT_FONT_SUBSETTING_NOT_AVAILABLE, e);
+            return null;
+        }
+    }
+
+    private static Field findCOSDocumentStreams() {
+        try {
+            Field field = COSDocument.class.getDeclaredField("streams");
+            field.setAccessible(true);
+            return field.getType() == List.class ? field : null;
+        } catch (NoSuchFieldException | RuntimeException e) {
+            XRLog.log(Level.WARNING, LogMessageId.LogMessageId0Param.GENERAL_PDF_CONCURRENT_FONT_SUBSETTING_NOT_AVAILABLE, e);
+            return null;
+        }
+    }
+
+    /**
+     * Subsets the fonts of doc on executor and waits for them to finish, so that
+     * <code>doc.save</code> does not subset them again. Must be called after painting
+     * is complete and before the document is saved.
+     */
+    static void subsetFonts(PDDocument doc, Executor executor) throws IOException {
+        Set<PDFont> fontsToSubset = getFontsToSubset(doc);
+
+        if (fontsToSubset == null || fontsToSubset.size() < 2) {
+            // Nothing to gain, leave it to save.
+            return;
+        }
+
+        COSDocument cosDoc = doc.getDocument();
+        List<COSStream> streams = getStreams(cosDoc);
+
+        if (streams == null || !setStreams(cosDoc, Collections.synchronizedList(streams))) {
+            // Streams can not be created safely from several threads, leave it to save.
+            return;
+        }
+
+        List<CompletableFuture<Void>> pending = new ArrayList<>(fontsToSubset.size());
+
+        try {
+            for (PDFont font : fontsToSubset) {
+                pending.add(CompletableFuture.runAsync(() -> subset(font), executor));
+            }
+
+            CompletableFuture.allOf(pending.toArray(new CompletableFuture<?>[0])).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof UncheckedIOException) {
+                throw ((UncheckedIOException) e.getCause()).getCause();
+            }
+            throw e;
+        } finally {
+            // If submitting failed part way, wait for the fonts already submitted.
+            CompletableFuture.allOf(pending.toArray(new CompletableFuture<?>[0])).handle((v, e) -> null).join();
+
+            // The synchronized view wrote through to the original list.
+            setStreams(cosDoc, streams);
+        }
+
+        fontsToSubset.clear();
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<COSStream> getStreams(COSDocument cosDoc) {
+        if (COS_DOCUMENT_STREAMS == null) {
+            return null;
+        }
+
+        try {
+            return (List<COSStream>) COS_DOCUMENT_STREAMS.get(cosDoc);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            XRLog.log(Level.WARNING, LogMessageId.LogMessageId0Param.GENERAL_PDF_CONCURRENT_FONT_SUBSETTING_NOT_AVAILABLE, e);
+            return null;
+        }
+    }
+
+    private static boolean setStreams(COSDocument cosDoc, List<COSStream> streams) {
+        try {
+            COS_DOCUMENT_STREAMS.set(cosDoc, streams);
+            return true;
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            XRLog.log(Level.WARNING, LogMessageId.LogMessageId0Param.GENERAL_PDF_CONCURRENT_FONT_SUBSETTING_NOT_AVAILABLE, e);
+            return false;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Set<PDFont> getFontsToSubset(PDDocument doc) {
+        if (GET_FONTS_TO_SUBSET == null) {
+            return null;
+        }
+
+        try {
+            return (Set<PDFont>) GET_FONTS_TO_SUBSET.invoke(doc);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            XRLog.log(Level.WARNING, LogMessageId.LogMessageId0Param.GENERAL_PDF_CONCURRENT_FONT_SUBSETTING_NOT_AVAILABLE, e);
+            return null;
+        }
+    }
+
+    private static void subset(PDFont font) {
+        try {
+            font.subset();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package com.openhtmltopdf.pdfboxout;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+
+import org.apache.pdfbox.cos.COSArray;
+import org.apache.pdfbox.cos.COSBase;
+import org.apache.pdfbox.cos.COSName;
+import org.apache.pdfbox.cos.COSStream;
+import org.apache.pdfbox.io.IOUtils;
+import org.apache.pdfbox.pdmodel.PDPage;
+
+/**
+ * Compresses finished page content streams on an executor while the
+ * renderer goes on to paint the next page.
+ * <br><br>
+ * Pages are painted uncompressed on the rendering thread. Once a page is finished,
+ * its content stream is not touched again by the renderer, so it can safely be
+ * deflated on another thread. Each page owns its own content stream and
+ * the PDF-BOX scratch file is thread safe.
+ */
+class PdfBoxPageCompressor {
+    private final Executor _executor;
+    private final List<CompletableFuture<Void>> _pending = new ArrayList<>();
+
+    PdfBoxPageCompressor(Executor executor) {
+        _executor = executor;
+    }
+
+    /**
+     * Queue the content stream most recently appended to page for compression.
+     * Must only be called after the page's content stream has been closed.
+     */
+    void compressLater(PDPage page) {
+        COSStream stream = getLastContentStream(page);
+
+        if (stream != null && stream.getFilters() == null) {
+            _pending.add(CompletableFuture.runAsync(() -> compress(stream), _executor));
+        }
+    }
+
+    /**
+     * Waits for all queued pages to be compressed. Must be called
+     * before the document is saved.
+     */
+    void awaitAll() throws IOException {
+        try {
+            CompletableFuture.allOf(_pending.toArray(new CompletableFuture<?>[0])).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof UncheckedIOException) {
+                throw ((UncheckedIOException) e.getCause()).getCause();
+            }
+            throw e;
+        } finally {
+            _pending.clear();
+        }
+    }
+
+    /**
+     * Waits for all queued pages, ignoring any errors, so that the
+     * document can safely be closed after a failed render.
+     */
+    void awaitAllQuietly() {
+        try {
+            CompletableFuture.allOf(_pending.toArray(new CompletableFuture<?>[0])).handle((v, e) -> null).join();
+        } finally {
+            _pending.clear();
+        }
+    }
+
+    private static COSStream getLastContentStream(PDPage page) {
+        COSBase contents = page.getCOSObject().getDictionaryObject(COSName.CONTENTS);
+
+        if (contents instanceof COSStream) {
+            return (COSStream) contents;
+        } else if (contents instanceof COSArray && ((COSArray) contents).size() > 0) {
+            // In append mode our content stream is the last in the array.
+            COSArray array = (COSArray) contents;
+            COSBase last = array.getObject(array.size() - 1);
+            return last instanceof COSStream ? (COSStream) last : null;
+        }
+
+        return null;
+    }
+
+    private static void compress(COSStream stream) {
+        try {
+            byte[] raw;
+
+            try (InputStream in = stream.createRawInputStream()) {
+                raw = IOUtils.toByteArray(in);
+            }
+
+            try (OutputStream out = stream.createOutputStream(COSName.FLATE_DECODE)) {
+                out.write(raw);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
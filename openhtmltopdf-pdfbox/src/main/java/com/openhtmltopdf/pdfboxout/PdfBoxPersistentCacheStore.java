@@ -0,0 +1,269 @@
+package com.openhtmltopdf.pdfboxout;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Level;
+
+import com.openhtmltopdf.extend.FSCacheEx;
+import com.openhtmltopdf.extend.FSCacheValue;
+import com.openhtmltopdf.util.LogMessageId;
+import com.openhtmltopdf.util.XRLog;
+
+/**
+ * A cache store that can be saved to a file and loaded again when the process restarts,
+ * for use with {@link PdfRendererBuilder.CacheStore#PDF_FONT_METRICS}. For example:
+ * <pre>
+ * PdfBoxPersistentCacheStore metrics = PdfBoxPersistentCacheStore.load(new File("/var/cache/app/font-metrics.bin"));
+ * builder.useCacheStore(CacheStore.PDF_FONT_METRICS, metrics);
+ * ...
+ * metrics.close(); // On shutdown, saves the cache if anything was added.
+ * </pre>
+ * With the font metrics of the previous process available, the first renders of a new
+ * process do not have to load fallback fonts just for their metrics.
+ * <br><br>
+ * Values are held in memory like {@link com.openhtmltopdf.extend.impl.FSDefaultCacheStore}.
+ * Only {@link PdfBoxRawPDFontMetrics} values are saved, others are kept until the process ends.
+ * Values of types written by a later version are kept as they are and saved again.
+ * <br><br>
+ * Metrics of fonts added from files are keyed on the path, size and last modified time of
+ * the file as well as family, weight and style, so a font file that changes (for example on
+ * a deploy) gets new metrics. Metrics of fonts from input streams and font-face rules are
+ * keyed on family, weight and style only, so the file should be deleted if those fonts change.
+ * Metrics of old versions of a font file are not removed from the file.
+ * <br><br>
+ * This class is thread safe.
+ */
+public final class PdfBoxPersistentCacheStore implements FSCacheEx<String, FSCacheValue>, Closeable {
+    private static final int MAGIC = 0x4f48_4343; // OHCC
+    private static final int VERSION = 1;
+
+    /**
+     * Each value is saved as a type, a length and the value itself, so that a
+     * file with value types added later can still be read.
+     */
+    private static final int TYPE_FONT_METRICS = 1;
+    private static final int FONT_METRICS_LENGTH = 6 * Float.BYTES;
+
+    /**
+     * Larger values are taken to mean the file is corrupt.
+     */
+    private static final int MAX_VALUE_LENGTH = 1 << 20;
+
+    private final File _file;
+    private final Map<String, FSCacheValue> _store = new ConcurrentHashMap<>();
+    // Values of unknown types read from the file, to be written back as they are.
+    private final Map<String, RawValue> _unknown = new ConcurrentHashMap<>();
+    private volatile boolean _dirty;
+
+    private PdfBoxPersistentCacheStore(File file) {
+        this._file = file;
+    }
+
+    /**
+     * Creates a cache store holding the values previously saved to file. If file does not
+     * exist or can not be read the cache starts empty.
+     * @param file where the cache is saved, its directory must exist.
+     */
+    public static PdfBoxPersistentCacheStore load(File file) {
+        PdfBoxPersistentCacheStore cache = new PdfBoxPersistentCacheStore(file);
+        cache.read();
+        return cache;
+    }
+
+    @Override
+    public void put(String key, FSCacheValue value) {
+        FSCacheValue previous = _store.put(key, value);
+
+        if (previous != value && value instanceof PdfBoxRawPDFontMetrics) {
+            _dirty = true;
+        }
+    }
+
+    @Override
+    public FSCacheValue get(String key, Callable<? extends FSCacheValue> loader) {
+        FSCacheValue value = _store.get(key);
+
+        if (value != null) {
+            return value;
+        }
+
+        try {
+            value = loader.call();
+
+            if (value != null) {
+                put(key, value);
+            }
+        } catch (Exception e) {
+            XRLog.log(Level.WARNING, LogMessageId.LogMessageId1Param.EXCEPTION_COULD_NOT_CACHE_VALUE_FOR_KEY, key, e);
+            value = null;
+        }
+
+        return value;
+    }
+
+    @Override
+    public FSCacheValue get(String key) {
+        return _store.get(key);
+    }
+
+    /**
+     * @return the number of values in the cache.
+     */
+    public int size() {
+        return _store.size();
+    }
+
+    /**
+     * Writes the cache to its file if values were added since it was loaded or last saved.
+     * The file is replaced atomically where the file system supports it, so
+     * concurrent processes never read a partly written file.
+     */
+    public synchronized void save() {
+        if (!_dirty) {
+            return;
+        }
+
+        _dirty = false;
+        File temp = new File(_file.getPath() + ".tmp");
+
+        try {
+            try (OutputStream os = Files.newOutputStream(temp.toPath());
+                 DataOutputStream out = new DataOutputStream(new BufferedOutputStream(os))) {
+
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+
+                for (Map.Entry<String, FSCacheValue> entry : _store.entrySet()) {
+                    if (entry.getValue() instanceof PdfBoxRawPDFontMetrics) {
+                        PdfBoxRawPDFontMetrics m = (PdfBoxRawPDFontMetrics) entry.getValue();
+                        ByteArrayOutputStream bytes = new ByteArrayOutputStream(FONT_METRICS_LENGTH);
+                        DataOutputStream value = new DataOutputStream(bytes);
+
+                        value.writeFloat(m._ascent);
+                        value.writeFloat(m._descent);
+                        value.writeFloat(m._strikethroughOffset);
+                        value.writeFloat(m._strikethroughThickness);
+                        value.writeFloat(m._underlinePosition);
+                        value.writeFloat(m._underlineThickness);
+
+                        out.writeBoolean(true);
+                        out.writeUTF(entry.getKey());
+                        out.writeInt(TYPE_FONT_METRICS);
+                        out.writeInt(bytes.size());
+                        bytes.writeTo(out);
+                    }
+                }
+
+                for (Map.Entry<String, RawValue> entry : _unknown.entrySet()) {
+                    if (!_store.containsKey(entry.getKey())) {
+                        out.writeBoolean(true);
+                        out.writeUTF(entry.getKey());
+                        out.writeInt(entry.getValue()._type);
+                        out.writeInt(entry.getValue()._bytes.length);
+                        out.write(entry.getValue()._bytes);
+                    }
+                }
+
+                out.writeBoolean(false);
+            }
+
+            try {
+                Files.move(temp.toPath(), _file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp.toPath(), _file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException e) {
+            XRLog.log(Level.WARNING, LogMessageId.LogMessageId1Param.LOAD_COULD_NOT_SAVE_CACHE_FILE, _file, e);
+            temp.delete();
+            _dirty = true;
+        }
+    }
+
+    /**
+     * Saves the cache, see {@link #save()}. The cache may still be used after it is closed.
+     */
+    @Override
+    public void close() {
+        save();
+    }
+
+    private void read() {
+        if (!_file.isFile()) {
+            return;
+        }
+
+        try (InputStream is = Files.newInputStream(_file.toPath());
+             DataInputStream in = new DataInputStream(new BufferedInputStream(is))) {
+
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                return;
+            }
+
+            while (in.readBoolean()) {
+                String key = in.readUTF();
+                int type = in.readInt();
+                int length = in.readInt();
+
+                if (length < 0 || length > MAX_VALUE_LENGTH) {
+                    throw new IOException("Invalid value length: " + length);
+                }
+
+                if (type == TYPE_FONT_METRICS && length == FONT_METRICS_LENGTH) {
+                    _store.put(key, new PdfBoxRawPDFontMetrics(
+                            in.readFloat(), in.readFloat(), in.readFloat(),
+                            in.readFloat(), in.readFloat(), in.readFloat()));
+                } else if (type == TYPE_FONT_METRICS) {
+                    // Not a record we wrote, drop it on the next save.
+                    _dirty = true;
+                    skipFully(in, length);
+                } else {
+                    // From a later version, keep it so saving does not lose it.
+                    byte[] bytes = new byte[length];
+                    in.readFully(bytes);
+                    _unknown.put(key, new RawValue(type, bytes));
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            // Corrupt or truncated, start with what was read so far and
+            // rewrite the file on the next save.
+            XRLog.log(Level.WARNING, LogMessageId.LogMessageId1Param.LOAD_COULD_NOT_READ_CACHE_FILE, _file, e);
+            _dirty = true;
+        }
+    }
+
+    private static void skipFully(DataInputStream in, int length) throws IOException {
+        int skipped = 0;
+        while (skipped < length) {
+            int n = in.skipBytes(length - skipped);
+            if (n <= 0) {
+                throw new EOFException();
+            }
+            skipped += n;
+        }
+    }
+
+    private static final class RawValue {
+        private final int _type;
+        private final byte[] _bytes;
+
+        RawValue(int type, byte[] bytes) {
+            this._type = type;
+            this._bytes = bytes;
+        }
+    }
+}
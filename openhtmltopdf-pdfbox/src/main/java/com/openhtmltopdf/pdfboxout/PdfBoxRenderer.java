@@ -48,11 +48,13 @@ import com.openhtmltopdf.render.ViewportBox;
 import com.openhtmltopdf.render.displaylist.DisplayListCollector;
 import com.openhtmltopdf.render.displaylist.DisplayListContainer;
 import com.openhtmltopdf.render.displaylist.DisplayListPainter;
+import com.openhtmltopdf.render.displaylist.PaintedBoxReleaser;
 import com.openhtmltopdf.render.displaylist.PagedBoxCollector;
 import com.openhtmltopdf.render.displaylist.DisplayListContainer.DisplayListPageContainer;
 import com.openhtmltopdf.resource.XMLResource;
 import com.openhtmltopdf.simple.extend.XhtmlNamespaceHandler;
 import com.openhtmltopdf.util.LogMessageId;
+import com.openhtmltopdf.util.ResourceBudget;
 import com.openhtmltopdf.util.ThreadCtx;
 import com.openhtmltopdf.util.XRLog;
 
@@ -88,6 +90,7 @@ import java.util.Calendar;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.List;
+import java.util.concurrent.Executor;
 import java.util.logging.Level;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
@@ -134,6 +137,16 @@ public class PdfBoxRenderer implements Closeable, PageSupplier {
     private byte _defaultTextDirection = BidiSplitter.LTR;
     private BidiReorderer _reorderer;
     private final boolean _useFastMode;
+    private final int _displayListPageWindow;
+    private final PdfBoxPageCompressor _pageCompressor;
+    private final Executor _fontSubsetExecutor;
+    private final boolean _releasePaintedBoxes;
+
+    /**
+     * Whether this renderer is appending a later part of a multi-document PDF, in which
+     * case the document information and metadata of the first part are kept.
+     */
+    private final boolean _isAppendedPart;
 
     private PageSupplier _pageSupplier;
 
@@ -147,7 +160,14 @@ public class PdfBoxRenderer implements Closeable, PageSupplier {
 
         this.diagnosticConsumer = diagnosticConsumer;
 
-        _pdfDoc = state.pddocument != null ? state.pddocument : new PDDocument();
+        if (state.pddocument != null) {
+            _pdfDoc = state.pddocument;
+        } else if (state._memoryUsageSetting != null) {
+            _pdfDoc = new PDDocument(state._memoryUsageSetting);
+        } else {
+            _pdfDoc = new PDDocument();
+        }
+
         _pdfDoc.setVersion(state._pdfVersion);
 
         _producer = state._producer;
@@ -164,6 +184,16 @@ public class PdfBoxRenderer implements Closeable, PageSupplier {
         _dotsPerPoint = DEFAULT_DOTS_PER_POINT;
         _testMode = state._testMode;
         _useFastMode = state._useFastRenderer;
+        _displayListPageWindow = state._displayListPageWindow;
+        _pageCompressor = state._pageCompressionExecutor != null && !_testMode ?
+                new PdfBoxPageCompressor(state._pageCompressionExecutor) : null;
+        _fontSubsetExecutor = state._fontSubsetExecutor;
+
+        boolean accessible = state._pdfUaConform || state._pdfAConformance.getConformanceValue().equals("A");
+        if (state._releasePaintedBoxes && accessible) {
+            XRLog.log(Level.WARNING, LogMessageId.LogMessageId0Param.GENERAL_PDF_RELEASE_PAINTED_BOXES_NOT_SUPPORTED_WITH_ACCESSIBILITY);
+        }
+        _releasePaintedBoxes = state._releasePaintedBoxes && state._useFastRenderer && !accessible;
         _outputDevice = state._useFastRenderer ? 
                 new PdfBoxFastOutputDevice(DEFAULT_DOTS_PER_POINT, _testMode,
                         state._pdfUaConform || state._pdfAConformance.getConformanceValue().equals("A"),
@@ -171,9 +201,14 @@ public class PdfBoxRenderer implements Closeable, PageSupplier {
                 new PdfBoxSlowOutputDevice(DEFAULT_DOTS_PER_POINT, _testMode);
         _outputDevice.setWriter(_pdfDoc);
         _outputDevice.setStartPageNo(_pdfDoc.getNumberOfPages());
+        _isAppendedPart = state._sharedResources != null && _pdfDoc.getNumberOfPages() > 0;
         
         PdfBoxUserAgent userAgent = new PdfBoxUserAgent(_outputDevice);
 
+        if (state._sharedResources != null) {
+            userAgent.setPdfImageCache(state._sharedResources.getImageCache());
+        }
+
         if (_svgImpl != null) {
             _svgImpl.withUserAgent(userAgent);
         }
@@ -192,19 +227,24 @@ public class PdfBoxRenderer implements Closeable, PageSupplier {
         
         _sharedContext._preferredTransformerFactoryImplementationClass = state._preferredTransformerFactoryImplementationClass;
         _sharedContext._preferredDocumentBuilderFactoryImplementationClass = state._preferredDocumentBuilderFactoryImplementationClass;
+        _sharedContext.setCancellationToken(state._cancellationToken);
+        _sharedContext.setResourceBudget(new ResourceBudget(state._maxPages, state._maxBoxes, state._maxResourceBytes, state._maxImagePixels));
+        userAgent.setResourceBudget(_sharedContext.getResourceBudget());
         
         _sharedContext.setUserAgentCallback(userAgent);
         _sharedContext.setCss(new StyleReference(userAgent));
+        _sharedContext.getCss().setStylesheetCache(state._caches.get(CacheStore.PARSED_STYLESHEETS));
+        _sharedContext.getCss().setStyleDeclarationCache(state._styleDeclarationCache);
         userAgent.setSharedContext(_sharedContext);
         _outputDevice.setSharedContext(_sharedContext);
 
-        PdfBoxFontResolver fontResolver = new PdfBoxFontResolver(_sharedContext, _pdfDoc, state._caches.get(CacheStore.PDF_FONT_METRICS), state._pdfAConformance, state._pdfUaConform);
+        PdfBoxFontResolver fontResolver = new PdfBoxFontResolver(_sharedContext, _pdfDoc, state._caches.get(CacheStore.PDF_FONT_METRICS), state._pdfAConformance, state._pdfUaConform, state._sharedResources, state._fontRegistry);
         _sharedContext.setFontResolver(fontResolver);
 
         PdfBoxReplacedElementFactory replacedElementFactory = new PdfBoxReplacedElementFactory(_outputDevice, state._svgImpl, state._objectDrawerFactory, state._mathmlImpl);
         _sharedContext.setReplacedElementFactory(replacedElementFactory);
 
-        _sharedContext.setTextRenderer(new PdfBoxTextRenderer());
+        _sharedContext.setTextRenderer(new PdfBoxTextRenderer(_sharedContext));
         _sharedContext.setDPI(DEFAULT_PDF_POINTS_PER_INCH * _dotsPerPoint);
         _sharedContext.setDotsPerPixel(DEFAULT_DOTS_PER_PIXEL);
         _sharedContext.setPrint(true);
@@ -308,7 +348,7 @@ public class PdfBoxRenderer implements Closeable, PageSupplier {
     
     private void setDocumentFromStringP(String content, String baseUrl) {
         InputSource is = new InputSource(new BufferedReader(new StringReader(content)));
-        Document dom = XMLResource.load(is).getDocument();
+        Document dom = XMLResource.load(is, _sharedContext).getDocument();
         setDocumentP(dom, baseUrl);
     }
     
@@ -417,7 +457,7 @@ public class PdfBoxRenderer implements Closeable, PageSupplier {
     }
 
     /**
-     * @deprecated Doubt this still works as untested.
+     * @deprecated Doubt this still works as untested. Use {@link PdfMultiDocumentRenderer} instead.
      * @throws IOException
      */
     @Deprecated 
@@ -426,7 +466,7 @@ public class PdfBoxRenderer implements Closeable, PageSupplier {
     }
 
     /**
-     * @deprecated Doubt this still works as untested.
+     * @deprecated Doubt this still works as untested. Use {@link PdfMultiDocumentRenderer} instead.
      * @throws IOException
      */
     @Deprecated 
@@ -515,7 +555,7 @@ public class PdfBoxRenderer implements Closeable, PageSupplier {
             if (finish) {
                 fireOnClose();
                 if (success) {
-                    _pdfDoc.save(os);
+                    save(os);
                 }
                 _pdfDoc.close();
                 _pdfDoc = null;
@@ -565,7 +605,7 @@ public class PdfBoxRenderer implements Closeable, PageSupplier {
             if (finish) {
                 fireOnClose();
                 if (success) {
-                    _pdfDoc.save(_os);
+                    save(_os);
                 }
                 _pdfDoc.close();
                 _pdfDoc = null;
@@ -573,6 +613,21 @@ public class PdfBoxRenderer implements Closeable, PageSupplier {
         }
     }
 
+    /**
+     * Subsets embedded fonts, concurrently if a font subset executor was set,
+     * and writes the document to os.
+     */
+    void save(OutputStream os) throws IOException {
+        subsetFonts();
+        _pdfDoc.save(os);
+    }
+
+    private void subsetFonts() throws IOException {
+        if (_fontSubsetExecutor != null) {
+            PdfBoxFontSubsetter.subsetFonts(_pdfDoc, _fontSubsetExecutor);
+        }
+    }
+
     private void firePreOpen() {
         if (_listener != null) {
             _listener.preOpen(this);
@@ -595,8 +650,11 @@ public class PdfBoxRenderer implements Closeable, PageSupplier {
         _outputDevice.setRoot(_root);
         _outputDevice.start(_doc);
         
+        // If compressing pages on another thread, paint uncompressed here.
+        boolean compress = !_testMode && _pageCompressor == null;
+
         PDPage page = _pageSupplier.requestPage(doc, (float) firstPageSize.getWidth(), (float) firstPageSize.getHeight(), 0, -1);
-        PDPageContentStream cs = new PDPageContentStream(doc, page, AppendMode.APPEND, !_testMode);
+        PDPageContentStream cs = new PDPageContentStream(doc, page, AppendMode.APPEND, compress);
         
         _outputDevice.initializePage(cs, page, (float) firstPageSize.getHeight());
         _root.getLayer().assignPagePaintingPositions(c, Layer.PAGED_MODE_PRINT);
@@ -604,70 +662,112 @@ public class PdfBoxRenderer implements Closeable, PageSupplier {
         int pageCount = _root.getLayer().getPages().size();
         c.setPageCount(pageCount);
         firePreWrite(pageCount); // opportunity to adjust meta data
-        setDidValues(doc); // set PDF header fields from meta data
-        
-        if (_pdfUaConformance || _pdfAConformance != PdfAConformance.NONE) {
-            addPdfASchema(doc, _pdfAConformance, _pdfUaConformance);
+
+        if (!_isAppendedPart) {
+            setDidValues(doc); // set PDF header fields from meta data
+
+            if (_pdfUaConformance || _pdfAConformance != PdfAConformance.NONE) {
+                addPdfASchema(doc, _pdfAConformance, _pdfUaConformance);
+            }
         }
         
         DisplayListCollector dlCollector = new DisplayListCollector(_root.getLayer().getPages());
-        DisplayListContainer dlPages = dlCollector.collectRoot(c, _root.getLayer()); 
+        DisplayListContainer dlPages = _displayListPageWindow > 0 ? null : dlCollector.collectRoot(c, _root.getLayer());
+        PaintedBoxReleaser releaser = _releasePaintedBoxes ? new PaintedBoxReleaser(_root.getLayer().getPages()) : null;
 
-        int pdfPageIndex = 0;
+        // Pages already in the document (for example earlier parts) come first.
+        int pdfPageIndex = _outputDevice.getStartPageNo();
         
-        for (int i = 0; i < pageCount; i++) {
-            PageBox currentPage = pages.get(i);
-            currentPage.setBasePagePdfPageIndex(pdfPageIndex);
-            DisplayListPageContainer pageOperations = dlPages.getPageInstructions(i);
-            c.setPage(i, currentPage);
-            c.setShadowPageNumber(-1);
-            paintPageFast(c, currentPage, pageOperations, 0);
-            _outputDevice.finishPage();
-            pdfPageIndex++;
+        try {
+            for (int i = 0; i < pageCount; i++) {
+                _sharedContext.checkCancelled();
+
+                if (_displayListPageWindow > 0 &&
+                    (dlPages == null || i > dlPages.getMaxPage())) {
+                    // Let go of the previous window before collecting the next one.
+                    dlPages = null;
+                    int windowEnd = Math.min(i + _displayListPageWindow, pageCount) - 1;
+                    dlPages = dlCollector.collectRoot(c, _root.getLayer(), i, windowEnd);
+                }
+
+                PageBox currentPage = pages.get(i);
+                currentPage.setBasePagePdfPageIndex(pdfPageIndex);
+                DisplayListPageContainer pageOperations = dlPages.getPageInstructions(i);
+                c.setPage(i, currentPage);
+                c.setShadowPageNumber(-1);
+                paintPageFast(c, currentPage, pageOperations, 0);
+                _outputDevice.finishPage();
+                compressPageLater(page);
+                pdfPageIndex++;
                         
-            if (!pageOperations.shadowPages().isEmpty()) {
-                currentPage.setShadowPageCount(pageOperations.shadowPages().size());
+                if (!pageOperations.shadowPages().isEmpty()) {
+                    currentPage.setShadowPageCount(pageOperations.shadowPages().size());
                 
-                int shadowPageIndex = 0;
-                int pageContentWidth = currentPage.getContentWidth(c);
-                int translateX = pageContentWidth * (currentPage.getCutOffPageDirection() == IdentValue.LTR ? 1 : -1);
-
-                for (DisplayListPageContainer shadowPage : pageOperations.shadowPages()) {
-                    PDPage shadowPdPage = 
-                            _pageSupplier.requestPage(
-                                    doc,
-                                    (float) currentPage.getWidth(c) / _dotsPerPoint, 
-                                    (float) currentPage.getHeight(c) / _dotsPerPoint, i, shadowPageIndex);
+                    int shadowPageIndex = 0;
+                    int pageContentWidth = currentPage.getContentWidth(c);
+                    int translateX = pageContentWidth * (currentPage.getCutOffPageDirection() == IdentValue.LTR ? 1 : -1);
+
+                    for (DisplayListPageContainer shadowPage : pageOperations.shadowPages()) {
+                        _sharedContext.checkCancelled();
+
+                        PDPage shadowPdPage = 
+                                _pageSupplier.requestPage(
+                                        doc,
+                                        (float) currentPage.getWidth(c) / _dotsPerPoint, 
+                                        (float) currentPage.getHeight(c) / _dotsPerPoint, i, shadowPageIndex);
                     
-                    PDPageContentStream shadowCs = new PDPageContentStream(doc, shadowPdPage, AppendMode.APPEND, !_testMode);
-
-                    _outputDevice.initializePage(shadowCs, shadowPdPage, (float) currentPage.getHeight(c) / _dotsPerPoint);
-                    c.setShadowPageNumber(shadowPageIndex);
-                    paintPageFast(c, currentPage, shadowPage, -translateX);
-                    _outputDevice.finishPage();
-                    translateX += (pageContentWidth * (currentPage.getCutOffPageDirection() == IdentValue.LTR ? 1 : -1));
+                        PDPageContentStream shadowCs = new PDPageContentStream(doc, shadowPdPage, AppendMode.APPEND, compress);
+
+                        _outputDevice.initializePage(shadowCs, shadowPdPage, (float) currentPage.getHeight(c) / _dotsPerPoint);
+                        c.setShadowPageNumber(shadowPageIndex);
+                        paintPageFast(c, currentPage, shadowPage, -translateX);
+                        _outputDevice.finishPage();
+                        compressPageLater(shadowPdPage);
+                        translateX += (pageContentWidth * (currentPage.getCutOffPageDirection() == IdentValue.LTR ? 1 : -1));
                     
-                    pdfPageIndex++;
-                    shadowPageIndex++;
+                        pdfPageIndex++;
+                        shadowPageIndex++;
+                    }
+                }
+
+                if (releaser != null) {
+                    releaser.releasePaintedBoxes(c, _root, i);
                 }
-            }
             
-            if (i != pageCount - 1) {
-                PageBox nextPage = pages.get(i + 1);
+                if (i != pageCount - 1) {
+                    PageBox nextPage = pages.get(i + 1);
                 
-                Rectangle2D nextPageSize = new Rectangle2D.Float(0, 0,
-                        nextPage.getWidth(c) / _dotsPerPoint,
-                        nextPage.getHeight(c) / _dotsPerPoint);
+                    Rectangle2D nextPageSize = new Rectangle2D.Float(0, 0,
+                            nextPage.getWidth(c) / _dotsPerPoint,
+                            nextPage.getHeight(c) / _dotsPerPoint);
                 
-                PDPage pageNext = 
-                        _pageSupplier.requestPage(doc, (float) nextPageSize.getWidth(), (float) nextPageSize.getHeight(), i + 1, -1);
+                    PDPage pageNext = 
+                            _pageSupplier.requestPage(doc, (float) nextPageSize.getWidth(), (float) nextPageSize.getHeight(), i + 1, -1);
                 
-                PDPageContentStream csNext = new PDPageContentStream(doc, pageNext, AppendMode.APPEND, !_testMode);
-                _outputDevice.initializePage(csNext, pageNext, (float) nextPageSize.getHeight());
+                    PDPageContentStream csNext = new PDPageContentStream(doc, pageNext, AppendMode.APPEND, compress);
+                    _outputDevice.initializePage(csNext, pageNext, (float) nextPageSize.getHeight());
+                    page = pageNext;
+                }
             }
-        }
         
-        _outputDevice.finish(c, _root);
+            _outputDevice.finish(c, _root);
+
+            if (_pageCompressor != null) {
+                _pageCompressor.awaitAll();
+            }
+        } finally {
+            // Don't leave pages being compressed into a document that is about to be
+            // closed, whether painting failed or was cancelled.
+            if (_pageCompressor != null) {
+                _pageCompressor.awaitAllQuietly();
+            }
+        }
+    }
+
+    private void compressPageLater(PDPage page) {
+        if (_pageCompressor != null) {
+            _pageCompressor.compressLater(page);
+        }
     }
 
     private void writePDF(List<PageBox> pages, RenderingContext c, Rectangle2D firstPageSize, PDDocument doc) throws IOException {
@@ -690,6 +790,8 @@ public class PdfBoxRenderer implements Closeable, PageSupplier {
         }
 
         for (int i = 0; i < pageCount; i++) {
+            _sharedContext.checkCancelled();
+
             PageBox currentPage = pages.get(i);
             
             c.setPage(i, currentPage);
@@ -1074,6 +1176,11 @@ public class PdfBoxRenderer implements Closeable, PageSupplier {
     @Deprecated
     public void cleanup() {
         _outputDevice.close();
+
+        // Close all still open font files, before the diagnostic consumer
+        // so that it receives the font resolution statistics.
+        ((PdfBoxFontResolver)getSharedContext().getFontResolver()).close();
+
         _sharedContext.removeFromThread();
         try {
             diagnosticConsumer.close();
@@ -1081,9 +1188,6 @@ public class PdfBoxRenderer implements Closeable, PageSupplier {
         }
         ThreadCtx.cleanup();
 
-        // Close all still open font files
-        ((PdfBoxFontResolver)getSharedContext().getFontResolver()).close();
-
         if (_svgImpl != null) {
             try {
                 _svgImpl.close();
@@ -63,7 +63,7 @@ public class PdfBoxReplacedElementFactory implements ReplacedElementFactory {
                 //handle the case of linked svg from img tag
                 boolean isDataImageSvg = false;
                 if (_svgImpl != null && (srcAttr.endsWith(".svg") || (isDataImageSvg = srcAttr.startsWith("data:image/svg+xml;base64,")))) {
-                    XMLResource xml = isDataImageSvg ? XMLResource.load(new ByteArrayInputStream(ImageUtil.getEmbeddedBase64Image(srcAttr))) : uac.getXMLResource(srcAttr, ExternalResourceType.XML_SVG);
+                    XMLResource xml = isDataImageSvg ? XMLResource.load(new ByteArrayInputStream(ImageUtil.getEmbeddedBase64Image(srcAttr)), c.getSharedContext()) : uac.getXMLResource(srcAttr, ExternalResourceType.XML_SVG);
 
                     if (xml != null) {
                         Element svg = xml.getDocument().getDocumentElement();
@@ -0,0 +1,86 @@
+package com.openhtmltopdf.pdfboxout;
+
+import java.io.Closeable;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+
+import org.apache.pdfbox.pdmodel.font.PDFont;
+
+import com.openhtmltopdf.extend.FSSupplier;
+import com.openhtmltopdf.resource.ImageResource;
+
+/**
+ * Fonts and images shared by all parts of a multi-document PDF, see {@link PdfMultiDocumentRenderer}.
+ * Each font is loaded (and subset on save) once for the whole document and each image is
+ * stored as a single XObject, however many parts use it.
+ * <br><br>
+ * Font collections are opened here rather than by each part, as the parts' fonts read from
+ * them until the whole document is saved. They are closed by {@link #close()}.
+ * <br><br>
+ * Parts are rendered one after another so this class is not thread safe.
+ */
+final class PdfBoxSharedResources implements Closeable {
+    private final Map<FontKey, PDFont> _fonts = new HashMap<>();
+    private final Map<String, ImageResource> _images = new HashMap<>();
+    private final PdfBoxFontCollections _fontCollections = new PdfBoxFontCollections();
+
+    /**
+     * Returns the font previously loaded from source or loads it with loader.
+     * If loader returns null, nothing is cached so a later part may try again.
+     *
+     * @param source identifies where the font comes from, such as a file, supplier or resolved uri.
+     */
+    PDFont getFont(Object source, boolean subset, FSSupplier<PDFont> loader) {
+        return _fonts.computeIfAbsent(new FontKey(source, subset), key -> loader.supply());
+    }
+
+    /**
+     * The image cache, keyed by resolved uri.
+     */
+    Map<String, ImageResource> getImageCache() {
+        return _images;
+    }
+
+    /**
+     * Font collections, open until this is closed.
+     */
+    PdfBoxFontCollections getFontCollections() {
+        return _fontCollections;
+    }
+
+    /**
+     * Closes the font collections. The document must already be saved.
+     */
+    @Override
+    public void close() {
+        _fontCollections.close();
+    }
+
+    private static final class FontKey {
+        private final Object _source;
+        private final boolean _subset;
+
+        FontKey(Object source, boolean subset) {
+            this._source = source;
+            this._subset = subset;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(_source, _subset);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof FontKey)) {
+                return false;
+            }
+            FontKey other = (FontKey) obj;
+            return _subset == other._subset && _source.equals(other._source);
+        }
+    }
+}
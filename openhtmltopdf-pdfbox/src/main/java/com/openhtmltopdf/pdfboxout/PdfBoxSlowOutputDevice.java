@@ -375,26 +375,21 @@ public class PdfBoxSlowOutputDevice extends AbstractOutputDevice implements Outp
     }
 
     public void drawString(String s, float x, float y, JustificationInfo info) {
-        PDFont firstFont = _font.getFontDescription().get(0).getFont();
+        FontDescription firstFont = _font.getFontDescription().get(0);
 
         // First check if the string will print with the current font entirely.
-        try {
-            firstFont.getStringWidth(s);
-            // We got here, so all is good.
-            drawStringFast(s, x, y, info, _font.getFontDescription().get(0), _font.getSize2D());
+        if (firstFont.hasGlyphs(s)) {
+            drawStringFast(s, x, y, info, firstFont, _font.getSize2D());
             return;
-        } 
-        catch (Exception e) {
-            // Fallthrough, we'll have to process the string into font runs.
         }
-        
-        List<FontRun> fontRuns = PdfBoxTextRenderer.divideIntoFontRuns(_font, s, _reorderer);
+
+        List<FontRun> fontRuns = PdfBoxTextRenderer.divideIntoFontRuns(_font, s, _reorderer, _sharedContext.getReplacementText());
         
         float xOffset = 0f;
         for (FontRun run : fontRuns) {
             drawStringFast(run.str, x + xOffset, y, info, run.des, _font.getSize2D());
             try {
-                xOffset += (run.des.getFont().getStringWidth(run.str) / 1000f) * _font.getSize2D();
+                xOffset += (run.des.getStringWidth(run.str) / 1000f) * _font.getSize2D();
             } catch (Exception e) {
                 XRLog.log(Level.WARNING, LogMessageId.LogMessageId0Param.RENDER_BUG_FONT_DIDNT_CONTAIN_EXPECTED_CHARACTER, e);
             }
@@ -28,6 +28,7 @@ import com.openhtmltopdf.bidi.BidiReorderer;
 import com.openhtmltopdf.extend.FontContext;
 import com.openhtmltopdf.extend.OutputDevice;
 import com.openhtmltopdf.extend.TextRenderer;
+import com.openhtmltopdf.layout.SharedContext;
 import com.openhtmltopdf.pdfboxout.PdfBoxFontResolver.FontDescription;
 import com.openhtmltopdf.pdfboxout.PdfBoxSlowOutputDevice.FontRun;
 import com.openhtmltopdf.render.FSFont;
@@ -42,7 +43,21 @@ public class PdfBoxTextRenderer implements TextRenderer {
     private static float TEXT_MEASURING_DELTA = 0.01f;
 
     private BidiReorderer _reorderer;
-    
+    private final SharedContext _sharedContext;
+
+    /**
+     * @deprecated Use {@link #PdfBoxTextRenderer(SharedContext)} so that the replacement
+     * text is not looked up from the shared context registered with the current thread.
+     */
+    @Deprecated
+    public PdfBoxTextRenderer() {
+        this(null);
+    }
+
+    public PdfBoxTextRenderer(SharedContext sharedContext) {
+        this._sharedContext = sharedContext;
+    }
+
     public void setup(FontContext context, BidiReorderer reorderer) {
         this._reorderer = reorderer;
     }
@@ -136,39 +151,26 @@ public class PdfBoxTextRenderer implements TextRenderer {
         return c == ' ' || c == '\u00a0' || c == '\u3000';
     }
     
-    private static ReplacementChar getReplacementChar(FSFont font) {
-        String replaceStr = ThreadCtx.get().sharedContext().getReplacementText();
+    private static ReplacementChar getReplacementChar(FSFont font, String replaceStr) {
         List<FontDescription> descriptions = ((PdfBoxFSFont) font).getFontDescription();
         
         for (FontDescription des : descriptions) {
-            try {
-                des.getFont().getStringWidth(replaceStr);
-
-                // Got here without throwing, so the text exists in font.
+            if (des.hasGlyphs(replaceStr)) {
                 ReplacementChar replace = new ReplacementChar();
                 replace.replacement = replaceStr;
                 replace.fontDescription = des;
                 return replace;
-            } catch (Exception e)
-            {
-                // Could not use replacement character in this font.
             }
         }
 
         // Still haven't found a font supporting our replacement text, try space character.
         replaceStr = " ";
         for (FontDescription des : descriptions) {
-            try {
-                des.getFont().getStringWidth(replaceStr);
-
-                // Got here without throwing, so the char exists in font.
+            if (des.hasGlyph(' ')) {
                 ReplacementChar replace = new ReplacementChar();
                 replace.replacement = " ";
                 replace.fontDescription = des;
                 return replace;
-            } catch (Exception e)
-            {
-                // Could not use space in this font!
             }
         }
     
@@ -180,9 +182,21 @@ public class PdfBoxTextRenderer implements TextRenderer {
         return replace;
     }
     
+    /**
+     * @deprecated Use {@link #divideIntoFontRuns(FSFont, String, BidiReorderer, String)}.
+     */
+    @Deprecated
     public static List<FontRun> divideIntoFontRuns(FSFont font, String str, BidiReorderer reorderer) {
+        return divideIntoFontRuns(font, str, reorderer, ThreadCtx.get().sharedContext().getReplacementText());
+    }
+
+    /**
+     * Splits str into runs that can each be drawn with one font from font's font
+     * list, using replacementText for characters that no font contains.
+     */
+    public static List<FontRun> divideIntoFontRuns(FSFont font, String str, BidiReorderer reorderer, String replacementText) {
         StringBuilder sb = new StringBuilder();
-        ReplacementChar replace = PdfBoxTextRenderer.getReplacementChar(font);
+        ReplacementChar replace = PdfBoxTextRenderer.getReplacementChar(font, replacementText);
         List<FontDescription> fonts = ((PdfBoxFSFont) font).getFontDescription();
         List<FontRun> runs = new ArrayList<>();
         FontRun current = new FontRun();
@@ -190,7 +204,6 @@ public class PdfBoxTextRenderer implements TextRenderer {
         for (int i = 0; i < str.length(); ) {
             int unicode = str.codePointAt(i);
             i += Character.charCount(unicode);
-            String ch = String.valueOf(Character.toChars(unicode));
 
             if (!OpenUtil.isSafeFontCodePointToPrint(unicode)) {
                 // Filter out characters that should never be visible (such
@@ -198,70 +211,54 @@ public class PdfBoxTextRenderer implements TextRenderer {
                 continue;
             }
 
-            boolean gotChar = false;
-            
-            FONT_LOOP:
+            FontDescription found = null;
+            String deshaped = null;
+            boolean useDeshaped = false;
+
             for (FontDescription des : fonts) {
-                try {
-                    des.getFont().getStringWidth(ch);
-                    // We got here, so this font has this character.
-                    if (current.des == null) {
-                        // First character of run.
-                        current.des = des;
-                    }
-                    else if (des != current.des) {
-                        // We have changed font, so we'll start a new font run.
-                        current.str = sb.toString();
-                        runs.add(current);
-                        current = new FontRun();
-                        current.des = des;
-                        sb = new StringBuilder();
+                if (des.hasGlyph(unicode)) {
+                    found = des;
+                    break;
+                } else if (reorderer.isLiveImplementation()) {
+                    // Character is not in font! Next, we try deshaping.
+                    if (deshaped == null) {
+                        deshaped = reorderer.deshapeText(new String(Character.toChars(unicode)));
                     }
 
-                    if (isJustificationSpace(unicode)) {
-                        current.spaceCharacterCount++;
-                    } else {
-                        current.otherCharacterCount++;
+                    if (des.hasGlyphs(deshaped)) {
+                        found = des;
+                        useDeshaped = true;
+                        break;
                     }
-                    
-                    sb.append(ch);
-                    gotChar = true;
-                    break;
                 }
-                catch (Exception e1) {
-                    if (reorderer.isLiveImplementation()) {
-                        // Character is not in font! Next, we try deshaping.
-                        String deshaped = reorderer.deshapeText(ch);
-                        try {
-                            des.getFont().getStringWidth(deshaped);
-                            // We got here, so this font has this deshaped character.
-                            if (current.des == null) {
-                                // First character of run.
-                                current.des = des;
-                            }
-                            else if (des != current.des) {
-                                // We have changed font, so we'll start a new font run.
-                                current.str = sb.toString();
-                                runs.add(current);
-                                current = new FontRun();
-                                current.des = des;
-                                sb = new StringBuilder();
-                            }
-                            
-                            if (isJustificationSpace(unicode)) {
-                                current.spaceCharacterCount++;
-                            } else {
-                                current.otherCharacterCount++;
-                            }
-                            
-                            sb.append(deshaped);
-                            gotChar = true;
-                            break FONT_LOOP;
-                        }
-                        catch (Exception e2) {
-                            // Keep trying with next font.
-                        }
-                    }
+            }
+
+            boolean gotChar = found != null;
+
+            if (gotChar) {
+                if (current.des == null) {
+                    // First character of run.
+                    current.des = found;
+                }
+                else if (found != current.des) {
+                    // We have changed font, so we'll start a new font run.
+                    current.str = sb.toString();
+                    runs.add(current);
+                    current = new FontRun();
+                    current.des = found;
+                    sb = new StringBuilder();
+                }
+
+                if (isJustificationSpace(unicode)) {
+                    current.spaceCharacterCount++;
+                } else {
+                    current.otherCharacterCount++;
+                }
+
+                if (useDeshaped) {
+                    sb.append(deshaped);
+                } else {
+                    sb.appendCodePoint(unicode);
                 }
             }
 
@@ -306,12 +303,15 @@ public class PdfBoxTextRenderer implements TextRenderer {
     }
     
     private float getStringWidthSlow(FSFont bf, String str) {
-        List<FontRun> runs = divideIntoFontRuns(bf, str, _reorderer);
+        String replacementText = _sharedContext != null ?
+                _sharedContext.getReplacementText() :
+                ThreadCtx.get().sharedContext().getReplacementText();
+        List<FontRun> runs = divideIntoFontRuns(bf, str, _reorderer, replacementText);
         float strWidth = 0;
         
         for (FontRun run : runs) {
             try {
-                strWidth += run.des.getFont().getStringWidth(run.str);
+                strWidth += run.des.getStringWidth(run.str);
             } catch (Exception e) {
                 XRLog.log(Level.WARNING, LogMessageId.LogMessageId0Param.RENDER_BUG_FONT_DIDNT_CONTAIN_EXPECTED_CHARACTER, e);
             }
@@ -334,7 +334,13 @@ public class PdfBoxTextRenderer implements TextRenderer {
               // Go through the list of font descriptions
               for (FontDescription fd : ((PdfBoxFSFont) font).getFontDescription()) {
                  if (fd.getFont() != null) {
-                   result = fd.getFont().getStringWidth(effectiveString) / 1000f * font.getSize2D();
+                   if (fd.hasGlyphs(effectiveString)) {
+                       result = fd.getStringWidth(effectiveString) / 1000f * font.getSize2D();
+                   } else {
+                       // Some characters are not in the first font, so divide the string
+                       // into runs with the font list and measure each run instead.
+                       result = getStringWidthSlow(font, effectiveString) / 1000f * font.getSize2D();
+                   }
                    break;
                  } else {
                      XRLog.log(Level.WARNING, LogMessageId.LogMessageId0Param.RENDER_FONT_IS_NULL);
@@ -342,8 +348,7 @@ public class PdfBoxTextRenderer implements TextRenderer {
               }
             }
         } catch (IllegalArgumentException e2) {
-            // PDFont::getStringWidth throws an IllegalArgumentException if the character doesn't exist in the font.
-            // So we do it one character by character instead.
+            // Coverage said the font had every glyph but PDFBox could not encode one.
             result = getStringWidthSlow(font, effectiveString) / 1000f * font.getSize2D();
         } catch (IOException e) {
             throw new PdfContentStreamAdapter.PdfException("getWidth", e);
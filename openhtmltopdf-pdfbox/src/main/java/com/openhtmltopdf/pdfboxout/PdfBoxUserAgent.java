@@ -24,24 +24,34 @@ import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.Locale;
+import java.util.Map;
 import java.util.logging.Level;
 
-import com.openhtmltopdf.layout.SharedContext;
 import com.openhtmltopdf.resource.ImageResource;
 import com.openhtmltopdf.swing.NaiveUserAgent;
 import com.openhtmltopdf.util.LogMessageId;
+import com.openhtmltopdf.util.ResourceLimitExceededException;
 import com.openhtmltopdf.util.XRLog;
 
 public class PdfBoxUserAgent extends NaiveUserAgent {
-    private SharedContext _sharedContext;
 
     private final PdfBoxOutputDevice _outputDevice;
 
+    private Map<String, ImageResource> _pdfImageCache = _imageCache;
+
     public PdfBoxUserAgent(PdfBoxOutputDevice outputDevice) {
 		super();
 		_outputDevice = outputDevice;
     }
 
+    /**
+     * Sets the cache for images realized as PDF XObjects, so that images can
+     * be shared with other renderers writing to the same PDF document.
+     */
+    void setPdfImageCache(Map<String, ImageResource> imageCache) {
+        _pdfImageCache = imageCache;
+    }
+
     private byte[] readStream(InputStream is) throws IOException {
         ByteArrayOutputStream out = new ByteArrayOutputStream(is.available());
         byte[] buf = new byte[10240];
@@ -61,7 +71,7 @@ public class PdfBoxUserAgent extends NaiveUserAgent {
            return new ImageResource(uriStr, null);
         }
         
-        ImageResource resource = _imageCache.get(uriResolved);
+        ImageResource resource = _pdfImageCache.get(uriResolved);
         
         if (resource != null && resource.getImage() instanceof PdfBoxImage) {
             // Make copy of PdfBoxImage so we don't stuff up the cache.
@@ -88,11 +98,14 @@ public class PdfBoxUserAgent extends NaiveUserAgent {
                 } else {
                     byte[] imgBytes = readStream(is);
                     PdfBoxImage fsImage = new PdfBoxImage(imgBytes, uriStr);
+                    _resourceBudget.checkImagePixels(fsImage.getWidth(), fsImage.getHeight());
                     scaleToOutputResolution(fsImage);
                     _outputDevice.realizeImage(fsImage);
                     resource = new ImageResource(uriResolved, fsImage);
                 }
-                _imageCache.put(uriResolved, resource);
+                _pdfImageCache.put(uriResolved, resource);
+            } catch (ResourceLimitExceededException e) {
+                throw e;
             } catch (Exception e) {
                 XRLog.log(Level.WARNING, LogMessageId.LogMessageId1Param.EXCEPTION_CANT_READ_IMAGE_FILE_FOR_URI, uriStr, e);
             } finally {
@@ -114,17 +127,9 @@ public class PdfBoxUserAgent extends NaiveUserAgent {
     }
 
     private void scaleToOutputResolution(PdfBoxImage image) {
-        float factor = _sharedContext.getDotsPerPixel();
+        float factor = getSharedContext().getDotsPerPixel();
         if (factor != 1.0f) {
             image.scale((int) (image.getWidth() * factor), (int) (image.getHeight() * factor));
         }
     }
-
-    public SharedContext getSharedContext() {
-        return _sharedContext;
-    }
-
-    public void setSharedContext(SharedContext sharedContext) {
-        _sharedContext = sharedContext;
-    }
 }
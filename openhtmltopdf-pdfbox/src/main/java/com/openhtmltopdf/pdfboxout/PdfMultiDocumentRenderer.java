@@ -0,0 +1,154 @@
+package com.openhtmltopdf.pdfboxout;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.w3c.dom.Document;
+
+import com.openhtmltopdf.util.ThreadCtx;
+
+/**
+ * Lays out and paints many documents in turn into a single PDF using the fast renderer.
+ * Create with {@link PdfRendererFactory#buildMultiDocumentRenderer(OutputStream)}.
+ * <br><br>
+ * Each part is laid out and painted on its own, with its own page numbering, and its pages are
+ * appended after those of the previous parts. All parts share one PDF document so fonts
+ * (including <code>@font-face</code> fonts with the same resolved uri) are embedded and subset
+ * once for the whole document and images with the same resolved uri are stored once.
+ * Bookmarks of every part are added to the document outline.
+ * <br><br>
+ * The document information and metadata are taken from the first part. PDF/UA and
+ * PDF/A-a (accessible) output is not supported and interactive forms should only be
+ * used in one part.
+ * <br><br>
+ * Usage:
+ * <pre>
+ * try (PdfMultiDocumentRenderer multi = factory.buildMultiDocumentRenderer(os)) {
+ *     for (String html : parts) {
+ *         multi.append(html, baseUri);
+ *     }
+ *     multi.finish();
+ * }
+ * </pre>
+ * This class is not thread safe. Parts must be appended one at a time.
+ */
+public class PdfMultiDocumentRenderer implements Closeable {
+    private final PdfRendererBuilderState _state;
+    private final OutputStream _os;
+    private final PdfBoxSharedResources _resources = new PdfBoxSharedResources();
+    private PDDocument _pdfDoc;
+    private int _partCount;
+
+    PdfMultiDocumentRenderer(PdfRendererBuilderState state, OutputStream os) {
+        if (state._pdfUaConform || state._pdfAConformance.getConformanceValue().equals("A")) {
+            throw new IllegalStateException("Multi-document rendering does not support PDF/UA or PDF/A-a output");
+        }
+
+        this._state = state;
+        this._os = os;
+        this._pdfDoc = state._memoryUsageSetting != null ?
+                new PDDocument(state._memoryUsageSetting) :
+                new PDDocument();
+    }
+
+    /**
+     * Lays out the HTML (or XHTML) document and appends its pages to the PDF.
+     *
+     * @param html the HTML (or XHTML) document as a string
+     * @param baseUri the base uri to resolve relative resources against
+     */
+    public void append(String html, String baseUri) throws IOException {
+        PdfRendererBuilderState state = createPartState(baseUri);
+        state._html = html;
+
+        append(state);
+    }
+
+    /**
+     * Lays out the W3C document and appends its pages to the PDF.
+     *
+     * @param doc the document to render
+     * @param baseUri the base uri to resolve relative resources against
+     */
+    public void append(Document doc, String baseUri) throws IOException {
+        PdfRendererBuilderState state = createPartState(baseUri);
+        state._document = doc;
+
+        append(state);
+    }
+
+    /**
+     * @return the number of parts appended so far
+     */
+    public int getPartCount() {
+        return _partCount;
+    }
+
+    /**
+     * Returns the PDF document the parts are appended to, for post-processing,
+     * or null if it has been closed.
+     */
+    public PDDocument getPdfDocument() {
+        return _pdfDoc;
+    }
+
+    /**
+     * Saves the PDF to the output stream. The caller is responsible for closing the
+     * output stream and must still call {@link #close()}.
+     */
+    public void finish() throws IOException {
+        if (_pdfDoc == null) {
+            throw new IllegalStateException("The PDF document has already been closed");
+        }
+        if (_partCount == 0) {
+            throw new IllegalStateException("No documents have been appended");
+        }
+
+        if (_state._fontSubsetExecutor != null) {
+            PdfBoxFontSubsetter.subsetFonts(_pdfDoc, _state._fontSubsetExecutor);
+        }
+
+        _pdfDoc.save(_os);
+    }
+
+    /**
+     * Closes the PDF document and the font collections its parts use. MUST be called
+     * after finishing with this renderer.
+     */
+    @Override
+    public void close() throws IOException {
+        if (_pdfDoc != null) {
+            try {
+                _pdfDoc.close();
+            } finally {
+                _pdfDoc = null;
+                _resources.close();
+            }
+        }
+    }
+
+    private PdfRendererBuilderState createPartState(String baseUri) {
+        if (_pdfDoc == null) {
+            throw new IllegalStateException("The PDF document has already been closed");
+        }
+
+        PdfRendererBuilderState state = _state.copy();
+        state._baseUri = baseUri;
+        state._useFastRenderer = true;
+        state.pddocument = _pdfDoc;
+        state._sharedResources = _resources;
+        return state;
+    }
+
+    private void append(PdfRendererBuilderState state) throws IOException {
+        try (Closeable d = ThreadCtx.applyDiagnosticConsumer(state._diagnosticConsumer);
+             PdfBoxRenderer renderer = PdfRendererBuilder.createRenderer(state, d)) {
+            renderer.layout();
+            renderer.createPDFWithoutClosing();
+        }
+
+        _partCount++;
+    }
+}
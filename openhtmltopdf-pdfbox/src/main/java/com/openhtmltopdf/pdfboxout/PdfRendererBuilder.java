@@ -1,7 +1,9 @@
 package com.openhtmltopdf.pdfboxout;
 
+import com.openhtmltopdf.context.StyleDeclarationCache;
 import com.openhtmltopdf.css.constants.IdentValue;
 import com.openhtmltopdf.extend.*;
+import com.openhtmltopdf.extend.impl.FSDefaultCacheStore;
 import com.openhtmltopdf.extend.impl.FSNoOpCacheStore;
 import com.openhtmltopdf.outputdevice.helper.AddedFont;
 import com.openhtmltopdf.outputdevice.helper.BaseDocument;
@@ -13,13 +15,17 @@ import com.openhtmltopdf.render.FSFont;
 import com.openhtmltopdf.util.LogMessageId;
 import com.openhtmltopdf.util.XRLog;
 
+import org.apache.pdfbox.io.MemoryUsageSetting;
 import org.apache.pdfbox.pdmodel.PDDocument;
 
 import java.awt.FontFormatException;
 import java.io.Closeable;
+import java.io.File;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.util.EnumSet;
+import java.util.Map;
+import java.util.concurrent.Executor;
 import java.util.logging.Level;
 
 public class PdfRendererBuilder extends BaseRendererBuilder<PdfRendererBuilder, PdfRendererBuilderState> {
@@ -58,6 +64,48 @@ public class PdfRendererBuilder extends BaseRendererBuilder<PdfRendererBuilder,
 	}
 
 	public PdfBoxRenderer buildPdfRenderer(Closeable diagnosticConsumer) {
+		return createRenderer(state, diagnosticConsumer);
+	}
+
+	/**
+	 * Builds a thread-safe, reusable factory from the current settings of this builder,
+	 * see {@link PdfRendererFactory}. The document and output settings of this builder are
+	 * ignored and later changes to this builder do not affect the factory.
+	 *
+	 * @return a factory to create renderers for many documents with the same settings.
+	 * @throws IllegalStateException if a PDDocument has been set with {@link #usePDDocument(PDDocument)}
+	 */
+	public PdfRendererFactory buildFactory() {
+		if (state.pddocument != null) {
+			throw new IllegalStateException("A factory can not be used with a supplied PDDocument");
+		}
+
+		PdfRendererBuilderState shared = state.copy();
+		shared._os = null;
+		shared._html = null;
+		shared._document = null;
+		shared._uri = null;
+		shared._file = null;
+		shared._baseUri = null;
+
+		for (CacheStore cacheStore : CacheStore.values()) {
+			if (shared._caches.get(cacheStore) == FSNoOpCacheStore.INSTANCE) {
+				shared._caches.put(cacheStore, new FSDefaultCacheStore());
+			}
+		}
+
+		if (shared._styleDeclarationCache == null) {
+			shared._styleDeclarationCache = new StyleDeclarationCache();
+		}
+
+		return new PdfRendererFactory(shared);
+	}
+
+	/**
+	 * Creates a renderer for the document in state and registers fonts
+	 * with its font resolver and the SVG and MathML implementations.
+	 */
+	static PdfBoxRenderer createRenderer(PdfRendererBuilderState state, Closeable diagnosticConsumer) {
 		UnicodeImplementation unicode = new UnicodeImplementation(state._reorderer, state._splitter, state._lineBreaker,
 				state._unicodeToLowerTransformer, state._unicodeToUpperTransformer, state._unicodeToTitleTransformer, state._textDirection,
 				state._charBreaker);
@@ -146,6 +194,10 @@ public class PdfRendererBuilder extends BaseRendererBuilder<PdfRendererBuilder,
             }
         }
 
+        for (Map.Entry<PdfBoxFontDirectoryIndex, FontGroup> index : state._fontDirectoryIndexes.entrySet()) {
+            resolver.addFontDirectory(index.getKey(), true, index.getValue());
+        }
+
         return renderer;
     }
 
@@ -225,6 +277,31 @@ public class PdfRendererBuilder extends BaseRendererBuilder<PdfRendererBuilder,
 	    return this;
 	}
 
+	/**
+	 * By default, page content streams, images and the other streams that make up the PDF
+	 * are held on the heap until the document is saved at the end of the run. For very large
+	 * documents this method allows these streams to be spilled to a scratch file as each
+	 * page is finished, so that peak heap usage stays roughly constant as the page count grows.
+	 * <br><br>
+	 * Up to <code>maxMainMemoryBytes</code> of stream data is kept in memory, the rest is
+	 * written to a temporary file in <code>tempDirectory</code>. Use zero to write all
+	 * stream data to the scratch file. The scratch file is deleted when the
+	 * document is closed.
+	 * <br><br>
+	 * This setting is ignored if a document is supplied with {@link #usePDDocument(PDDocument)}.
+	 *
+	 * @param tempDirectory directory for the scratch file or null to use the system temp directory
+	 * @param maxMainMemoryBytes maximum stream bytes to keep on the heap before spilling
+	 * @return this for method chaining
+	 */
+	public PdfRendererBuilder usePageStreamSpillFile(File tempDirectory, long maxMainMemoryBytes) {
+	    MemoryUsageSetting setting = maxMainMemoryBytes <= 0 ?
+	            MemoryUsageSetting.setupTempFileOnly() :
+	            MemoryUsageSetting.setupMixed(maxMainMemoryBytes);
+	    state._memoryUsageSetting = setting.setTempDir(tempDirectory);
+	    return this;
+	}
+
 	/**
 	 * Like {@link BaseRendererBuilder#useFont(FSSupplier, String, Integer, FontStyle, boolean)} but
 	 * allows to supply a PDFont directly. Subclass {@link PDFontSupplier} if you need
@@ -265,8 +342,17 @@ public class PdfRendererBuilder extends BaseRendererBuilder<PdfRendererBuilder,
 	     * Caches font metrics, based on a combined key of family name, weight and style.
 	     * Using this cache avoids loading fallback fonts if the metrics are already in the cache
 	     * and the previous fonts contain the needed characters.
+	     * Use a {@link PdfBoxPersistentCacheStore} to keep these metrics across process restarts.
+	     */
+	    PDF_FONT_METRICS,
+
+	    /**
+	     * Caches parsed stylesheets, based on a combined key of origin and uri (plus content for
+	     * inline style elements). Using this cache avoids fetching and parsing the same stylesheets
+	     * for every document. Cached sheets are not fetched again, so external resource access
+	     * controllers are only consulted the first time.
 	     */
-	    PDF_FONT_METRICS;
+	    PARSED_STYLESHEETS;
 	}
 	
 	/**
@@ -308,6 +394,120 @@ public class PdfRendererBuilder extends BaseRendererBuilder<PdfRendererBuilder,
         return this;
     }
 
+    /**
+     * By default, the fast renderer collects the display list (the list of paint operations)
+     * for every page before painting the first page. For large documents this list can
+     * use a lot of memory. This method causes the display list to be collected for
+     * <code>pageWindow</code> pages at a time, just before they are painted, and discarded
+     * once they have been painted.
+     * <br><br>
+     * Each window requires a walk of the entire box tree so a window size of
+     * one page uses the least memory but takes the most time. Use zero (the default)
+     * to collect the display list for all pages up-front.
+     *
+     * @param pageWindow number of pages to collect at a time or zero for all pages
+     * @return this for method chaining.
+     */
+    public PdfRendererBuilder useLazyDisplayListCollection(int pageWindow) {
+        state._displayListPageWindow = pageWindow;
+        return this;
+    }
+
+    /**
+     * Causes the fast renderer to let go of the laid out boxes for content that lies wholly
+     * on pages that have already been painted, so that memory use scales with page size
+     * rather than document size. Links, bookmarks and other anchors keep the boxes
+     * they point to.
+     * <br><br>
+     * Only useful together with {@link #useLazyDisplayListCollection(int)}, otherwise the
+     * display list keeps every box alive until the end. Has no effect on PDF/UA or
+     * PDF/A-a documents as the structure tree is built from the box tree. Once the document
+     * has been written, the renderer's box tree is incomplete and must not be laid out
+     * or painted again.
+     *
+     * @param release whether to release boxes after their pages have been painted
+     * @return this for method chaining.
+     */
+    public PdfRendererBuilder useReleasePaintedBoxes(boolean release) {
+        state._releasePaintedBoxes = release;
+        return this;
+    }
+
+    /**
+     * Allows the fast renderer to use other threads while painting. Page content
+     * streams are painted uncompressed on the calling thread and, as each page is finished,
+     * compressed on the supplied executor while the next page is being painted.
+     * <br><br>
+     * NOTE: Painting itself stays on the calling thread as the box tree, output device and
+     * PDF-BOX document objects (fonts, resources, structure tree) are not thread safe.
+     * Has no effect in test mode, as content streams are not compressed in test mode.
+     *
+     * @param executor the executor to compress pages on, for example a shared fixed thread pool
+     * @return this for method chaining.
+     */
+    public PdfRendererBuilder useConcurrentPageCompression(Executor executor) {
+        state._pageCompressionExecutor = executor;
+        return this;
+    }
+
+    /**
+     * Subsets embedded fonts concurrently, one font per task on the supplied executor,
+     * once painting is finished and before the document is written. Without this option
+     * PDF-BOX subsets each font in turn on the calling thread while saving, which adds up
+     * for documents with several (for example regular, bold, italic and CJK fallback) fonts.
+     * <br><br>
+     * The calling thread waits for all fonts to be subset. Documents with fewer than two
+     * fonts to subset are not affected.
+     *
+     * @param executor the executor to subset fonts on, for example a shared fixed thread pool
+     * @return this for method chaining.
+     */
+    public PdfRendererBuilder useConcurrentFontSubsetting(Executor executor) {
+        state._fontSubsetExecutor = executor;
+        return this;
+    }
+
+    /**
+     * Use a registry of parsed fonts shared with other renders. Fonts added with
+     * {@link #useFont(File, String)}, input stream suppliers and font-face rules are then
+     * parsed once per registry rather than once per render, which matters for large
+     * (for example CJK) fonts.
+     * <br><br>
+     * Each document still builds and embeds its own subset of each font. PDF-BOX builds
+     * subsets inside <code>PDDocument.save</code> and offers no way to supply one built for an
+     * earlier document, so subsets are not cached across documents. With a registry,
+     * subsetting at least reuses tables that are already parsed (such as cmap, metrics and
+     * glyph locations). Glyph data itself is still read from the font file (or from the heap
+     * for fonts read from input streams), see {@link PdfBoxFontRegistry}.
+     * <br><br>
+     * Fonts added with a {@link PDFontSupplier} are not affected.
+     *
+     * @param registry a registry shared by many renders, usually one per process
+     * @return this for method chaining.
+     */
+    public PdfRendererBuilder useFontRegistry(PdfBoxFontRegistry registry) {
+        state._fontRegistry = registry;
+        return this;
+    }
+
+    /**
+     * Adds the fonts of an indexed font directory, matched on their real family name,
+     * weight and style. The fonts are subset and only loaded if used. For example:
+     * <pre>
+     * PdfBoxFontDirectoryIndex index = PdfBoxFontDirectoryIndex.load(new File("/usr/share/fonts/truetype"), new File("/var/cache/fonts.idx"));
+     * builder.useFontDirectoryIndex(index, FontGroup.MAIN);
+     * </pre>
+     * The index should be loaded once and reused for every render.
+     *
+     * @param index the fonts to add
+     * @param fontGroup whether the fonts are used by family name or as fallback fonts
+     * @return this for method chaining.
+     */
+    public PdfRendererBuilder useFontDirectoryIndex(PdfBoxFontDirectoryIndex index, FontGroup fontGroup) {
+        state._fontDirectoryIndexes.put(index, fontGroup);
+        return this;
+    }
+
 	/**
 	 * Various level of PDF/A conformance:
 	 *
@@ -3,13 +3,17 @@ package com.openhtmltopdf.pdfboxout;
 import com.openhtmltopdf.extend.FSCacheEx;
 import com.openhtmltopdf.extend.FSCacheValue;
 import com.openhtmltopdf.outputdevice.helper.BaseRendererBuilder;
+import com.openhtmltopdf.pdfboxout.PdfBoxFontResolver.FontGroup;
 import com.openhtmltopdf.pdfboxout.PdfRendererBuilder.CacheStore;
 import com.openhtmltopdf.pdfboxout.PdfRendererBuilder.PdfAConformance;
 
+import org.apache.pdfbox.io.MemoryUsageSetting;
 import org.apache.pdfbox.pdmodel.PDDocument;
 
 import java.io.OutputStream;
+import java.util.concurrent.Executor;
 import java.util.EnumMap;
+import java.util.LinkedHashMap;
 import java.util.Map;
 
 /**
@@ -24,9 +28,43 @@ public class PdfRendererBuilderState extends BaseRendererBuilder.BaseRendererBui
 	public float _pdfVersion = 1.7f;
 	public String _producer;
 	public PDDocument pddocument;
+	public MemoryUsageSetting _memoryUsageSetting;
         public final Map<CacheStore, FSCacheEx<String, FSCacheValue>> _caches = new EnumMap<>(CacheStore.class);
 	public PdfAConformance _pdfAConformance = PdfAConformance.NONE;
 	public boolean _pdfUaConform = false;
 	public byte[] _colorProfile;
 	public PageSupplier _pageSupplier;
+	public int _displayListPageWindow;
+	public Executor _pageCompressionExecutor;
+	public Executor _fontSubsetExecutor;
+	public boolean _releasePaintedBoxes;
+	public PdfBoxFontRegistry _fontRegistry;
+	public final Map<PdfBoxFontDirectoryIndex, FontGroup> _fontDirectoryIndexes = new LinkedHashMap<>();
+	PdfBoxSharedResources _sharedResources;
+
+	/**
+	 * Returns a copy of this state, see {@link #copyFrom(BaseRendererBuilder.BaseRendererBuilderState)}.
+	 */
+	PdfRendererBuilderState copy() {
+		PdfRendererBuilderState copy = new PdfRendererBuilderState();
+		copy.copyFrom(this);
+		copy._os = _os;
+		copy._pdfVersion = _pdfVersion;
+		copy._producer = _producer;
+		copy.pddocument = pddocument;
+		copy._memoryUsageSetting = _memoryUsageSetting;
+		copy._caches.putAll(_caches);
+		copy._pdfAConformance = _pdfAConformance;
+		copy._pdfUaConform = _pdfUaConform;
+		copy._colorProfile = _colorProfile;
+		copy._pageSupplier = _pageSupplier;
+		copy._displayListPageWindow = _displayListPageWindow;
+		copy._pageCompressionExecutor = _pageCompressionExecutor;
+		copy._fontSubsetExecutor = _fontSubsetExecutor;
+		copy._releasePaintedBoxes = _releasePaintedBoxes;
+		copy._fontRegistry = _fontRegistry;
+		copy._fontDirectoryIndexes.putAll(_fontDirectoryIndexes);
+		copy._sharedResources = _sharedResources;
+		return copy;
+	}
 }
@@ -0,0 +1,204 @@
+package com.openhtmltopdf.pdfboxout;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.w3c.dom.Document;
+
+import com.openhtmltopdf.util.CancellationToken;
+import com.openhtmltopdf.util.ThreadCtx;
+
+/**
+ * A thread-safe, reusable factory for renderers that share the same settings.
+ * Create with {@link PdfRendererBuilder#buildFactory()}.
+ * <br><br>
+ * The factory holds a snapshot of the builder settings (fonts, stream factories,
+ * access controllers, etc) and caches that are shared by all documents it renders:
+ * <ul>
+ * <li>{@link PdfRendererBuilder.CacheStore#PDF_FONT_METRICS} so fonts are only loaded
+ * when their glyphs are actually needed.</li>
+ * <li>{@link PdfRendererBuilder.CacheStore#PARSED_STYLESHEETS} so linked and inline
+ * stylesheets are fetched and parsed once rather than for every document.</li>
+ * <li>A {@link com.openhtmltopdf.context.StyleDeclarationCache} so repeated style
+ * attributes are parsed once.</li>
+ * </ul>
+ * If a cache store was not set on the builder, the factory uses a default unbounded in-memory
+ * cache store. For a bounded cache, set your own with
+ * {@link PdfRendererBuilder#useCacheStore(PdfRendererBuilder.CacheStore, com.openhtmltopdf.extend.FSCacheEx)}.
+ * <br><br>
+ * NOTE: Objects given to the builder, such as the SVG and MathML implementations, object drawers,
+ * stream factories, uri resolvers, cache stores and diagnostic consumers, are shared by all renderers
+ * created by this factory and so must be thread safe if the factory is used from more than one thread.
+ */
+public final class PdfRendererFactory {
+    private final PdfRendererBuilderState _state;
+
+    PdfRendererFactory(PdfRendererBuilderState state) {
+        this._state = state;
+    }
+
+    /**
+     * Renders the HTML to PDF and writes the result to os. The caller is
+     * responsible for closing os.
+     *
+     * @param html the HTML (or XHTML) document as a string
+     * @param baseUri the base uri to resolve relative resources against
+     * @param os the output stream to write the PDF to
+     */
+    public void run(String html, String baseUri, OutputStream os) throws IOException {
+        PdfRendererBuilderState state = _state.copy();
+        state._html = html;
+        state._baseUri = baseUri;
+        state._os = os;
+
+        run(state);
+    }
+
+    /**
+     * Renders the W3C document to PDF and writes the result to os. The caller is
+     * responsible for closing os.
+     *
+     * @param doc the document to render
+     * @param baseUri the base uri to resolve relative resources against
+     * @param os the output stream to write the PDF to
+     */
+    public void run(Document doc, String baseUri, OutputStream os) throws IOException {
+        PdfRendererBuilderState state = _state.copy();
+        state._document = doc;
+        state._baseUri = baseUri;
+        state._os = os;
+
+        run(state);
+    }
+
+    /**
+     * Renders the HTML to PDF on executor. The calling thread does not take part in the render
+     * so this method may be called from an event loop thread.
+     * <br><br>
+     * The whole render, from parsing the document to saving the PDF, runs in a single task on
+     * the executor. The renderer's shared context and diagnostic consumer are registered with the
+     * executor thread for the duration of that task only, so executor threads can be shared with
+     * other work.
+     * <br><br>
+     * Cancelling the returned future aborts the render at its next safe point, see
+     * {@link PdfRendererBuilder#useCancellationToken(CancellationToken)}. If a cancellation token
+     * was set on the builder, cancelling it also aborts the render.
+     *
+     * @param html the HTML (or XHTML) document as a string
+     * @param baseUri the base uri to resolve relative resources against
+     * @param executor the executor to render on
+     * @return a future that completes with the PDF or exceptionally with the reason the render failed
+     */
+    public CompletableFuture<RenderResult> runAsync(String html, String baseUri, Executor executor) {
+        PdfRendererBuilderState state = _state.copy();
+        state._html = html;
+        state._baseUri = baseUri;
+
+        return runAsync(state, executor);
+    }
+
+    /**
+     * Renders the W3C document to PDF on executor, see {@link #runAsync(String, String, Executor)}.
+     * The document must not be modified until the returned future has completed.
+     *
+     * @param doc the document to render
+     * @param baseUri the base uri to resolve relative resources against
+     * @param executor the executor to render on
+     * @return a future that completes with the PDF or exceptionally with the reason the render failed
+     */
+    public CompletableFuture<RenderResult> runAsync(Document doc, String baseUri, Executor executor) {
+        PdfRendererBuilderState state = _state.copy();
+        state._document = doc;
+        state._baseUri = baseUri;
+
+        return runAsync(state, executor);
+    }
+
+    /**
+     * Build a PdfBoxRenderer for the HTML for further customization. Remember to call
+     * {@link PdfBoxRenderer#close()} after use.
+     */
+    public PdfBoxRenderer buildPdfRenderer(String html, String baseUri, OutputStream os) {
+        PdfRendererBuilderState state = _state.copy();
+        state._html = html;
+        state._baseUri = baseUri;
+        state._os = os;
+
+        return PdfRendererBuilder.createRenderer(state, ThreadCtx.applyDiagnosticConsumer(state._diagnosticConsumer));
+    }
+
+    /**
+     * Build a PdfBoxRenderer for the W3C document for further customization. Remember to call
+     * {@link PdfBoxRenderer#close()} after use.
+     */
+    public PdfBoxRenderer buildPdfRenderer(Document doc, String baseUri, OutputStream os) {
+        PdfRendererBuilderState state = _state.copy();
+        state._document = doc;
+        state._baseUri = baseUri;
+        state._os = os;
+
+        return PdfRendererBuilder.createRenderer(state, ThreadCtx.applyDiagnosticConsumer(state._diagnosticConsumer));
+    }
+
+    /**
+     * Build a renderer that appends many documents into one PDF which is written to os,
+     * see {@link PdfMultiDocumentRenderer}. Remember to call {@link PdfMultiDocumentRenderer#close()} after use.
+     *
+     * @throws IllegalStateException if PDF/UA or PDF/A-a output was requested
+     */
+    public PdfMultiDocumentRenderer buildMultiDocumentRenderer(OutputStream os) {
+        return new PdfMultiDocumentRenderer(_state, os);
+    }
+
+    private CompletableFuture<RenderResult> runAsync(PdfRendererBuilderState state, Executor executor) {
+        CancellationToken token = state._cancellationToken != null ?
+                state._cancellationToken.createChild() :
+                CancellationToken.create();
+        state._cancellationToken = token;
+
+        CompletableFuture<RenderResult> future = CompletableFuture.supplyAsync(() -> {
+            try {
+                return render(state);
+            } catch (IOException e) {
+                throw new CompletionException(e);
+            }
+        }, executor);
+
+        future.whenComplete((result, e) -> {
+            if (future.isCancelled()) {
+                token.cancel();
+            }
+        });
+
+        return future;
+    }
+
+    private RenderResult render(PdfRendererBuilderState state) throws IOException {
+        long start = System.nanoTime();
+        ByteArrayOutputStream os = new ByteArrayOutputStream();
+
+        try (Closeable d = ThreadCtx.applyDiagnosticConsumer(state._diagnosticConsumer);
+             PdfBoxRenderer renderer = PdfRendererBuilder.createRenderer(state, d);
+             PDDocument doc = renderer.getPdfDocument()) {
+            renderer.layout();
+            renderer.createPDFWithoutClosing();
+            renderer.save(os);
+
+            return new RenderResult(os.toByteArray(), doc.getNumberOfPages(), System.nanoTime() - start);
+        }
+    }
+
+    private void run(PdfRendererBuilderState state) throws IOException {
+        try (Closeable d = ThreadCtx.applyDiagnosticConsumer(state._diagnosticConsumer);
+             PdfBoxRenderer renderer = PdfRendererBuilder.createRenderer(state, d)) {
+            renderer.layout();
+            renderer.createPDF();
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package com.openhtmltopdf.pdfboxout;
+
+/**
+ * The result of an asynchronous render, see
+ * {@link PdfRendererFactory#runAsync(String, String, java.util.concurrent.Executor)}.
+ */
+public final class RenderResult {
+    private final byte[] _pdf;
+    private final int _pageCount;
+    private final long _renderNanos;
+
+    RenderResult(byte[] pdf, int pageCount, long renderNanos) {
+        this._pdf = pdf;
+        this._pageCount = pageCount;
+        this._renderNanos = renderNanos;
+    }
+
+    /**
+     * @return the PDF document as bytes
+     */
+    public byte[] getPdf() {
+        return _pdf;
+    }
+
+    /**
+     * @return the number of pages in the PDF, including any overflow pages
+     */
+    public int getPageCount() {
+        return _pageCount;
+    }
+
+    /**
+     * @return the time taken on the executor to lay out, paint and save the PDF in nanoseconds
+     */
+    public long getRenderNanos() {
+        return _renderNanos;
+    }
+}
@@ -8,6 +8,7 @@ import java.util.Arrays;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.List;
+import java.util.function.IntPredicate;
 
 import org.apache.fontbox.ttf.TrueTypeCollection;
 import org.apache.fontbox.ttf.TrueTypeFont;
@@ -24,6 +25,7 @@ import com.openhtmltopdf.layout.SharedContext;
 import com.openhtmltopdf.outputdevice.helper.FontResolverHelper;
 import com.openhtmltopdf.pdfboxout.PDFontSupplier;
 import com.openhtmltopdf.pdfboxout.PdfBoxFontResolver.FontDescription;
+import com.openhtmltopdf.pdfboxout.PdfBoxRawPDFontMetrics;
 
 public class FallbackFontStore implements Closeable {
     private final List<FontDescription> fonts = new ArrayList<>();
@@ -135,6 +137,16 @@ public class FallbackFontStore implements Closeable {
      * Add a font with a lazy loaded PDFont
      */
     public void addFontLazy(FSSupplier<PDFont> font, String fontFamilyNameOverride, Integer fontWeightOverride, IdentValue fontStyleOverride, boolean subset) {
+        addFontLazy(font, fontFamilyNameOverride, fontWeightOverride, fontStyleOverride, subset, null, null, null);
+    }
+
+    /**
+     * Add a font with a lazy loaded PDFont and metrics and unicode coverage that are already
+     * known, so that the font is not loaded just for its metrics or to check for a glyph.
+     * The fingerprint identifies the version of the font in the metrics cache.
+     * Any of them may be null if not known.
+     */
+    public void addFontLazy(FSSupplier<PDFont> font, String fontFamilyNameOverride, Integer fontWeightOverride, IdentValue fontStyleOverride, boolean subset, PdfBoxRawPDFontMetrics metrics, IntPredicate coverage, String fingerprint) {
         FontDescription descr = new FontDescription(
                 _doc,
                 font,
@@ -143,7 +155,10 @@ public class FallbackFontStore implements Closeable {
                 fontFamilyNameOverride,
                 false,   // isFromFontFace
                 subset,
-                _fontMetricsCache);
+                _fontMetricsCache,
+                metrics,
+                coverage,
+                fingerprint);
 
         addFont(subset, descr);
     }
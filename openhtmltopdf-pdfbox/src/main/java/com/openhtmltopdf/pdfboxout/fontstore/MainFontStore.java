@@ -7,6 +7,7 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.function.IntPredicate;
 
 import org.apache.fontbox.ttf.TrueTypeCollection;
 import org.apache.fontbox.ttf.TrueTypeFont;
@@ -25,6 +26,7 @@ import com.openhtmltopdf.outputdevice.helper.FontFamily;
 import com.openhtmltopdf.outputdevice.helper.FontResolverHelper;
 import com.openhtmltopdf.pdfboxout.PDFontSupplier;
 import com.openhtmltopdf.pdfboxout.PdfBoxFontResolver.FontDescription;
+import com.openhtmltopdf.pdfboxout.PdfBoxRawPDFontMetrics;
 
 public class MainFontStore extends AbstractFontStore implements Closeable {
     private final Map<String, FontFamily<FontDescription>> _fontFamilies = new HashMap<>();
@@ -66,6 +68,16 @@ public class MainFontStore extends AbstractFontStore implements Closeable {
      * Add a font with a lazy loaded PDFont
      */
     public void addFontLazy(FSSupplier<PDFont> font, String fontFamilyNameOverride, Integer fontWeightOverride, IdentValue fontStyleOverride, boolean subset) {
+        addFontLazy(font, fontFamilyNameOverride, fontWeightOverride, fontStyleOverride, subset, null, null, null);
+    }
+
+    /**
+     * Add a font with a lazy loaded PDFont and metrics and unicode coverage that are already
+     * known, so that the font is not loaded just for its metrics or to check for a glyph.
+     * The fingerprint identifies the version of the font in the metrics cache.
+     * Any of them may be null if not known.
+     */
+    public void addFontLazy(FSSupplier<PDFont> font, String fontFamilyNameOverride, Integer fontWeightOverride, IdentValue fontStyleOverride, boolean subset, PdfBoxRawPDFontMetrics metrics, IntPredicate coverage, String fingerprint) {
         FontFamily<FontDescription> fontFamily = getFontFamily(fontFamilyNameOverride);
         FontDescription descr = new FontDescription(
                 _doc,
@@ -75,7 +87,10 @@ public class MainFontStore extends AbstractFontStore implements Closeable {
                 fontFamilyNameOverride,
                 false,   // isFromFontFace
                 subset,
-                _fontMetricsCache);
+                _fontMetricsCache,
+                metrics,
+                coverage,
+                fingerprint);
 
         addFontToFamily(subset, fontFamily, descr);
     }
@@ -112,6 +127,25 @@ public class MainFontStore extends AbstractFontStore implements Closeable {
         addFontToFamily(subset, fontFamily, description);
     }
 
+    /**
+     * Add a font-face font with a lazy loaded PDFont.
+     */
+    public void addFontFaceFont(String fontFamilyName, IdentValue fontWeight, IdentValue fontStyle, FSSupplier<PDFont> font, boolean subset) {
+        FontFamily<FontDescription> fontFamily = getFontFamily(fontFamilyName);
+
+        FontDescription description = new FontDescription(
+                    _doc,
+                    font,
+                    FontUtil.normalizeFontStyle(fontStyle),
+                    FontUtil.normalizeFontWeight(fontWeight),
+                    fontFamilyName,
+                    true,  // isFromFontFace
+                    subset,
+                    _fontMetricsCache);
+
+        addFontToFamily(subset, fontFamily, description);
+    }
+
     public void addFont(
             FSSupplier<InputStream> supplier,
             String fontFamilyNameOverride,